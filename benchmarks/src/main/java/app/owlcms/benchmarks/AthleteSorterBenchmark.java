@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+
+/**
+ * Display and result orders, computed for the scoreboards and the category rankings after each lift. The lifting
+ * order is measured by {@link LiftingOrderBenchmark}.
+ *
+ * @author Jean-François Lamy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AthleteSorterBenchmark {
+
+    @Param({ "200" })
+    int sessionSize;
+
+    @Param({ "2", "5" })
+    int liftsDone;
+
+    private List<Athlete> athletes;
+
+    @Benchmark
+    public List<Athlete> displayOrderCopy() {
+        return AthleteSorter.displayOrderCopy(athletes);
+    }
+
+    @Benchmark
+    public List<Athlete> resultsOrderCopySnatch() {
+        return AthleteSorter.resultsOrderCopy(athletes, Ranking.SNATCH);
+    }
+
+    @Benchmark
+    public List<Athlete> resultsOrderCopyTotal() {
+        return AthleteSorter.resultsOrderCopy(athletes, Ranking.TOTAL);
+    }
+
+    @Setup
+    public void setup() {
+        athletes = BenchmarkCompetition.session(sessionSize, liftsDone);
+        Collections.shuffle(athletes, new Random(0));
+    }
+
+}
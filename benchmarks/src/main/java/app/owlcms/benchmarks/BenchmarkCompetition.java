@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.category.AgeDivision;
+import app.owlcms.data.config.Config;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.DemoData;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.init.OwlcmsSession;
+
+/**
+ * Competition used by the benchmarks, created from the demo data in an in-memory database.
+ *
+ * The demo data puts <code>sessionSize</code> athletes in group M1 (and about twice as many in the other groups).
+ * Group M1 is the session being lifted: its athletes have done some lifts, which are saved, and it is loaded on the
+ * field of play of its platform, which is made the current one.
+ *
+ * JMH runs each combination of parameters in a separate JVM, so the database is normally created once per run.
+ *
+ * @author Jean-François Lamy
+ */
+public class BenchmarkCompetition {
+
+    public static final String SESSION = "M1";
+
+    private static String currentKey = null;
+    private static FieldOfPlay fop;
+
+    /**
+     * @param sessionSize number of athletes in the session
+     * @param liftsDone   0..6
+     * @return the field of play with the session loaded
+     */
+    public static synchronized FieldOfPlay fieldOfPlay(int sessionSize, int liftsDone) {
+        String key = sessionSize + "/" + liftsDone;
+        if (key.equals(currentKey)) {
+            return fop;
+        }
+        if (currentKey != null) {
+            JPAService.close();
+        }
+        JPAService.init(true, true);
+        Config.initConfig();
+        DemoData.insertInitialData(sessionSize, EnumSet.of(AgeDivision.IWF));
+
+        Group group = GroupRepository.findByName(SESSION);
+        doLifts(AthleteRepository.findAllByGroupAndWeighIn(group, true), liftsDone);
+
+        fop = OwlcmsFactory.getFOPByName(group.getPlatform().getName());
+        fop.setTestingMode(true);
+        fop.loadGroup(group, BenchmarkCompetition.class, true);
+        OwlcmsSession.setFop(fop);
+        currentKey = key;
+        return fop;
+    }
+
+    /**
+     * Athletes of the session, as loaded on the field of play.
+     *
+     * @param sessionSize number of athletes
+     * @param liftsDone   0..6
+     * @return a new list, in display order
+     */
+    public static List<Athlete> session(int sessionSize, int liftsDone) {
+        return new ArrayList<>(fieldOfPlay(sessionSize, liftsDone).getDisplayOrder());
+    }
+
+    /**
+     * Each athlete does <code>liftsDone</code> lifts, or one less, so that the lifting order mixes athletes at
+     * different attempts. About one lift in three is a failure.
+     */
+    private static void doLifts(List<Athlete> athletes, int liftsDone) {
+        Random r = new Random(0);
+        for (Athlete a : athletes) {
+            a.setValidation(false);
+            int nbLifts = Math.max(0, liftsDone - r.nextInt(2));
+            for (int liftNo = 1; liftNo <= nbLifts; liftNo++) {
+                int requested = a.getNextAttemptRequestedWeight();
+                a.doLift(liftNo, Integer.toString(r.nextInt(3) == 0 ? -requested : requested));
+            }
+            AthleteRepository.save(a);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.uievents.EventForwarder;
+
+/**
+ * Scoreboard tables and update parameters built for publicresults each time the lifting order changes.
+ *
+ * @author Jean-François Lamy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventForwarderBenchmark {
+
+    @Param({ "200" })
+    int sessionSize;
+
+    @Param({ "2", "5" })
+    int liftsDone;
+
+    private EventForwarder forwarder;
+
+    @Benchmark
+    public Map<String, String> computeUpdate() {
+        return forwarder.computeUpdate();
+    }
+
+    @Setup
+    public void setup() {
+        FieldOfPlay fop = BenchmarkCompetition.fieldOfPlay(sessionSize, liftsDone);
+        forwarder = new EventForwarder(fop);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athleteSort.AthleteSorter;
+
+/**
+ * Lifting order computation, done several times after each decision or weight change.
+ *
+ * @author Jean-François Lamy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LiftingOrderBenchmark {
+
+    @Param({ "200" })
+    int sessionSize;
+
+    @Param({ "0", "2", "4" })
+    int liftsDone;
+
+    private List<Athlete> athletes;
+    private int next = 0;
+
+    /**
+     * Sort after a change by one athlete. The declaration is replaced by an equal String, so the order does not
+     * change but the athlete's parsed attempts must be refreshed, as after a decision.
+     */
+    @Benchmark
+    public List<Athlete> liftingOrderAfterChange() {
+        Athlete a = athletes.get(next++ % athletes.size());
+        a.setCleanJerk1Declaration(new String(a.getCleanJerk1Declaration()));
+        return AthleteSorter.liftingOrderCopy(athletes);
+    }
+
+    @Benchmark
+    public List<Athlete> liftingOrderCopy() {
+        return AthleteSorter.liftingOrderCopy(athletes);
+    }
+
+    @Setup
+    public void setup() {
+        athletes = BenchmarkCompetition.session(sessionSize, liftsDone);
+        Collections.shuffle(athletes, new Random(0));
+    }
+
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.category.Participation;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.jpa.JPAService;
+
+/**
+ * Reading the athletes ranked with the current session, and writing their ranks back.
+ *
+ * The demo data has about three times <code>sessionSize</code> athletes in total. The benchmark uses the in-memory H2
+ * database; setting POSTGRES_HOST (and POSTGRES_PORT, POSTGRES_DB, POSTGRES_USER, POSTGRES_PASSWORD) in the
+ * environment runs it against PostgreSQL instead. The database is recreated.
+ *
+ * @author Jean-François Lamy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingQueryBenchmark {
+
+    @Param({ "333" })
+    int sessionSize;
+
+    private Group group;
+    private List<Participation> ranks;
+
+    /**
+     * Athletes in the categories of the session, as read for a full re-ranking.
+     */
+    @Benchmark
+    public List<Athlete> findAthletesForGlobalRanking() {
+        return AthleteRepository.findAthletesForGlobalRanking(group);
+    }
+
+    /**
+     * Same, with the correlated subquery previously used.
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Object> findAthletesForGlobalRankingCorrelated() {
+        return JPAService.runInTransaction((em) -> {
+            Query q = em.createQuery(
+                    "select distinct a, p from Athlete a join fetch a.participations p join p.category c where exists "
+                            + "(select distinct c2 from Athlete b join b.group g join b.participations p join p.category c2 where g.id = :groupId and c2.id = c.id)");
+            q.setParameter("groupId", group.getId());
+            return q.getResultList();
+        });
+    }
+
+    /**
+     * Ranks of all the participations ranked with the session, written back in a batch.
+     */
+    @Benchmark
+    public void updateCategoryRanks() {
+        AthleteRepository.updateCategoryRanks(ranks);
+    }
+
+    /**
+     * Same, merging the participations.
+     */
+    @Benchmark
+    public void updateCategoryRanksMerge() {
+        JPAService.runInTransaction(em -> {
+            for (Participation p : ranks) {
+                em.merge(p);
+            }
+            em.flush();
+            return null;
+        });
+    }
+
+    @Setup
+    public void setup() {
+        group = BenchmarkCompetition.fieldOfPlay(sessionSize, 3).getGroup();
+        ranks = new ArrayList<>();
+        for (Athlete a : AthleteRepository.findAthletesForGlobalRanking(group)) {
+            ranks.addAll(a.getParticipations());
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.competition.Competition;
+
+/**
+ * Rankings and medals for the whole competition, recomputed for the results and the final package.
+ *
+ * @author Jean-François Lamy
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportingInfoBenchmark {
+
+    @Param({ "200" })
+    int sessionSize;
+
+    @Param({ "3", "6" })
+    int liftsDone;
+
+    private Athlete changed;
+
+    /**
+     * Rankings already computed, nothing changed since.
+     */
+    @Benchmark
+    public HashMap<String, Object> computeReportingInfo() {
+        return Competition.getCurrent().computeReportingInfo();
+    }
+
+    /**
+     * One athlete of the session has been saved, the Sinclair scoreboard is refreshed: only the rankings covering
+     * all athletes are recomputed.
+     */
+    @Benchmark
+    public List<Athlete> globalSinclairAfterChange() {
+        Competition competition = Competition.getCurrent();
+        competition.invalidateRankings(changed);
+        return competition.getGlobalSinclairRanking(Gender.M);
+    }
+
+    /**
+     * Everything recomputed, as after a bulk change.
+     */
+    @Benchmark
+    public HashMap<String, Object> computeReportingInfoFromScratch() {
+        Competition competition = Competition.getCurrent();
+        competition.setRankingsInvalid(true);
+        return competition.computeReportingInfo();
+    }
+
+    @Setup
+    public void setup() {
+        changed = BenchmarkCompetition.session(sessionSize, liftsDone).get(0);
+    }
+
+}
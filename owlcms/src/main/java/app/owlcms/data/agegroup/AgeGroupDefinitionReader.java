@@ -6,30 +6,25 @@
  *******************************************************************************/
 package app.owlcms.data.agegroup;
 
-import java.io.InputStream;
 import java.text.MessageFormat;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.category.Category;
+import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.jpa.JPAService;
+import app.owlcms.spreadsheet.DefinitionWorkbook;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.NotificationUtils;
-import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
 
 public class AgeGroupDefinitionReader {
@@ -43,15 +38,14 @@ public class AgeGroupDefinitionReader {
      * @param workbook
      * @return
      */
-    public static Map<String, Category> createCategoryTemplates(Workbook workbook) {
+    public static Map<String, Category> createCategoryTemplates(DefinitionWorkbook workbook) {
         Map<String, Category> categoryMap = new HashMap<>();
-        DataFormatter dataFormatter = new DataFormatter();
-        Sheet sheet = workbook.getSheetAt(0);
-        Iterator<Row> rowIterator = sheet.rowIterator();
+        List<List<Object>> sheet = workbook.getSheet(0);
+        Iterator<List<Object>> rowIterator = sheet.iterator();
         int iRow = 0;
         rows: while (rowIterator.hasNext()) {
             int iColumn = 0;
-            Row row;
+            List<Object> row;
             if (iRow == 0) {
                 // process header
                 row = rowIterator.next();
@@ -60,13 +54,13 @@ public class AgeGroupDefinitionReader {
 
             Category c = new Category();
 
-            Iterator<Cell> cellIterator = row.cellIterator();
+            Iterator<Object> cellIterator = row.iterator();
 
             while (cellIterator.hasNext()) {
-                Cell cell = cellIterator.next();
+                Object cell = cellIterator.next();
                 switch (iColumn) {
                 case 0: {
-                    String cellValue = dataFormatter.formatCellValue(cell);
+                    String cellValue = DefinitionWorkbook.format(cell);
                     String trim = cellValue.trim();
                     if (trim.isBlank()) {
                         break rows;
@@ -76,26 +70,26 @@ public class AgeGroupDefinitionReader {
                 }
                     break;
                 case 1: {
-                    String cellValue = dataFormatter.formatCellValue(cell);
+                    String cellValue = DefinitionWorkbook.format(cell);
                     if (cellValue != null && !cellValue.trim().isEmpty()) {
                         c.setGender(cellValue.contentEquals("F") ? Gender.F : Gender.M);
                     }
                 }
                     break;
                 case 2: {
-                    c.setMaximumWeight(cell.getNumericCellValue());
+                    c.setMaximumWeight(DefinitionWorkbook.getNumeric(cell));
                 }
                     break;
                 case 3: {
-                    c.setWrSr((int) Math.round(cell.getNumericCellValue()));
+                    c.setWrSr((int) Math.round(DefinitionWorkbook.getNumeric(cell)));
                 }
                     break;
                 case 4: {
-                    c.setWrJr((int) Math.round(cell.getNumericCellValue()));
+                    c.setWrJr((int) Math.round(DefinitionWorkbook.getNumeric(cell)));
                 }
                     break;
                 case 5: {
-                    c.setWrYth((int) Math.round(cell.getNumericCellValue()));
+                    c.setWrYth((int) Math.round(DefinitionWorkbook.getNumeric(cell)));
                 }
                     break;
                 }
@@ -106,17 +100,17 @@ public class AgeGroupDefinitionReader {
         return categoryMap;
     }
 
-    static void createAgeGroups(Workbook workbook, Map<String, Category> templates,
+    static void createAgeGroups(DefinitionWorkbook workbook, Map<String, Category> templates,
             EnumSet<AgeDivision> ageDivisionOverride,
             String localizedName) {
 
         JPAService.runInTransaction(em -> {
-            Sheet sheet = workbook.getSheetAt(1);
-            Iterator<Row> rowIterator = sheet.rowIterator();
+            List<List<Object>> sheet = workbook.getSheet(1);
+            Iterator<List<Object>> rowIterator = sheet.iterator();
             int iRow = 0;
             rows: while (rowIterator.hasNext()) {
                 int iColumn = 0;
-                Row row;
+                List<Object> row;
                 if (iRow == 0) {
                     // process header
                     row = rowIterator.next();
@@ -126,12 +120,12 @@ public class AgeGroupDefinitionReader {
                 AgeGroup ag = new AgeGroup();
                 double curMin = 0.0D;
 
-                Iterator<Cell> cellIterator = row.cellIterator();
+                Iterator<Object> cellIterator = row.iterator();
                 while (cellIterator.hasNext()) {
-                    Cell cell = cellIterator.next();
+                    Object cell = cellIterator.next();
                     switch (iColumn) {
                     case 0: {
-                        String cellValue = cell.getStringCellValue();
+                        String cellValue = DefinitionWorkbook.getString(cell);
                         String trim = cellValue.trim();
                         if (trim.isBlank()) {
                             break rows;
@@ -142,29 +136,29 @@ public class AgeGroupDefinitionReader {
                     case 1:
                         break;
                     case 2: {
-                        String cellValue = cell.getStringCellValue();
+                        String cellValue = DefinitionWorkbook.getString(cell);
                         ag.setAgeDivision(AgeDivision.getAgeDivisionFromCode(cellValue));
                     }
                         break;
                     case 3: {
-                        String cellValue = cell.getStringCellValue();
+                        String cellValue = DefinitionWorkbook.getString(cell);
                         if (cellValue != null && !cellValue.trim().isEmpty()) {
                             ag.setGender(cellValue.contentEquals("F") ? Gender.F : Gender.M);
                         }
                     }
                         break;
                     case 4: {
-                        long cellValue = Math.round(cell.getNumericCellValue());
+                        long cellValue = Math.round(DefinitionWorkbook.getNumeric(cell));
                         ag.setMinAge(Math.toIntExact(cellValue));
                     }
                         break;
                     case 5: {
-                        long cellValue = Math.round(cell.getNumericCellValue());
+                        long cellValue = Math.round(DefinitionWorkbook.getNumeric(cell));
                         ag.setMaxAge(Math.toIntExact(cellValue));
                     }
                         break;
                     case 6: {
-                        boolean explicitlyActive = cell.getBooleanCellValue();
+                        boolean explicitlyActive = DefinitionWorkbook.getBoolean(cell);
                         // age division is active according to spreadsheet, unless we are given an explicit
                         // list of age divisions as override (e.g. to setup tests or demos)
                         boolean active = ageDivisionOverride == null ? explicitlyActive
@@ -174,7 +168,7 @@ public class AgeGroupDefinitionReader {
                     }
                         break;
                     default: {
-                        String cellValue = cell.getStringCellValue();
+                        String cellValue = DefinitionWorkbook.getString(cell);
                         if (cellValue != null && !cellValue.trim().isEmpty()) {
                             String[] parts = cellValue.split("[-_. /]");
                             String catCode = parts.length > 0 ? parts[0] : cellValue;
@@ -215,6 +209,7 @@ public class AgeGroupDefinitionReader {
 
             return null;
         });
+        CategoryRepository.invalidateIndex();
     }
 
     private static Object cellName(int iColumn, int iRow) {
@@ -222,14 +217,11 @@ public class AgeGroupDefinitionReader {
     }
 
     static void doInsertAgeGroup(EnumSet<AgeDivision> es, String localizedName) {
-        // InputStream localizedResourceAsStream = AgeGroupRepository.class.getResourceAsStream(localizedName);
-        InputStream localizedResourceAsStream = ResourceWalker.getResourceAsStream(localizedName);
-        try (Workbook workbook = WorkbookFactory
-                .create(localizedResourceAsStream)) {
+        try {
             AgeGroupRepository.logger.info("loading configuration file {}", localizedName);
+            DefinitionWorkbook workbook = DefinitionWorkbook.load(localizedName);
             Map<String, Category> templates = createCategoryTemplates(workbook);
             createAgeGroups(workbook, templates, es, localizedName);
-            workbook.close();
         } catch (Exception e) {
             AgeGroupRepository.logger.error("could not process ageGroup configuration\n{}", LoggerUtils./**/stackTrace(e));
         }
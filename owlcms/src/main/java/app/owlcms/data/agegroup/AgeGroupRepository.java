@@ -20,6 +20,7 @@ import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
 import org.apache.commons.lang3.ObjectUtils;
+import org.hibernate.annotations.QueryHints;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Athlete;
@@ -27,6 +28,7 @@ import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.category.Category;
+import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.category.Participation;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
@@ -69,6 +71,7 @@ public class AgeGroupRepository {
             }
             return null;
         });
+        CategoryRepository.invalidateIndex();
     }
 
     @SuppressWarnings("unchecked")
@@ -112,6 +115,7 @@ public class AgeGroupRepository {
             logger.debug("query = {}", qlString);
 
             Query query = em.createQuery(qlString);
+            query.setHint(QueryHints.CACHEABLE, true);
             setFilteringParameters(name, gender, ageDivision, age, active, query);
             if (offset >= 0) {
                 query.setFirstResult(offset);
@@ -189,6 +193,7 @@ public class AgeGroupRepository {
             }
             return null;
         });
+        CategoryRepository.invalidateIndex();
         AgeGroupDefinitionReader.doInsertAgeGroup(null, "/agegroups/" + localizedFileName);
         AthleteRepository.resetParticipations();
     }
@@ -210,6 +215,7 @@ public class AgeGroupRepository {
             }
             return null;
         });
+        CategoryRepository.invalidateIndex();
 
         return nAgeGroup;
     }
@@ -230,6 +236,7 @@ public class AgeGroupRepository {
             }
             return null;
         });
+        CategoryRepository.invalidateIndex();
         return nAgeGroup;
     }
 
@@ -333,7 +340,9 @@ public class AgeGroupRepository {
 
     @SuppressWarnings("unchecked")
     private static List<AgeGroup> doFindAll(EntityManager em) {
-        return em.createQuery("select c from AgeGroup c order by c.ageDivision,c.minAge,c.maxAge").getResultList();
+        return em.createQuery("select c from AgeGroup c order by c.ageDivision,c.minAge,c.maxAge")
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList();
     }
 
     private static String filteringSelection(String name, Gender gender, AgeDivision ageDivision, Integer age,
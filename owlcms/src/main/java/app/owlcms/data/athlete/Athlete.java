@@ -92,6 +92,55 @@ import ch.qos.logback.classic.Logger;
 @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
 @JsonIgnoreProperties({"hibernateLazyInitializer", "logger"})
 public class Athlete {
+
+    /**
+     * Numeric values of the declarations, changes and actual lifts, parsed once from the String fields. Entry
+     * <code>(liftNo - 1) * 4 + change</code> holds the value for a lift (1..6) and a change (declaration, change 1,
+     * change 2, actual lift).
+     *
+     * The matrix remembers the Strings it was parsed from; it is rebuilt when one of the fields no longer refers to
+     * the same String, whether it was changed by a setter, by a copy, or directly by JPA when loading.
+     */
+    private static final class AttemptMatrix {
+        private final String[] sources;
+        private final int[] values;
+
+        private AttemptMatrix(Athlete a) {
+            sources = new String[] {
+                    a.snatch1Declaration, a.snatch1Change1, a.snatch1Change2, a.snatch1ActualLift,
+                    a.snatch2Declaration, a.snatch2Change1, a.snatch2Change2, a.snatch2ActualLift,
+                    a.snatch3Declaration, a.snatch3Change1, a.snatch3Change2, a.snatch3ActualLift,
+                    a.cleanJerk1Declaration, a.cleanJerk1Change1, a.cleanJerk1Change2, a.cleanJerk1ActualLift,
+                    a.cleanJerk2Declaration, a.cleanJerk2Change1, a.cleanJerk2Change2, a.cleanJerk2ActualLift,
+                    a.cleanJerk3Declaration, a.cleanJerk3Change1, a.cleanJerk3Change2, a.cleanJerk3ActualLift,
+            };
+            values = new int[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                values[i] = zeroIfInvalid(sources[i]);
+            }
+        }
+
+        private boolean isCurrent(Athlete a) {
+            return sources[0] == a.snatch1Declaration && sources[1] == a.snatch1Change1
+                    && sources[2] == a.snatch1Change2 && sources[3] == a.snatch1ActualLift
+                    && sources[4] == a.snatch2Declaration && sources[5] == a.snatch2Change1
+                    && sources[6] == a.snatch2Change2 && sources[7] == a.snatch2ActualLift
+                    && sources[8] == a.snatch3Declaration && sources[9] == a.snatch3Change1
+                    && sources[10] == a.snatch3Change2 && sources[11] == a.snatch3ActualLift
+                    && sources[12] == a.cleanJerk1Declaration && sources[13] == a.cleanJerk1Change1
+                    && sources[14] == a.cleanJerk1Change2 && sources[15] == a.cleanJerk1ActualLift
+                    && sources[16] == a.cleanJerk2Declaration && sources[17] == a.cleanJerk2Change1
+                    && sources[18] == a.cleanJerk2Change2 && sources[19] == a.cleanJerk2ActualLift
+                    && sources[20] == a.cleanJerk3Declaration && sources[21] == a.cleanJerk3Change1
+                    && sources[22] == a.cleanJerk3Change2 && sources[23] == a.cleanJerk3ActualLift;
+        }
+    }
+
+    private static final int DECLARATION = 0;
+    private static final int CHANGE1 = 1;
+    private static final int CHANGE2 = 2;
+    private static final int ACTUAL = 3;
+
     private static final int YEAR = LocalDateTime.now().getYear();
 
     @Transient
@@ -219,11 +268,37 @@ public class Athlete {
      * @return the int
      */
     public static int zeroIfInvalid(String value) {
-        try {
-            return Integer.valueOf(value);
-        } catch (NumberFormatException nfe) {
+        // same result as Integer.valueOf, without throwing for the (frequent) empty cells
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        int len = value.length();
+        int i = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (len == 1) {
+                return 0;
+            }
+        }
+        long result = 0;
+        for (; i < len; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            result = result * 10 + (c - '0');
+            if (result > 1L + Integer.MAX_VALUE) {
+                return 0;
+            }
+        }
+        result = negative ? -result : result;
+        if (result > Integer.MAX_VALUE) {
             return 0;
         }
+        return (int) result;
     }
 
     @Transient
@@ -354,6 +429,9 @@ public class Athlete {
     private boolean validation = true;
     @Transient
     DecimalFormat df = null;
+    @Transient
+    @JsonIgnore
+    private transient AttemptMatrix attemptMatrix = null;
 
     /**
      * Instantiates a new athlete.
@@ -520,6 +598,18 @@ public class Athlete {
         }
     }
 
+    /**
+     * Numeric value of an actual lift, from the parsed attempt matrix.
+     *
+     * @param liftNo 1..6
+     * @return the weight, negative for a failed lift, 0 if not lifted or invalid
+     */
+    @Transient
+    @JsonIgnore
+    public int getActualLiftValue(int liftNo) {
+        return attemptValue(liftNo, ACTUAL);
+    }
+
     @Transient
     @JsonIgnore
     public Integer getActualLift(int liftNo) {
@@ -640,22 +730,22 @@ public class Athlete {
     @JsonIgnore
     public int getAttemptedLifts() {
         int i = 0;
-        if (zeroIfInvalid(snatch1ActualLift) != 0) {
+        if (attemptValue(1, ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(snatch2ActualLift) != 0) {
+        if (attemptValue(2, ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(snatch3ActualLift) != 0) {
+        if (attemptValue(3, ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(cleanJerk1ActualLift) != 0) {
+        if (attemptValue(4, ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(cleanJerk2ActualLift) != 0) {
+        if (attemptValue(5, ACTUAL) != 0) {
             i++;
         }
-        if (zeroIfInvalid(cleanJerk3ActualLift) != 0) {
+        if (attemptValue(6, ACTUAL) != 0) {
             i++;
         }
         return i; // long ago
@@ -691,10 +781,10 @@ public class Athlete {
     @Transient
     @JsonIgnore
     public Integer getBestCleanJerk() {
-        final int cj1 = zeroIfInvalid(cleanJerk1ActualLift);
-        final int cj2 = zeroIfInvalid(cleanJerk2ActualLift);
-        final int cj3 = zeroIfInvalid(cleanJerk3ActualLift);
-        return max(0, cj1, cj2, cj3);
+        final int cj1 = attemptValue(4, ACTUAL);
+        final int cj2 = attemptValue(5, ACTUAL);
+        final int cj3 = attemptValue(6, ACTUAL);
+        return Math.max(0, Math.max(cj1, Math.max(cj2, cj3)));
     }
 
     /**
@@ -707,13 +797,13 @@ public class Athlete {
     public int getBestCleanJerkAttemptNumber() {
         int referenceValue = getBestCleanJerk();
         if (referenceValue > 0) {
-            if (zeroIfInvalid(cleanJerk3ActualLift) == referenceValue) {
+            if (attemptValue(6, ACTUAL) == referenceValue) {
                 return 6;
             }
-            if (zeroIfInvalid(cleanJerk2ActualLift) == referenceValue) {
+            if (attemptValue(5, ACTUAL) == referenceValue) {
                 return 5;
             }
-            if (zeroIfInvalid(cleanJerk1ActualLift) == referenceValue) {
+            if (attemptValue(4, ACTUAL) == referenceValue) {
                 return 4;
             }
         }
@@ -730,25 +820,25 @@ public class Athlete {
     public int getBestResultAttemptNumber() {
         int referenceValue = getBestCleanJerk();
         if (referenceValue > 0) {
-            if (zeroIfInvalid(cleanJerk3ActualLift) == referenceValue) {
+            if (attemptValue(6, ACTUAL) == referenceValue) {
                 return 6;
             }
-            if (zeroIfInvalid(cleanJerk2ActualLift) == referenceValue) {
+            if (attemptValue(5, ACTUAL) == referenceValue) {
                 return 5;
             }
-            if (zeroIfInvalid(cleanJerk1ActualLift) == referenceValue) {
+            if (attemptValue(4, ACTUAL) == referenceValue) {
                 return 4;
             }
         } else {
             if (referenceValue > 0) {
                 referenceValue = getBestSnatch();
-                if (zeroIfInvalid(snatch3ActualLift) == referenceValue) {
+                if (attemptValue(3, ACTUAL) == referenceValue) {
                     return 3;
                 }
-                if (zeroIfInvalid(snatch2ActualLift) == referenceValue) {
+                if (attemptValue(2, ACTUAL) == referenceValue) {
                     return 2;
                 }
-                if (zeroIfInvalid(snatch1ActualLift) == referenceValue) {
+                if (attemptValue(1, ACTUAL) == referenceValue) {
                     return 1;
                 }
             }
@@ -764,10 +854,10 @@ public class Athlete {
     @Transient
     @JsonIgnore
     public Integer getBestSnatch() {
-        final int sn1 = zeroIfInvalid(snatch1ActualLift);
-        final int sn2 = zeroIfInvalid(snatch2ActualLift);
-        final int sn3 = zeroIfInvalid(snatch3ActualLift);
-        return max(0, sn1, sn2, sn3);
+        final int sn1 = attemptValue(1, ACTUAL);
+        final int sn2 = attemptValue(2, ACTUAL);
+        final int sn3 = attemptValue(3, ACTUAL);
+        return Math.max(0, Math.max(sn1, Math.max(sn2, sn3)));
     }
 
     /**
@@ -780,13 +870,13 @@ public class Athlete {
     public int getBestSnatchAttemptNumber() {
         int referenceValue = getBestSnatch();
         if (referenceValue > 0) {
-            if (zeroIfInvalid(snatch3ActualLift) == referenceValue) {
+            if (attemptValue(3, ACTUAL) == referenceValue) {
                 return 3;
             }
-            if (zeroIfInvalid(snatch2ActualLift) == referenceValue) {
+            if (attemptValue(2, ACTUAL) == referenceValue) {
                 return 2;
             }
-            if (zeroIfInvalid(snatch1ActualLift) == referenceValue) {
+            if (attemptValue(1, ACTUAL) == referenceValue) {
                 return 1;
             }
         }
@@ -973,7 +1063,7 @@ public class Athlete {
      * @return the clean jerk 2 automatic progression
      */
     public String getCleanJerk2AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(cleanJerk1ActualLift);
+        final int prevVal = attemptValue(4, ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -1039,7 +1129,7 @@ public class Athlete {
      * @return the clean jerk 3 automatic progression
      */
     public String getCleanJerk3AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(cleanJerk2ActualLift);
+        final int prevVal = attemptValue(5, ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -1135,8 +1225,8 @@ public class Athlete {
     @Transient
     @JsonIgnore
     public int getCleanJerkTotal() {
-        final int cleanJerkTotal = max(0, zeroIfInvalid(cleanJerk1ActualLift), zeroIfInvalid(cleanJerk2ActualLift),
-                zeroIfInvalid(cleanJerk3ActualLift));
+        final int cleanJerkTotal = Math.max(0,
+                Math.max(attemptValue(4, ACTUAL), Math.max(attemptValue(5, ACTUAL), attemptValue(6, ACTUAL))));
         return cleanJerkTotal;
     }
 
@@ -1321,17 +1411,17 @@ public class Athlete {
     @JsonIgnore
     public LocalDateTime getFirstAttemptedLiftTime() {
         LocalDateTime attemptTime = LocalDateTime.MAX;// forever in the future
-        if (zeroIfInvalid(snatch1ActualLift) != 0) {
+        if (attemptValue(1, ACTUAL) != 0) {
             attemptTime = getSnatch1LiftTime();
-        } else if (zeroIfInvalid(snatch2ActualLift) != 0) {
+        } else if (attemptValue(2, ACTUAL) != 0) {
             attemptTime = getSnatch2LiftTime();
-        } else if (zeroIfInvalid(snatch3ActualLift) != 0) {
+        } else if (attemptValue(3, ACTUAL) != 0) {
             attemptTime = getSnatch3LiftTime();
-        } else if (zeroIfInvalid(cleanJerk1ActualLift) != 0) {
+        } else if (attemptValue(4, ACTUAL) != 0) {
             attemptTime = getCleanJerk1LiftTime();
-        } else if (zeroIfInvalid(cleanJerk2ActualLift) != 0) {
+        } else if (attemptValue(5, ACTUAL) != 0) {
             attemptTime = getCleanJerk2LiftTime();
-        } else if (zeroIfInvalid(cleanJerk3ActualLift) != 0) {
+        } else if (attemptValue(6, ACTUAL) != 0) {
             attemptTime = getCleanJerk3LiftTime();
         }
         return attemptTime;
@@ -1428,22 +1518,22 @@ public class Athlete {
     @Transient
     @JsonIgnore
     public LocalDateTime getLastAttemptedLiftTime() {
-        if (zeroIfInvalid(cleanJerk3ActualLift) != 0) {
+        if (attemptValue(6, ACTUAL) != 0) {
             return getCleanJerk3LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk2ActualLift) != 0) {
+        if (attemptValue(5, ACTUAL) != 0) {
             return getCleanJerk2LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk1ActualLift) != 0) {
+        if (attemptValue(4, ACTUAL) != 0) {
             return getCleanJerk1LiftTime();
         }
-        if (zeroIfInvalid(snatch3ActualLift) != 0) {
+        if (attemptValue(3, ACTUAL) != 0) {
             return getSnatch3LiftTime();
         }
-        if (zeroIfInvalid(snatch2ActualLift) != 0) {
+        if (attemptValue(2, ACTUAL) != 0) {
             return getSnatch2LiftTime();
         }
-        if (zeroIfInvalid(snatch1ActualLift) != 0) {
+        if (attemptValue(1, ACTUAL) != 0) {
             return getSnatch1LiftTime();
         }
         return LocalDateTime.MIN; // long ago
@@ -1466,22 +1556,22 @@ public class Athlete {
     @Transient
     @JsonIgnore
     public LocalDateTime getLastSuccessfulLiftTime() {
-        if (zeroIfInvalid(cleanJerk3ActualLift) > 0) {
+        if (attemptValue(6, ACTUAL) > 0) {
             return getCleanJerk3LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk2ActualLift) > 0) {
+        if (attemptValue(5, ACTUAL) > 0) {
             return getCleanJerk2LiftTime();
         }
-        if (zeroIfInvalid(cleanJerk1ActualLift) > 0) {
+        if (attemptValue(4, ACTUAL) > 0) {
             return getCleanJerk1LiftTime();
         }
-        if (zeroIfInvalid(snatch3ActualLift) > 0) {
+        if (attemptValue(3, ACTUAL) > 0) {
             return getSnatch3LiftTime();
         }
-        if (zeroIfInvalid(snatch2ActualLift) > 0) {
+        if (attemptValue(2, ACTUAL) > 0) {
             return getSnatch2LiftTime();
         }
-        if (zeroIfInvalid(snatch1ActualLift) > 0) {
+        if (attemptValue(1, ACTUAL) > 0) {
             return getSnatch1LiftTime();
         }
         return LocalDateTime.MIN; // long ago
@@ -1755,27 +1845,17 @@ public class Athlete {
     @Transient
     @JsonIgnore
     public Integer getRequestedWeightForAttempt(int attempt) {
-        switch (attempt) {
-        case 1:
-            return last(zeroIfInvalid(getSnatch1AutomaticProgression()), zeroIfInvalid(snatch1Declaration),
-                    zeroIfInvalid(snatch1Change1), zeroIfInvalid(snatch1Change2));
-        case 2:
-            return last(zeroIfInvalid(getSnatch2AutomaticProgression()), zeroIfInvalid(snatch2Declaration),
-                    zeroIfInvalid(snatch2Change1), zeroIfInvalid(snatch2Change2));
-        case 3:
-            return last(zeroIfInvalid(getSnatch3AutomaticProgression()), zeroIfInvalid(snatch3Declaration),
-                    zeroIfInvalid(snatch3Change1), zeroIfInvalid(snatch3Change2));
-        case 4:
-            return last(zeroIfInvalid(getCleanJerk1AutomaticProgression()), zeroIfInvalid(cleanJerk1Declaration),
-                    zeroIfInvalid(cleanJerk1Change1), zeroIfInvalid(cleanJerk1Change2));
-        case 5:
-            return last(zeroIfInvalid(getCleanJerk2AutomaticProgression()), zeroIfInvalid(cleanJerk2Declaration),
-                    zeroIfInvalid(cleanJerk2Change1), zeroIfInvalid(cleanJerk2Change2));
-        case 6:
-            return last(zeroIfInvalid(getCleanJerk3AutomaticProgression()), zeroIfInvalid(cleanJerk3Declaration),
-                    zeroIfInvalid(cleanJerk3Change1), zeroIfInvalid(cleanJerk3Change2));
+        if (attempt < 1 || attempt > 6) {
+            return 0;
         }
-        return 0;
+        // last non-zero of automatic progression, declaration, change 1, change 2
+        for (int change = CHANGE2; change >= DECLARATION; change--) {
+            int value = attemptValue(attempt, change);
+            if (value > 0) {
+                return value;
+            }
+        }
+        return automaticProgressionValue(attempt);
     }
 
     /**
@@ -2032,7 +2112,7 @@ public class Athlete {
      * @return the snatch 2 automatic progression
      */
     public String getSnatch2AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(snatch1ActualLift);
+        final int prevVal = attemptValue(1, ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -2098,7 +2178,7 @@ public class Athlete {
      * @return the snatch 3 automatic progression
      */
     public String getSnatch3AutomaticProgression() {
-        final int prevVal = zeroIfInvalid(snatch2ActualLift);
+        final int prevVal = attemptValue(2, ACTUAL);
         return doAutomaticProgression(prevVal);
     }
 
@@ -2190,8 +2270,8 @@ public class Athlete {
     @Transient
     @JsonIgnore
     public int getSnatchTotal() {
-        final int snatchTotal = max(0, zeroIfInvalid(snatch1ActualLift), zeroIfInvalid(snatch2ActualLift),
-                zeroIfInvalid(snatch3ActualLift));
+        final int snatchTotal = Math.max(0,
+                Math.max(attemptValue(1, ACTUAL), Math.max(attemptValue(2, ACTUAL), attemptValue(3, ACTUAL))));
         return snatchTotal;
     }
 
@@ -2356,70 +2436,70 @@ public class Athlete {
         switch (attempt) {
         case 1:
             declaring =
-                    (zeroIfInvalid(snatch1Declaration) > 0) &&
-                    (zeroIfInvalid(snatch1Change1) == 0) &&
-                    (zeroIfInvalid(snatch1Change2) == 0) &&
-                    (zeroIfInvalid(snatch1ActualLift) == 0);
+                    (attemptValue(1, DECLARATION) > 0) &&
+                    (attemptValue(1, CHANGE1) == 0) &&
+                    (attemptValue(1, CHANGE2) == 0) &&
+                    (attemptValue(1, ACTUAL) == 0);
             changing = false;
             break;
         case 2:
             {
                 int ap = zeroIfInvalid(getSnatch2AutomaticProgression());
-                int decl = zeroIfInvalid(snatch2Declaration);
+                int decl = attemptValue(2, DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(snatch2Change1) == 0) &&
-                        (zeroIfInvalid(snatch2Change2) == 0) &&
-                        (zeroIfInvalid(snatch2ActualLift) == 0);
+                        (attemptValue(2, CHANGE1) == 0) &&
+                        (attemptValue(2, CHANGE2) == 0) &&
+                        (attemptValue(2, ACTUAL) == 0);
                 changing = ap != decl;
             }
             break;
         case 3:
             {
                 int ap = zeroIfInvalid(getSnatch3AutomaticProgression());
-                int decl = zeroIfInvalid(snatch3Declaration);
+                int decl = attemptValue(3, DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(snatch3Change1) == 0) &&
-                        (zeroIfInvalid(snatch3Change2) == 0) &&
-                        (zeroIfInvalid(snatch3ActualLift) == 0);
+                        (attemptValue(3, CHANGE1) == 0) &&
+                        (attemptValue(3, CHANGE2) == 0) &&
+                        (attemptValue(3, ACTUAL) == 0);
                 changing = ap != decl;
 
             }
             break;
         case 4:
             declaring =
-                    (zeroIfInvalid(cleanJerk1Declaration) > 0) &&
-                    (zeroIfInvalid(cleanJerk1Change1) == 0) &&
-                    (zeroIfInvalid(cleanJerk1Change2) == 0) &&
-                    (zeroIfInvalid(cleanJerk1ActualLift) == 0);
+                    (attemptValue(4, DECLARATION) > 0) &&
+                    (attemptValue(4, CHANGE1) == 0) &&
+                    (attemptValue(4, CHANGE2) == 0) &&
+                    (attemptValue(4, ACTUAL) == 0);
             changing = false;
             break;
         case 5:
             {
                 int ap = zeroIfInvalid(getCleanJerk2AutomaticProgression());
-                int decl = zeroIfInvalid(cleanJerk2Declaration);
+                int decl = attemptValue(5, DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(cleanJerk2Change1) == 0) &&
-                        (zeroIfInvalid(cleanJerk2Change2) == 0) &&
-                        (zeroIfInvalid(cleanJerk2ActualLift) == 0);
+                        (attemptValue(5, CHANGE1) == 0) &&
+                        (attemptValue(5, CHANGE2) == 0) &&
+                        (attemptValue(5, ACTUAL) == 0);
                 changing = ap != decl;
             }
             break;
         case 6:
             {
                 int ap = zeroIfInvalid(getCleanJerk3AutomaticProgression());
-                int decl = zeroIfInvalid(cleanJerk3Declaration);
+                int decl = attemptValue(6, DECLARATION);
                 declaring =
                         (ap > 0) &&
                         (decl > 0) &&
-                        (zeroIfInvalid(cleanJerk3Change1) == 0) &&
-                        (zeroIfInvalid(cleanJerk3Change2) == 0) &&
-                        (zeroIfInvalid(cleanJerk3ActualLift) == 0);
+                        (attemptValue(6, CHANGE1) == 0) &&
+                        (attemptValue(6, CHANGE2) == 0) &&
+                        (attemptValue(6, ACTUAL) == 0);
                 changing = ap != decl;
             }
             break;
@@ -3933,16 +4013,16 @@ public class Athlete {
         if (!enforce20kg || (entryTotal == 0)) {
             return true;
         }
-        int sn1Decl = zeroIfInvalid(snatch1Declaration);
-        int cj1Decl = zeroIfInvalid(cleanJerk1Declaration);
+        int sn1Decl = attemptValue(1, DECLARATION);
+        int cj1Decl = attemptValue(4, DECLARATION);
         getLogger().trace("prior to checking {} {}", sn1Decl, cj1Decl);
         if (sn1Decl == 0 && cj1Decl == 0) {
             return true; // do not complain on registration form or empty weigh-in form.
         }
 
-        Integer snatch1Request = last(sn1Decl, zeroIfInvalid(snatch1Change1), zeroIfInvalid(snatch1Change2));
+        Integer snatch1Request = last(sn1Decl, attemptValue(1, CHANGE1), attemptValue(1, CHANGE2));
 
-        Integer cleanJerk1Request = last(cj1Decl, zeroIfInvalid(cleanJerk1Change1), zeroIfInvalid(cleanJerk1Change2));
+        Integer cleanJerk1Request = last(cj1Decl, attemptValue(4, CHANGE1), attemptValue(4, CHANGE2));
         return validateStartingTotalsRule(snatch1Request, cleanJerk1Request, entryTotal);
     }
 
@@ -4419,10 +4499,33 @@ public class Athlete {
 
     }
 
-    private Integer max(Integer... items) {
-        List<Integer> itemList = Arrays.asList(items);
-        final Integer max = Collections.max(itemList);
-        return max;
+    /**
+     * @param liftNo 1..6
+     * @return numeric value of the automatic progression for the lift, as given by the getters
+     */
+    private int automaticProgressionValue(int liftNo) {
+        if (liftNo == 1 || liftNo == 4) {
+            return 0;
+        }
+        int prevVal = attemptValue(liftNo - 1, ACTUAL);
+        return prevVal > 0 ? prevVal + 1 : Math.abs(prevVal);
+    }
+
+    /**
+     * @param liftNo 1..6
+     * @param change DECLARATION, CHANGE1, CHANGE2 or ACTUAL
+     * @return the parsed value of the corresponding field, 0 if empty or invalid
+     */
+    private int attemptValue(int liftNo, int change) {
+        if (liftNo < 1 || liftNo > 6) {
+            return 0;
+        }
+        AttemptMatrix m = attemptMatrix;
+        if (m == null || !m.isCurrent(this)) {
+            m = new AttemptMatrix(this);
+            attemptMatrix = m;
+        }
+        return m.values[(liftNo - 1) * 4 + change];
     }
 
     @SuppressWarnings("unused")
@@ -6,19 +6,28 @@
  *******************************************************************************/
 package app.owlcms.data.athlete;
 
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
+import org.hibernate.Session;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.category.Category;
+import app.owlcms.data.category.Participation;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.jpa.JPAService;
@@ -35,6 +44,18 @@ public class AthleteRepository {
         logger.setLevel(Level.INFO);
     }
 
+    /**
+     * Change stamps, per group id, incremented whenever an athlete of the group is saved or deleted. The key
+     * {@link #ALL_GROUPS} is incremented on bulk updates that can affect any athlete.
+     */
+    private static final ConcurrentHashMap<Long, AtomicLong> groupChangeStamps = new ConcurrentHashMap<>();
+
+    private static final Long NO_GROUP = 0L;
+
+    public static final Long ALL_GROUPS = -1L;
+
+    private static final AtomicLong rankWrites = new AtomicLong();
+
     /**
      * Count filtered.
      *
@@ -67,11 +88,15 @@ public class AthleteRepository {
      * @param Athlete the athlete
      */
     public static void delete(Athlete Athlete) {
-        JPAService.runInTransaction(em -> {
-            em.remove(getById(Athlete.getId(), em));
-            Competition.getCurrent().setRankingsInvalid(true);
-            return null;
+        Athlete removed = JPAService.runInTransaction(em -> {
+            Athlete managed = getById(Athlete.getId(), em);
+            Competition.getCurrent().invalidateRankings(managed);
+            em.remove(managed);
+            bumpChangeStamp(Athlete.getGroup());
+            return managed;
         });
+        // rankings recomputed while the transaction was in progress did not see the change.
+        Competition.getCurrent().invalidateRankings(removed);
     }
 
     public static Integer doCountFiltered(String lastName, Group group, Category category, AgeGroup ageGroup,
@@ -133,6 +158,31 @@ public class AthleteRepository {
         return JPAService.runInTransaction(em -> doFindAll(em));
     }
 
+    /**
+     * Read the athletes one page at a time, with their participations, for exports.
+     *
+     * @param offset index of the first athlete, in id order
+     * @param limit  maximum number of athletes returned
+     * @return the athletes, in id order
+     */
+    public static List<Athlete> findAllPage(int offset, int limit) {
+        return JPAService.runInTransaction(em -> {
+            List<Long> ids = em.createQuery("select a.id from Athlete a order by a.id", Long.class)
+                    .setFirstResult(offset)
+                    .setMaxResults(limit)
+                    .getResultList();
+            if (ids.isEmpty()) {
+                return new LinkedList<>();
+            }
+            // fetching the participations in the paged query would page in memory
+            return em.createQuery(
+                    "select distinct a from Athlete a left join fetch a.participations where a.id in :ids order by a.id",
+                    Athlete.class)
+                    .setParameter("ids", ids)
+                    .getResultList();
+        });
+    }
+
     /**
      * Find all by group and weigh in.
      *
@@ -171,25 +221,27 @@ public class AthleteRepository {
     }
 
     /**
-     * Fetch all athletes and participations for the categories present in the group
+     * Fetch all athletes and participations for the categories present in the group.
      *
-     * @param g
-     * @return
+     * The categories of the group are selected by an uncorrelated subquery, evaluated once, and the athletes are read
+     * with their participations and categories in the same query. Only the participations in these categories are
+     * fetched.
+     *
+     * @param g the group
+     * @return the athletes, empty if there is no group
      */
-    @SuppressWarnings("unchecked")
     public static List<Athlete> findAthletesForGlobalRanking(Group g) {
+        if (g == null) {
+            return new LinkedList<>();
+        }
         return JPAService.runInTransaction((em) -> {
-            String categoriesFromCurrentGroup = "(select distinct c2 from Athlete b join b.group g join b.participations p join p.category c2 where g.id = :groupId and c2.id = c.id)";
-            Query q = em.createQuery(
-                    "select distinct a, p from Athlete a join fetch a.participations p join p.category c where exists "
-                            + categoriesFromCurrentGroup);
-            try {
-                q.setParameter("groupId", g.getId());
-            } catch (Exception e) {
-            }
-            @SuppressWarnings("rawtypes")
-            List resultList = q.getResultList();
-            return resultList;
+            String categoriesFromCurrentGroup = "(select c2.id from Athlete b join b.participations p2 join p2.category c2 where b.group.id = :groupId)";
+            TypedQuery<Athlete> q = em.createQuery(
+                    "select distinct a from Athlete a join fetch a.participations p join fetch p.category c where c.id in "
+                            + categoriesFromCurrentGroup,
+                    Athlete.class);
+            q.setParameter("groupId", g.getId());
+            return q.getResultList();
         });
     }
 
@@ -199,6 +251,72 @@ public class AthleteRepository {
         });
     }
 
+    /**
+     * Write the category ranks of participations to the database.
+     *
+     * Only the rank columns are written, as a single JDBC batch; merging the participations instead would read each of
+     * them back before updating the whole row. The participations are removed from the second-level cache once the
+     * update is committed, and the rankings computed for reports that include their athletes are dropped.
+     *
+     * @param participations participations whose snatch, clean and jerk, total or custom rank have changed
+     */
+    public static void updateCategoryRanks(Collection<Participation> participations) {
+        if (participations.isEmpty()) {
+            return;
+        }
+        JPAService.runInTransaction(em -> {
+            em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "update participation set snatchRank = ?, cleanJerkRank = ?, totalRank = ?, customRank = ? where athlete_id = ? and category_id = ?")) {
+                    for (Participation p : participations) {
+                        ps.setInt(1, p.getSnatchRank());
+                        ps.setInt(2, p.getCleanJerkRank());
+                        ps.setInt(3, p.getTotalRank());
+                        ps.setInt(4, p.getCustomRank());
+                        ps.setLong(5, p.getAthlete().getId());
+                        ps.setLong(6, p.getCategory().getId());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+            return null;
+        });
+        Cache cache = JPAService.getFactory().getCache();
+        Map<Long, Athlete> athletes = new HashMap<>();
+        for (Participation p : participations) {
+            cache.evict(Participation.class, p.getId());
+            athletes.putIfAbsent(p.getAthlete().getId(), p.getAthlete());
+        }
+        // rankings rebuilt since the athletes were saved still hold the previous ranks.
+        Competition competition = Competition.getCurrent();
+        for (Athlete a : athletes.values()) {
+            competition.invalidateRankings(a);
+        }
+        rankWrites.addAndGet(participations.size());
+        logger.debug("updated ranks for {} participations", participations.size());
+    }
+
+    /**
+     * @return the number of participations whose ranks have been written by
+     *         {@link #updateCategoryRanks(Collection)} since startup
+     */
+    public static long getRankWriteCount() {
+        return rankWrites.get();
+    }
+
+    /**
+     * Change stamp for the athletes of a group. Callers keeping athletes in memory compare stamps to detect edits
+     * made elsewhere.
+     *
+     * @param groupId the group id, {@link #ALL_GROUPS} for bulk changes, or null for athletes without a group
+     * @return a counter that changes each time an athlete of the group is saved or deleted
+     */
+    public static long getChangeStamp(Long groupId) {
+        AtomicLong stamp = groupChangeStamps.get(groupId != null ? groupId : NO_GROUP);
+        return stamp != null ? stamp.get() : 0L;
+    }
+
     /**
      * Find filtered.
      *
@@ -256,21 +374,16 @@ public class AthleteRepository {
             }
             em.flush();
             Competition.getCurrent().setRankingsInvalid(true);
+            bumpChangeStamp(ALL_GROUPS);
             return null;
         });
         assignCategoryRanks();
     }
 
     private static void assignCategoryRanks() {
-        JPAService.runInTransaction(em -> {
-            // assign ranks to all groups.
-            List<Athlete> l = AthleteSorter.assignCategoryRanks(null);
-            for (Athlete a : l) {
-                em.merge(a);
-            }
-            em.flush();
-            return null;
-        });
+        // assign ranks to all groups, write those that have moved.
+        List<Athlete> l = findAllByGroupAndWeighIn(null, true);
+        updateCategoryRanks(AthleteSorter.reassignCategoryRanks(l));
     }
 
     /**
@@ -280,11 +393,24 @@ public class AthleteRepository {
      * @return the athlete
      */
     public static Athlete save(Athlete athlete) {
-        return JPAService.runInTransaction((em) -> {
-            Competition.getCurrent().setRankingsInvalid(true);
+        Athlete saved = JPAService.runInTransaction((em) -> {
             Athlete merged = em.merge(athlete);
+            Competition.getCurrent().invalidateRankings(merged);
+            bumpChangeStamp(athlete.getGroup());
             return merged;
         });
+        // rankings recomputed while the transaction was in progress did not see the change.
+        Competition.getCurrent().invalidateRankings(saved);
+        return saved;
+    }
+
+    private static void bumpChangeStamp(Group group) {
+        bumpChangeStamp(group != null ? group.getId() : null);
+    }
+
+    private static void bumpChangeStamp(Long groupId) {
+        groupChangeStamps.computeIfAbsent(groupId != null ? groupId : NO_GROUP, (k) -> new AtomicLong())
+                .incrementAndGet();
     }
 
     private static String filteringJoins(Group group, Category category, AgeGroup ageGroup, AgeDivision ageDivision) {
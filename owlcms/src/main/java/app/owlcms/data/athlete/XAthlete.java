@@ -94,6 +94,16 @@ public class XAthlete extends Athlete {
         return a.getAttemptNumber();
     }
 
+    /**
+     * @param liftNo
+     * @return
+     * @see app.owlcms.data.athlete.Athlete#getActualLiftValue(int)
+     */
+    @Override
+    public int getActualLiftValue(int liftNo) {
+        return a.getActualLiftValue(liftNo);
+    }
+
     /**
      * @return
      * @see app.owlcms.data.athlete.Athlete#getAttemptsDone()
@@ -8,8 +8,11 @@ package app.owlcms.data.athleteSort;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.Collectors;
 
@@ -72,15 +75,7 @@ public class AthleteSorter implements Serializable {
             logger.trace("all athletes in all groups {}", impactedAthletes);
         }
 
-        List<Athlete> sortedAthletes;
-        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.SNATCH, true);
-        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.SNATCH);
-        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.CLEANJERK, true);
-        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.CLEANJERK);
-        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.TOTAL, true);
-        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.TOTAL);
-        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.CUSTOM, true);
-        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.CUSTOM);
+        assignAllCategoryRanks(impactedAthletes);
 
 //        if (logger.isEnabledFor(Level.WARN)) {
 //            for (Athlete a : impactedAthletes) {
@@ -91,6 +86,32 @@ public class AthleteSorter implements Serializable {
         return impactedAthletes;
     }
 
+    /**
+     * Assign ranks within each category, and report which participations have new ranks.
+     *
+     * @param impactedAthletes all the athletes in the categories to be ranked
+     * @return the participations whose snatch, clean and jerk, total or custom rank have changed
+     */
+    public static List<Participation> reassignCategoryRanks(List<Athlete> impactedAthletes) {
+        Map<Participation, int[]> previousRanks = new IdentityHashMap<>();
+        for (Athlete a : impactedAthletes) {
+            for (Participation p : a.getParticipations()) {
+                previousRanks.put(p, categoryRanks(p));
+            }
+        }
+
+        assignAllCategoryRanks(impactedAthletes);
+
+        List<Participation> changed = new ArrayList<>();
+        for (Map.Entry<Participation, int[]> e : previousRanks.entrySet()) {
+            if (!Arrays.equals(e.getValue(), categoryRanks(e.getKey()))) {
+                changed.add(e.getKey());
+            }
+        }
+        logger.debug("ranked {} participations, {} changed", previousRanks.size(), changed.size());
+        return changed;
+    }
+
     /**
      * Assign ranks, sequentially.
      *
@@ -103,6 +124,18 @@ public class AthleteSorter implements Serializable {
         AthleteSorter.resultsOrder(sortedList, rankingType, false);
     }
 
+    private static void assignAllCategoryRanks(List<Athlete> impactedAthletes) {
+        List<Athlete> sortedAthletes;
+        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.SNATCH, true);
+        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.SNATCH);
+        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.CLEANJERK, true);
+        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.CLEANJERK);
+        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.TOTAL, true);
+        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.TOTAL);
+        sortedAthletes = AthleteSorter.resultsOrderCopy(impactedAthletes, Ranking.CUSTOM, true);
+        AthleteSorter.assignEligibleCategoryRanks(sortedAthletes, Ranking.CUSTOM);
+    }
+
     /**
      * Assign ranks, sequentially.
      *
@@ -121,6 +154,10 @@ public class AthleteSorter implements Serializable {
 
     }
 
+    private static int[] categoryRanks(Participation p) {
+        return new int[] { p.getSnatchRank(), p.getCleanJerkRank(), p.getTotalRank(), p.getCustomRank() };
+    }
+
     /**
      * Assign lot numbers, sequentially. Normally called by {@link #drawLots(List)}.
      *
@@ -548,7 +585,7 @@ public class AthleteSorter implements Serializable {
      * @param rankingType
      * @return
      */
-    private static double getRankingValue(Athlete curLifter, Ranking rankingType) {
+    static double getRankingValue(Athlete curLifter, Ranking rankingType) {
         switch (rankingType) {
         case SNATCH:
             return curLifter.getBestSnatch();
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.athleteSort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.Participation;
+import app.owlcms.data.group.Group;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * In-memory index of the category rankings for the athletes that share a category with a group.
+ *
+ * For each category and each category-based ranking (snatch, clean&jerk, total, custom score) the athletes are kept in
+ * winning order. When a single athlete changes, only the categories where that athlete participates are re-sorted, and
+ * only the participations whose rank actually moved are returned so that the caller can write them back.
+ *
+ * Each field of play keeps its own index; it is rebuilt from the database when the group is (re)loaded or when
+ * athletes from another group have been edited since the index was built.
+ *
+ * @author Jean-François Lamy
+ */
+public class RankingIndex {
+
+    private static final Ranking[] CATEGORY_RANKINGS = { Ranking.SNATCH, Ranking.CLEANJERK, Ranking.TOTAL,
+            Ranking.CUSTOM };
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(RankingIndex.class);
+
+    private List<Athlete> athletes = new ArrayList<>();
+
+    private Map<String, EnumMap<Ranking, List<Athlete>>> categoryIndexes = new HashMap<>();
+
+    private Map<Long, Long> groupStamps = new HashMap<>();
+
+    private Group group;
+
+    private boolean valid = false;
+
+    /**
+     * @param g       the group for which the index was built
+     * @param changed the athlete that changed
+     * @return true if {@link #update(Athlete)} can be used instead of a full rebuild
+     */
+    public boolean canUpdate(Group g, Athlete changed) {
+        if (!valid || changed == null || !Objects.equals(g, group) || !athletes.contains(changed)) {
+            return false;
+        }
+        // athletes from other groups are only refreshed on rebuild. Rebuild if they were edited elsewhere.
+        for (Map.Entry<Long, Long> stamp : groupStamps.entrySet()) {
+            if (AthleteRepository.getChangeStamp(stamp.getKey()) != stamp.getValue()) {
+                logger.debug("athletes of group {} changed, rebuilding rankings", stamp.getKey());
+                return false;
+            }
+        }
+        return sameCategories(changed);
+    }
+
+    /**
+     * @return all the athletes in the categories of the group, including those lifting in other groups
+     */
+    public List<Athlete> getAthletes() {
+        return athletes;
+    }
+
+    /**
+     * @param category    the category
+     * @param rankingType one of SNATCH, CLEANJERK, TOTAL or CUSTOM
+     * @return the athletes participating in the category, in winning order
+     */
+    public List<Athlete> getSorted(Category category, Ranking rankingType) {
+        EnumMap<Ranking, List<Athlete>> indexes = category != null ? categoryIndexes.get(category.getCode()) : null;
+        if (indexes == null || indexes.get(rankingType) == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(indexes.get(rankingType));
+    }
+
+    /**
+     * Force a rebuild on the next recomputation.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Rank all the athletes from scratch.
+     *
+     * @param g                the group being lifted
+     * @param rankedAthletes all athletes in the categories present in the group
+     * @return the participations whose ranks have changed
+     */
+    public List<Participation> rebuild(Group g, List<Athlete> rankedAthletes) {
+        group = g;
+        categoryIndexes = new HashMap<>();
+        groupStamps = new HashMap<>();
+        groupStamps.put(AthleteRepository.ALL_GROUPS, AthleteRepository.getChangeStamp(AthleteRepository.ALL_GROUPS));
+
+        // guard against duplicate rows coming back from the join
+        Map<Long, Athlete> byId = new LinkedHashMap<>();
+        if (rankedAthletes != null) {
+            for (Athlete a : rankedAthletes) {
+                byId.putIfAbsent(a.getId(), a);
+            }
+        }
+        athletes = new ArrayList<>(byId.values());
+
+        Long groupId = g != null ? g.getId() : null;
+        for (Athlete a : athletes) {
+            Long aGroupId = a.getGroup() != null ? a.getGroup().getId() : null;
+            if (!Objects.equals(aGroupId, groupId)) {
+                groupStamps.computeIfAbsent(aGroupId, (k) -> AthleteRepository.getChangeStamp(k));
+            }
+            for (Participation p : a.getParticipations()) {
+                EnumMap<Ranking, List<Athlete>> indexes = categoryIndexes.computeIfAbsent(p.getCategory().getCode(),
+                        (k) -> new EnumMap<>(Ranking.class));
+                for (Ranking r : CATEGORY_RANKINGS) {
+                    indexes.computeIfAbsent(r, (k) -> new ArrayList<>()).add(a);
+                }
+            }
+        }
+
+        Set<Participation> changed = new LinkedHashSet<>();
+        for (Map.Entry<String, EnumMap<Ranking, List<Athlete>>> indexes : categoryIndexes.entrySet()) {
+            for (Ranking r : CATEGORY_RANKINGS) {
+                sortAndRank(indexes.getKey(), r, indexes.getValue().get(r), changed);
+            }
+        }
+        valid = true;
+        logger.debug("rebuilt rankings for {} athletes, {} ranks changed", athletes.size(), changed.size());
+        return new ArrayList<>(changed);
+    }
+
+    /**
+     * Re-rank the categories where an athlete participates.
+     *
+     * The instance given replaces the one held in the index, since the athlete is typically edited and saved from a
+     * copy. Caller must first check {@link #canUpdate(Group, Athlete)}.
+     *
+     * @param changedAthlete the athlete whose lifts or requested weights have changed
+     * @return the participations whose ranks have changed
+     */
+    public List<Participation> update(Athlete changedAthlete) {
+        int i = athletes.indexOf(changedAthlete);
+        athletes.set(i, changedAthlete);
+
+        Set<Participation> changed = new LinkedHashSet<>();
+        for (Participation p : changedAthlete.getParticipations()) {
+            String categoryCode = p.getCategory().getCode();
+            EnumMap<Ranking, List<Athlete>> indexes = categoryIndexes.get(categoryCode);
+            for (Ranking r : CATEGORY_RANKINGS) {
+                List<Athlete> sorted = indexes.get(r);
+                sorted.set(sorted.indexOf(changedAthlete), changedAthlete);
+                // list is almost sorted, so this is close to linear
+                sortAndRank(categoryCode, r, sorted, changed);
+            }
+        }
+        logger.debug("updated rankings for {}, {} ranks changed", changedAthlete, changed.size());
+        return new ArrayList<>(changed);
+    }
+
+    private int getCategoryRank(Participation p, Ranking r) {
+        switch (r) {
+        case SNATCH:
+            return p.getSnatchRank();
+        case CLEANJERK:
+            return p.getCleanJerkRank();
+        case TOTAL:
+            return p.getTotalRank();
+        case CUSTOM:
+            return p.getCustomRank();
+        default:
+            return 0;
+        }
+    }
+
+    private Participation getParticipation(Athlete a, String categoryCode) {
+        for (Participation p : a.getParticipations()) {
+            if (categoryCode.equals(p.getCategory().getCode())) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    private boolean sameCategories(Athlete changed) {
+        Athlete indexed = athletes.get(athletes.indexOf(changed));
+        if (indexed.getParticipations().size() != changed.getParticipations().size()) {
+            return false;
+        }
+        for (Participation p : changed.getParticipations()) {
+            if (getParticipation(indexed, p.getCategory().getCode()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setCategoryRank(Participation p, Ranking r, int rank) {
+        switch (r) {
+        case SNATCH:
+            p.setSnatchRank(rank);
+            break;
+        case CLEANJERK:
+            p.setCleanJerkRank(rank);
+            break;
+        case TOTAL:
+            p.setTotalRank(rank);
+            break;
+        case CUSTOM:
+            p.setCustomRank(rank);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Same rules as {@link MultiCategoryRankSetter}: ineligible athletes are left alone, athletes without a result get
+     * rank 0, the others are ranked in sequence.
+     */
+    private void sortAndRank(String categoryCode, Ranking r, List<Athlete> sorted, Set<Participation> changed) {
+        sorted.sort(new WinningOrderComparator(r, true));
+        int rank = 0;
+        for (Athlete a : sorted) {
+            if (!a.isEligibleForIndividualRanking()) {
+                continue;
+            }
+            Participation p = getParticipation(a, categoryCode);
+            if (p == null) {
+                continue;
+            }
+            int newRank = AthleteSorter.getRankingValue(a, r) > 0 ? ++rank : 0;
+            if (getCategoryRank(p, r) != newRank) {
+                setCategoryRank(p, r, newRank);
+                changed.add(p);
+            }
+        }
+    }
+
+}
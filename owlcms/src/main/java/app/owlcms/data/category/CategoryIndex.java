@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.jpa.JPAService;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Active categories by age group age range and body weight range, for the lookups done when an athlete is
+ * registered, uploaded or weighed in.
+ *
+ * The index only holds identifiers and bounds. The categories found are read by id, which the second-level cache
+ * normally serves without a database query; the callers get their own instances, as they did from a query.
+ *
+ * The index is rebuilt from the database on first use after {@link #invalidate()}, which the repositories call after
+ * committing a change to categories or age groups.
+ *
+ * @author Jean-François Lamy
+ */
+class CategoryIndex {
+
+    /**
+     * Categories of one age group, sorted by maximum weight.
+     */
+    private static final class AgeGroupEntry {
+        final AgeDivision ageDivision;
+        final int minAge;
+        final int maxAge;
+        final long[] categoryIds;
+        final Gender[] genders;
+        final double[] minimumWeights;
+        final double[] maximumWeights;
+
+        AgeGroupEntry(AgeDivision ageDivision, int minAge, int maxAge, List<Object[]> categories) {
+            this.ageDivision = ageDivision;
+            this.minAge = minAge;
+            this.maxAge = maxAge;
+            int size = categories.size();
+            categoryIds = new long[size];
+            genders = new Gender[size];
+            minimumWeights = new double[size];
+            maximumWeights = new double[size];
+            for (int i = 0; i < size; i++) {
+                Object[] c = categories.get(i);
+                categoryIds[i] = (Long) c[CATEGORY_ID];
+                genders[i] = (Gender) c[GENDER];
+                // a missing bound never matches, as in the query.
+                minimumWeights[i] = c[MIN_WEIGHT] != null ? (Double) c[MIN_WEIGHT] : Double.NaN;
+                maximumWeights[i] = c[MAX_WEIGHT] != null ? (Double) c[MAX_WEIGHT] : Double.NaN;
+            }
+        }
+
+        void find(Gender gender, Double bodyWeight, List<Long> found) {
+            int i = 0;
+            if (bodyWeight != null) {
+                // first category whose maximum is not below the body weight.
+                i = Arrays.binarySearch(maximumWeights, bodyWeight);
+                if (i < 0) {
+                    i = -i - 1;
+                } else {
+                    while (i > 0 && maximumWeights[i - 1] == bodyWeight) {
+                        i--;
+                    }
+                }
+            }
+            for (; i < categoryIds.length; i++) {
+                if (gender != null && gender != genders[i]) {
+                    continue;
+                }
+                if (bodyWeight != null && !(minimumWeights[i] < bodyWeight && maximumWeights[i] >= bodyWeight)) {
+                    continue;
+                }
+                found.add(categoryIds[i]);
+            }
+        }
+    }
+
+    private static final int CATEGORY_ID = 0;
+    private static final int AGE_GROUP_ID = 1;
+    private static final int AGE_DIVISION = 2;
+    private static final int GENDER = 3;
+    private static final int MIN_AGE = 4;
+    private static final int MAX_AGE = 5;
+    private static final int MIN_WEIGHT = 6;
+    private static final int MAX_WEIGHT = 7;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(CategoryIndex.class);
+
+    private static volatile CategoryIndex current;
+
+    private static final AtomicLong changeCount = new AtomicLong();
+
+    private static final AtomicLong rebuilds = new AtomicLong();
+
+    /**
+     * @return the index for the categories currently in the database
+     */
+    static CategoryIndex get() {
+        CategoryIndex index = current;
+        if (index != null) {
+            return index;
+        }
+        long startingCount = changeCount.get();
+        index = build();
+        current = index;
+        // an invalidation may have happened while we were reading; it incremented the count first.
+        if (changeCount.get() != startingCount) {
+            current = null;
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of times the index was read from the database
+     */
+    static long getRebuildCount() {
+        return rebuilds.get();
+    }
+
+    /**
+     * Drop the index, after categories or age groups have been changed.
+     */
+    static void invalidate() {
+        changeCount.incrementAndGet();
+        current = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CategoryIndex build() {
+        List<Object[]> rows = JPAService.runInTransaction(em -> em.createQuery(
+                "select c.id, ag.id, ag.ageDivision, c.gender, ag.minAge, ag.maxAge, c.minimumWeight, c.maximumWeight "
+                        + "from Category c join c.ageGroup ag where ag.active = true")
+                .getResultList());
+        // same order as the queries used before, so the preference sort breaks ties the same way.
+        rows.sort(Comparator
+                .comparing((Object[] r) -> r[AGE_DIVISION] != null ? ((AgeDivision) r[AGE_DIVISION]).name() : "")
+                .thenComparing((Object[] r) -> r[GENDER] != null ? ((Gender) r[GENDER]).name() : "")
+                .thenComparingInt((Object[] r) -> (Integer) r[MIN_AGE])
+                .thenComparingInt((Object[] r) -> (Integer) r[MAX_AGE])
+                .thenComparingLong((Object[] r) -> (Long) r[AGE_GROUP_ID])
+                .thenComparingDouble((Object[] r) -> r[MAX_WEIGHT] != null ? (Double) r[MAX_WEIGHT] : Double.NaN));
+
+        List<AgeGroupEntry> ageGroups = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !rows.get(i)[AGE_GROUP_ID].equals(rows.get(start)[AGE_GROUP_ID])) {
+                Object[] first = rows.get(start);
+                ageGroups.add(new AgeGroupEntry((AgeDivision) first[AGE_DIVISION], (Integer) first[MIN_AGE],
+                        (Integer) first[MAX_AGE], rows.subList(start, i)));
+                start = i;
+            }
+        }
+        rebuilds.incrementAndGet();
+        logger.debug("indexed {} categories in {} age groups", rows.size(), ageGroups.size());
+        return new CategoryIndex(ageGroups);
+    }
+
+    private final List<AgeGroupEntry> ageGroups;
+
+    private CategoryIndex(List<AgeGroupEntry> ageGroups) {
+        this.ageGroups = ageGroups;
+    }
+
+    /**
+     * Active categories, as found by {@link CategoryRepository#findFiltered} with the same criteria.
+     *
+     * @param gender      null for all
+     * @param ageDivision null for all
+     * @param age         null for all
+     * @param bodyWeight  null for all
+     * @return the categories, not sorted by preference
+     */
+    List<Category> find(Gender gender, AgeDivision ageDivision, Integer age, Double bodyWeight) {
+        List<Long> ids = new ArrayList<>();
+        for (AgeGroupEntry ag : ageGroups) {
+            if (ageDivision != null && ageDivision != ag.ageDivision) {
+                continue;
+            }
+            if (age != null && (ag.minAge > age || ag.maxAge < age)) {
+                continue;
+            }
+            ag.find(gender, bodyWeight, ids);
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return JPAService.runInTransaction(em -> {
+            List<Category> categories = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                Category c = em.find(Category.class, id);
+                if (c == null) {
+                    // deleted without the index being told.
+                    logger./**/warn("category {} no longer exists, reindexing", id);
+                    invalidate();
+                    continue;
+                }
+                AgeGroup ag = c.getAgeGroup();
+                if (ag != null) {
+                    // read now, the preference order uses it once the transaction is closed.
+                    ag.getAgeDivision();
+                }
+                categories.add(c);
+            }
+            return categories;
+        });
+    }
+
+}
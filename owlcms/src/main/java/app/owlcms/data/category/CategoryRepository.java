@@ -13,6 +13,7 @@ import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
+import org.hibernate.annotations.QueryHints;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.agegroup.AgeGroup;
@@ -57,6 +58,7 @@ public class CategoryRepository {
             em.remove(getById(Category.getId(), em));
             return null;
         });
+        invalidateIndex();
     }
 
     public static Integer doCountFiltered(String name, Gender gender, AgeDivision ageDivision, AgeGroup ageGroup,
@@ -97,6 +99,7 @@ public class CategoryRepository {
         logger.trace("query = {}", qlString);
 
         Query query = em.createQuery(qlString);
+        query.setHint(QueryHints.CACHEABLE, true);
         setFilteringParameters(name, gender, ageDivision, ageGroup, age, bodyWeight, active, query);
         if (offset >= 0) {
             query.setFirstResult(offset);
@@ -121,9 +124,7 @@ public class CategoryRepository {
     }
 
     public static Collection<Category> findActive(Gender gender, Double bodyWeight) {
-        List<Category> findFiltered = findFiltered((String) null, gender, (AgeDivision) null, (AgeGroup) null,
-                (Integer) null,
-                bodyWeight, true, -1, -1);
+        List<Category> findFiltered = CategoryIndex.get().find(gender, (AgeDivision) null, (Integer) null, bodyWeight);
         // sort comparison to put more specific category age before. M30 before O21, O21 also before SR (MASTERS, then
         // U, then IWF/other)
         findFiltered.sort(new RegistrationPreferenceComparator());
@@ -153,21 +154,27 @@ public class CategoryRepository {
         });
     }
 
+    /**
+     * Active categories for an athlete, from the in-memory index.
+     *
+     * @return the categories, best match first
+     */
     public static List<Category> findByGenderAgeBW(Gender gender, Integer age, Double bodyWeight) {
-        Boolean active = true;
-        List<Category> findFiltered = findFiltered((String) null, gender, (AgeDivision) null, (AgeGroup) null, age,
-                bodyWeight, active, -1, -1);
+        List<Category> findFiltered = CategoryIndex.get().find(gender, (AgeDivision) null, age, bodyWeight);
         // sort comparison to put more specific category age before. M30 before O21, O21 also before SR (MASTERS, then
         // U, then IWF/other)
         findFiltered.sort(new RegistrationPreferenceComparator());
         return findFiltered;
     }
 
+    /**
+     * Active categories in an age division, from the in-memory index.
+     *
+     * @return the categories, best match first
+     */
     public static List<Category> findByGenderDivisionAgeBW(Gender gender, AgeDivision ageDivision, Integer age,
             Double bodyWeight) {
-        Boolean active = true;
-        List<Category> findFiltered = findFiltered((String) null, gender, ageDivision, (AgeGroup) null, age, bodyWeight,
-                active, -1, -1);
+        List<Category> findFiltered = CategoryIndex.get().find(gender, ageDivision, age, bodyWeight);
         findFiltered.sort(new RegistrationPreferenceComparator());
         return findFiltered;
     }
@@ -227,7 +234,24 @@ public class CategoryRepository {
      * @return the category
      */
     public static Category save(Category Category) {
-        return JPAService.runInTransaction(em -> em.merge(Category));
+        Category saved = JPAService.runInTransaction(em -> em.merge(Category));
+        invalidateIndex();
+        return saved;
+    }
+
+    /**
+     * Rebuild the category lookup index on next use. To be called after categories or age groups have been changed
+     * other than through this class.
+     */
+    public static void invalidateIndex() {
+        CategoryIndex.invalidate();
+    }
+
+    /**
+     * @return the number of times the category lookup index was read from the database
+     */
+    public static long getIndexRebuildCount() {
+        return CategoryIndex.getRebuildCount();
     }
 
     private static String filteringJoins(AgeGroup ag, Integer age) {
@@ -6,7 +6,6 @@
  *******************************************************************************/
 package app.owlcms.data.category;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -15,14 +14,12 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.ObjectUtils;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.agegroup.AgeGroupDefinitionReader;
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.spreadsheet.DefinitionWorkbook;
 import app.owlcms.utils.LoggerUtils;
-import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
 
 /**
@@ -110,8 +107,8 @@ public class RobiCategories {
 
     private static void loadJrSrReferenceCategories() {
         String localizedName = "/agegroups/AgeGroups.xlsx";
-        InputStream localizedResourceAsStream = ResourceWalker.getResourceAsStream(localizedName);
-        try (Workbook workbook = WorkbookFactory.create(localizedResourceAsStream)) {
+        try {
+            DefinitionWorkbook workbook = DefinitionWorkbook.load(localizedName);
             Map<String, Category> referenceCategoryMap = AgeGroupDefinitionReader.createCategoryTemplates(workbook);
             // get the IWF categories, sorted.
             jrSrReferenceCategories = referenceCategoryMap.values()
@@ -120,7 +117,6 @@ public class RobiCategories {
                     .sorted()
                     // .peek(c -> {logger.trace(c.getCode());})
                     .collect(Collectors.toCollection(ArrayList::new));
-            workbook.close();
         } catch (Exception e) {
             logger.error("could not process ageGroup configuration\n{}", LoggerUtils./**/stackTrace(e));
         }
@@ -139,8 +135,8 @@ public class RobiCategories {
 
     private static void loadYthReferenceCategories() {
         String localizedName = "/agegroups/AgeGroups.xlsx";
-        InputStream localizedResourceAsStream = ResourceWalker.getResourceAsStream(localizedName);
-        try (Workbook workbook = WorkbookFactory.create(localizedResourceAsStream)) {
+        try {
+            DefinitionWorkbook workbook = DefinitionWorkbook.load(localizedName);
             Map<String, Category> referenceCategoryMap = AgeGroupDefinitionReader.createCategoryTemplates(workbook);
             // get the IWF categories, sorted.
             ythReferenceCategories = referenceCategoryMap.values()
@@ -149,7 +145,6 @@ public class RobiCategories {
                     .sorted()
                     // .peek(c -> {logger.trace(c.getCode());})
                     .collect(Collectors.toCollection(ArrayList::new));
-            workbook.close();
         } catch (Exception e) {
             logger.error("could not process ageGroup configuration\n{}", LoggerUtils./**/stackTrace(e));
         }
@@ -14,8 +14,9 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.persistence.Cacheable;
@@ -44,6 +45,7 @@ import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.spreadsheet.PAthlete;
 import app.owlcms.ui.results.Resource;
+import app.owlcms.uievents.GlobalRankingPublisher;
 import app.owlcms.utils.DateTimeUtils;
 import app.owlcms.utils.ResourceWalker;
 import app.owlcms.utils.StartupUtils;
@@ -59,7 +61,12 @@ import ch.qos.logback.classic.Logger;
 public class Competition {
 
     public static final int SHORT_TEAM_LENGTH = 6;
-    private static Competition competition;
+    private static volatile Competition competition;
+
+    private static final AtomicLong version = new AtomicLong();
+
+    /** lists computed from all the weighed-in athletes, independently of age groups */
+    private static final Set<String> GLOBAL_LISTS = Set.of("mSinclair", "wSinclair", "mSmm", "wSmm");
 
     @Transient
     final static private Logger logger = (Logger) LoggerFactory.getLogger(Competition.class);
@@ -75,14 +82,40 @@ public class Competition {
      * @return the current
      */
     public static Competition getCurrent() {
-        if (competition == null) {
-            competition = CompetitionRepository.findAll().get(0);
+        Competition c = competition;
+        if (c == null) {
+            synchronized (Competition.class) {
+                c = competition;
+                if (c == null) {
+                    c = CompetitionRepository.findAll().get(0);
+                    competition = c;
+                }
+            }
         }
-        return competition;
+        return c;
+    }
+
+    /**
+     * @return a counter incremented each time the current competition is replaced; callers that derive values from
+     *         the competition can compare it with the value they saw last.
+     */
+    public static long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Force the competition to be read again from the database (after it has been deleted or replaced).
+     */
+    public static void invalidateCurrent() {
+        setCurrent(null);
     }
 
     public static void setCurrent(Competition c) {
-        competition = c;
+        synchronized (Competition.class) {
+            competition = c;
+            version.incrementAndGet();
+        }
+        GlobalRankingPublisher.get().invalidate();
     }
 
     public static void splitByGender(List<Athlete> athletes, List<Athlete> sortedMen, List<Athlete> sortedWomen) {
@@ -174,9 +207,20 @@ public class Competition {
 
     private String protocolFileName;
 
+    /**
+     * Work area while rankings are computed; last result returned for {@link #getReportingBeans()}.
+     */
     @Transient
     private HashMap<String, Object> reportingBeans = new HashMap<>();
 
+    @Transient
+    @JsonIgnore
+    private transient volatile HashMap<String, Object> lastReportingBeans = new HashMap<>();
+
+    @Transient
+    @JsonIgnore
+    private transient ReportingCache reportingCache = new ReportingCache();
+
     /**
      * Do not require month and day for birth.
      */
@@ -204,19 +248,37 @@ public class Competition {
     @Column(columnDefinition = "integer default 10")
     private Integer womensTeamSize = 10;
 
-    @Transient
-    private boolean rankingsInvalid = true;
-
-    synchronized public HashMap<String, Object> computeReportingInfo() {
-        List<PAthlete> athletes = AgeGroupRepository.allPAthletesForAgeGroupAgeDivision(null, null);
-        doComputeReportingInfo(true, athletes, (String) null, null);
-        return reportingBeans;
+    public HashMap<String, Object> computeReportingInfo() {
+        return computeReportingInfo(null, null);
     }
 
-    synchronized public HashMap<String, Object> computeReportingInfo(String ageGroupPrefix, AgeDivision ad) {
-        List<PAthlete> athletes = AgeGroupRepository.allPAthletesForAgeGroupAgeDivision(ageGroupPrefix, ad);
-        doComputeReportingInfo(true, athletes, ageGroupPrefix, ad);
-        return reportingBeans;
+    /**
+     * Rankings and lists for the reports, for an age group or an age division (null for all).
+     *
+     * The rankings are computed once and reused until an athlete they depend on is saved.
+     *
+     * @param ageGroupPrefix
+     * @param ad
+     * @return a new map, which the caller may modify. The lists it contains are shared and must not be modified.
+     */
+    public HashMap<String, Object> computeReportingInfo(String ageGroupPrefix, AgeDivision ad) {
+        ReportingCache.Snapshot snapshot = getRankings(ageGroupPrefix, ad);
+        HashMap<String, Object> beans = new HashMap<>(snapshot.beans);
+        if (!beans.isEmpty()) {
+            // not dependent on athletes, so not kept
+            beans.put("competition", Competition.getCurrent());
+            beans.put("groups", GroupRepository.findAll().stream().sorted((a, b) -> {
+                int compare = ObjectUtils.compare(a.getWeighInTime(), b.getWeighInTime(), true);
+                if (compare != 0) {
+                    return compare;
+                }
+                return compare = ObjectUtils.compare(a.getPlatform(), b.getPlatform(), true);
+            }).collect(Collectors.toList()));
+            beans.put("t", Translator.getMap());
+            beans.putAll(getGlobalRankings().beans);
+        }
+        lastReportingBeans = beans;
+        return beans;
     }
 
     @Override
@@ -345,7 +407,7 @@ public class Competition {
     
     @Transient
     @JsonIgnore
-    synchronized public List<Athlete> getGlobalSinclairRanking(Gender gender) {
+    public List<Athlete> getGlobalSinclairRanking(Gender gender) {
         return getListOrElseRecompute(gender == Gender.F ? "wSinclair" : "mSinclair");
     }
 
@@ -367,28 +429,23 @@ public class Competition {
         return 0;
     }
 
+    /**
+     * @param listName a list computed for the reports, for all the athletes
+     * @return the list, shared, not to be modified
+     */
     @SuppressWarnings("unchecked")
     @Transient
     @JsonIgnore
-    synchronized public List<Athlete> getListOrElseRecompute(String listName) {
-        List<Athlete> athletes = (List<Athlete>) reportingBeans.get(listName);
-        if (isRankingsInvalid() || athletes == null) {
-            setRankingsInvalid(true);
-            while (isRankingsInvalid()) { // could be made invalid again while we compute
-                setRankingsInvalid(false);
-                // recompute because an athlete has been saved (new weight requested, good/bad lift, etc.)
-                computeReportingInfo();
-                athletes = (List<Athlete>) reportingBeans.get(listName);
-                if (athletes == null) {
-                    String error = MessageFormat.format("list {0} not found", listName);
-                    logger./**/warn(error);
-                    athletes = Collections.emptyList();
-                }
-            }
-            logger.debug("recomputed {} size {} from {}", listName, athletes != null ? athletes.size() : null);
-        } else {
-            logger.debug("found {} size {} from {}", listName, athletes != null ? athletes.size() : null);
+    public List<Athlete> getListOrElseRecompute(String listName) {
+        ReportingCache.Snapshot snapshot = GLOBAL_LISTS.contains(listName) ? getGlobalRankings()
+                : getRankings(null, null);
+        List<Athlete> athletes = (List<Athlete>) snapshot.beans.get(listName);
+        if (athletes == null) {
+            String error = MessageFormat.format("list {0} not found", listName);
+            logger./**/warn(error);
+            athletes = Collections.emptyList();
         }
+        logger.debug("found {} size {}", listName, athletes.size());
         return athletes;
     }
 
@@ -428,8 +485,11 @@ public class Competition {
         }
     }
 
+    /**
+     * @return the result of the last call to {@link #computeReportingInfo(String, AgeDivision)}
+     */
     public HashMap<String, Object> getReportingBeans() {
-        return reportingBeans;
+        return lastReportingBeans;
     }
 
     @Transient
@@ -484,8 +544,21 @@ public class Competition {
         return mastersGenderEquality;
     }
 
-    synchronized public boolean isRankingsInvalid() {
-        return rankingsInvalid;
+    /**
+     * @return true if the rankings for all the athletes will be recomputed on next use
+     */
+    public boolean isRankingsInvalid() {
+        return reportingCache.get(null, null) == null;
+    }
+
+    /**
+     * Drop the rankings where an athlete appears or now belongs, after the athlete is saved or deleted.
+     *
+     * @param athlete
+     */
+    public void invalidateRankings(Athlete athlete) {
+        reportingCache.invalidate(athlete);
+        GlobalRankingPublisher.get().invalidate();
     }
 
     public boolean isRoundRobinOrder() {
@@ -670,8 +743,14 @@ public class Competition {
         this.protocolFileName = protocolFileName;
     }
 
-    synchronized public void setRankingsInvalid(boolean invalid) {
-        this.rankingsInvalid = invalid;
+    /**
+     * @param invalid if true, all the rankings are recomputed on next use.
+     */
+    public void setRankingsInvalid(boolean invalid) {
+        if (invalid) {
+            reportingCache.invalidateAll();
+            GlobalRankingPublisher.get().invalidate();
+        }
     }
 
     public void setRoundRobinOrder(boolean roundRobinOrder) {
@@ -732,16 +811,6 @@ public class Competition {
 
         reportingBeans.clear();
 
-        reportingBeans.put("competition", Competition.getCurrent());
-        reportingBeans.put("groups", GroupRepository.findAll().stream().sorted((a, b) -> {
-            int compare = ObjectUtils.compare(a.getWeighInTime(), b.getWeighInTime(), true);
-            if (compare != 0) {
-                return compare;
-            }
-            return compare = ObjectUtils.compare(a.getPlatform(), b.getPlatform(), true);
-        }).collect(Collectors.toList()));
-        reportingBeans.put("t", Translator.getMap());
-
         // sort only, use ranks stored in database
         sortedAthletes = AthleteSorter.resultsOrderCopy(athletes, Ranking.SNATCH, false);
         sortedMen = new ArrayList<>(sortedAthletes.size());
@@ -817,32 +886,27 @@ public class Competition {
 
     private void doComputeReportingInfo(boolean full, List<PAthlete> athletes, String ageGroupPrefix,
             AgeDivision ad) {
-        // reporting does many database queries. fork a low-priority thread.
-        runInThread(() -> {
-            if (athletes.isEmpty()) {
-                // prevent outputting silliness.
-                logger./**/warn("no athletes");
-                reportingBeans.clear();
-                return;
-            }
+        if (athletes.isEmpty()) {
+            // prevent outputting silliness.
+            logger./**/warn("no athletes");
+            reportingBeans.clear();
+            return;
+        }
 
-            // the ranks within a category are stored in the database and
-            // not recomputed
-            categoryRankings(athletes);
-
-            // splitResultsByGroups(athletes);
-            if (full) {
-                reportingBeans.put("athletes", athletes);
-                if (ageGroupPrefix == null || ageGroupPrefix.isBlank()) {
-                    // iterate over all age groups present in age division ad
-                    teamRankingsForAgeDivision(ad);
-                } else {
-                    teamRankings(athletes, ageGroupPrefix);
-                }
-            }
+        // the ranks within a category are stored in the database and
+        // not recomputed
+        categoryRankings(athletes);
 
-            globalRankings();
-        }, Thread.MIN_PRIORITY);
+        // splitResultsByGroups(athletes);
+        if (full) {
+            reportingBeans.put("athletes", athletes);
+            if (ageGroupPrefix == null || ageGroupPrefix.isBlank()) {
+                // iterate over all age groups present in age division ad
+                teamRankingsForAgeDivision(ad);
+            } else {
+                teamRankings(athletes, ageGroupPrefix);
+            }
+        }
     }
 
     private String doFindFinalPackageTemplateFileName(String absoluteRoot) {
@@ -941,7 +1005,51 @@ public class Competition {
         return list;
     }
 
-    private void globalRankings() {
+    /**
+     * @return the rankings covering all the weighed-in athletes, recomputed if an athlete has changed
+     */
+    private ReportingCache.Snapshot getGlobalRankings() {
+        ReportingCache.Snapshot snapshot = reportingCache.getGlobal();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = reportingCache.getGlobal();
+            if (snapshot == null) {
+                long changeCount = reportingCache.getChangeCount();
+                reportingBeans = new HashMap<>();
+                List<Athlete> athletes = globalRankings();
+                snapshot = new ReportingCache.Snapshot(null, null, reportingBeans, athletes);
+                reportingCache.putGlobal(snapshot, changeCount);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the rankings for the age group or division, recomputed if an athlete they include has changed
+     */
+    private ReportingCache.Snapshot getRankings(String ageGroupPrefix, AgeDivision ad) {
+        ReportingCache.Snapshot snapshot = reportingCache.get(ageGroupPrefix, ad);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            snapshot = reportingCache.get(ageGroupPrefix, ad);
+            if (snapshot == null) {
+                long changeCount = reportingCache.getChangeCount();
+                List<PAthlete> athletes = AgeGroupRepository.allPAthletesForAgeGroupAgeDivision(ageGroupPrefix, ad);
+                reportingBeans = new HashMap<>();
+                doComputeReportingInfo(true, athletes, ageGroupPrefix, ad);
+                snapshot = new ReportingCache.Snapshot(ageGroupPrefix, ad, reportingBeans, athletes);
+                reportingCache.put(snapshot, changeCount);
+                logger.debug("computed rankings for {} {}", ageGroupPrefix, ad);
+            }
+        }
+        return snapshot;
+    }
+
+    private List<Athlete> globalRankings() {
         List<Athlete> athletes = AthleteRepository.findAllByGroupAndWeighIn(null, true);
         List<Athlete> sortedAthletes;
         List<Athlete> sortedMen;
@@ -966,6 +1074,7 @@ public class Competition {
         reportingBeans.put("wSmm", sortedWomen);
         logger.debug("mSmm {}", sortedMen);
         logger.debug("wSmm {}", sortedWomen);
+        return athletes;
     }
 
     private void reportCombined(List<Athlete> sortedAthletes, List<Athlete> sortedMen, List<Athlete> sortedWomen) {
@@ -1028,25 +1137,6 @@ public class Competition {
         }
     }
 
-    private void runInThread(Runnable runnable, int priority) {
-        Thread t = new Thread(runnable);
-        AtomicReference<Throwable> errorReference = new AtomicReference<>();
-        t.setUncaughtExceptionHandler((th, ex) -> {
-            errorReference.set(ex);
-        });
-        t.setPriority(priority);
-        try {
-            t.start();
-            t.join();
-            Throwable throwable = errorReference.get();
-            if (throwable != null) {
-                throw new RuntimeException(throwable);
-            }
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     @SuppressWarnings({ "unchecked", "unused" })
     private void splitResultsByGroups(List<PAthlete> athletes) {
         // create one list per competition group
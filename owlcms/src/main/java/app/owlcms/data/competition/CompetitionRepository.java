@@ -13,6 +13,8 @@ import javax.persistence.Query;
 
 import org.slf4j.LoggerFactory;
 
+import app.owlcms.data.category.CategoryRepository;
+import app.owlcms.data.config.Config;
 import app.owlcms.data.jpa.JPAService;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -37,6 +39,7 @@ public class CompetitionRepository {
             em.remove(getById(Competition.getId(), em));
             return null;
         });
+        app.owlcms.data.competition.Competition.invalidateCurrent();
     }
 
     /**
@@ -87,6 +90,9 @@ public class CompetitionRepository {
             logger.info("deleted {} competition", deletedCount);
             return null;
         });
+        Config.invalidateCurrent();
+        Competition.invalidateCurrent();
+        CategoryRepository.invalidateIndex();
     }
 
     /**
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.data.competition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.category.AgeDivision;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.Participation;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Rankings computed by {@link Competition} for the reports and the result displays, kept until they become stale.
+ *
+ * Rankings are kept separately for each age group and age division requested, and for the rankings that cover all
+ * the athletes (Sinclair, SMM). When an athlete changes, only the rankings where the athlete appears, or where the
+ * athlete's participations would now place them, are dropped; the others remain available without recomputation.
+ *
+ * Snapshots are not modified once published, so readers do not lock.
+ *
+ * @author Jean-François Lamy
+ */
+class ReportingCache {
+
+    /**
+     * Rankings for a given scope. The beans and the lists they contain must not be modified.
+     */
+    static final class Snapshot {
+        final String ageGroupPrefix;
+        final AgeDivision ageDivision;
+        final Map<String, Object> beans;
+        private final Set<Long> athleteIds;
+
+        Snapshot(String ageGroupPrefix, AgeDivision ageDivision, Map<String, Object> beans,
+                Collection<? extends Athlete> athletes) {
+            this.ageGroupPrefix = ageGroupPrefix;
+            this.ageDivision = ageDivision;
+            this.beans = Collections.unmodifiableMap(new HashMap<>(beans));
+            this.athleteIds = new HashSet<>();
+            for (Athlete a : athletes) {
+                athleteIds.add(a.getId());
+            }
+        }
+
+        /**
+         * @param athleteId the athlete that has been saved or deleted
+         * @param ageGroups the age groups of the athlete's participations, null if unknown
+         * @return true if the athlete appears in the rankings, or may now belong to them
+         */
+        boolean isTouchedBy(Long athleteId, List<AgeGroup> ageGroups) {
+            if (athleteIds.contains(athleteId) || ageGroups == null) {
+                return true;
+            }
+            if ((ageGroupPrefix == null || ageGroupPrefix.isBlank()) && ageDivision == null) {
+                return true;
+            }
+            for (AgeGroup ag : ageGroups) {
+                boolean prefixOk = ageGroupPrefix == null || ageGroupPrefix.isBlank()
+                        || ageGroupPrefix.equals(ag.getCode());
+                boolean divisionOk = ageDivision == null || ageDivision == ag.getAgeDivision();
+                if (prefixOk && divisionOk) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final String GLOBAL = "*global*";
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(ReportingCache.class);
+
+    /**
+     * @return the age groups where the athlete participates, null if they cannot be read (detached athlete)
+     */
+    private static List<AgeGroup> ageGroups(Athlete a) {
+        try {
+            List<AgeGroup> ageGroups = new ArrayList<>();
+            for (Participation p : a.getParticipations()) {
+                Category c = p.getCategory();
+                AgeGroup ag = c != null ? c.getAgeGroup() : null;
+                if (ag != null) {
+                    // read now, so the values remain available after the transaction
+                    ag.getCode();
+                    ageGroups.add(ag);
+                }
+            }
+            return ageGroups;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String key(String ageGroupPrefix, AgeDivision ageDivision) {
+        return (ageGroupPrefix == null || ageGroupPrefix.isBlank() ? "" : ageGroupPrefix) + "/"
+                + (ageDivision == null ? "" : ageDivision.name());
+    }
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * @return a counter incremented on every invalidation; a computation records it before reading the database
+     */
+    long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * @return the rankings covering all athletes, null if not computed or stale
+     */
+    Snapshot getGlobal() {
+        return snapshots.get(GLOBAL);
+    }
+
+    /**
+     * @return the rankings for the age group and division, null if not computed or stale
+     */
+    Snapshot get(String ageGroupPrefix, AgeDivision ageDivision) {
+        return snapshots.get(key(ageGroupPrefix, ageDivision));
+    }
+
+    /**
+     * Drop all the rankings, after a change that may affect any athlete.
+     */
+    void invalidateAll() {
+        changeCount.incrementAndGet();
+        snapshots.clear();
+    }
+
+    /**
+     * Drop the rankings affected by a change to an athlete.
+     *
+     * @param a the athlete saved or deleted
+     */
+    void invalidate(Athlete a) {
+        changeCount.incrementAndGet();
+        Long athleteId = a.getId();
+        List<AgeGroup> ageGroups = ageGroups(a);
+        snapshots.entrySet().removeIf((e) -> {
+            boolean touched = e.getValue().isTouchedBy(athleteId, ageGroups);
+            if (touched) {
+                logger.trace("{} invalidated by {}", e.getKey(), a.getShortName());
+            }
+            return touched;
+        });
+    }
+
+    /**
+     * Keep rankings, unless something was invalidated while they were computed.
+     *
+     * @param snapshot      the rankings
+     * @param startingCount value of {@link #getChangeCount()} before the computation
+     */
+    void put(Snapshot snapshot, long startingCount) {
+        doPut(key(snapshot.ageGroupPrefix, snapshot.ageDivision), snapshot, startingCount);
+    }
+
+    /**
+     * Keep the rankings covering all athletes, unless something was invalidated while they were computed.
+     */
+    void putGlobal(Snapshot snapshot, long startingCount) {
+        doPut(GLOBAL, snapshot, startingCount);
+    }
+
+    private void doPut(String key, Snapshot snapshot, long startingCount) {
+        if (changeCount.get() != startingCount) {
+            return;
+        }
+        snapshots.put(key, snapshot);
+        // an invalidation may have run between the check and the put; it incremented the count first.
+        if (changeCount.get() != startingCount) {
+            snapshots.remove(key, snapshot);
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ package app.owlcms.data.config;
 import java.util.Locale;
 import java.util.Random;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.Cacheable;
 import javax.persistence.Column;
@@ -45,19 +46,43 @@ public class Config {
     @Transient
     final static private Logger logger = (Logger) LoggerFactory.getLogger(Config.class);
 
-    private static Config current;
+    private static volatile Config current;
+
+    private static final AtomicLong version = new AtomicLong();
 
     /**
      * Gets the current.
      *
+     * The configuration is read from the database once, and replaced when saved through {@link #setCurrent(Config)}.
+     * The instance returned is shared; to edit the configuration, read a copy with {@link ConfigRepository#findAll()}
+     * and save it with {@link #setCurrent(Config)}.
+     *
      * @return the current
      */
     public static Config getCurrent() {
-        current = ConfigRepository.findAll().get(0);
-        return current;
+        Config c = current;
+        if (c == null) {
+            synchronized (Config.class) {
+                c = current;
+                if (c == null) {
+                    c = ConfigRepository.findAll().get(0);
+                    current = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * @return a counter incremented each time the current configuration is replaced; callers that derive values
+     *         from the configuration can compare it with the value they saw last.
+     */
+    public static long getVersion() {
+        return version.get();
     }
 
     public static void initConfig() {
+        invalidateCurrent();
         JPAService.runInTransaction(em -> {
             if (ConfigRepository.findAll().isEmpty()) {
                 Config config = new Config();
@@ -67,9 +92,23 @@ public class Config {
         });
     }
 
+    /**
+     * Force the configuration to be read again from the database (after it has been deleted or replaced).
+     */
+    public static void invalidateCurrent() {
+        synchronized (Config.class) {
+            current = null;
+            version.incrementAndGet();
+        }
+    }
+
     public static Config setCurrent(Config config) {
-        current = ConfigRepository.save(config);
-        return current;
+        Config saved = ConfigRepository.save(config);
+        synchronized (Config.class) {
+            current = saved;
+            version.incrementAndGet();
+        }
+        return saved;
     }
 
     private String timeZoneId;
@@ -38,6 +38,7 @@ public class ConfigRepository {
             em.remove(getById(Config.getId(), em));
             return null;
         });
+        app.owlcms.data.config.Config.invalidateCurrent();
     }
 
     /**
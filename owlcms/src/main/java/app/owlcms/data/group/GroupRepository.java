@@ -12,6 +12,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
+import org.hibernate.annotations.QueryHints;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Athlete;
@@ -61,7 +62,9 @@ public class GroupRepository {
 
     @SuppressWarnings("unchecked")
     public static List<Group> doFindAll(EntityManager em) {
-        return em.createQuery("select c from CompetitionGroup c order by c.name").getResultList();
+        return em.createQuery("select c from CompetitionGroup c order by c.name")
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList();
     }
 
     @SuppressWarnings("unchecked")
@@ -76,10 +79,8 @@ public class GroupRepository {
      *
      * @return the list
      */
-    @SuppressWarnings("unchecked")
     public static List<Group> findAll() {
-        return JPAService.runInTransaction(
-                em -> em.createQuery("select c from CompetitionGroup c order by c.name").getResultList());
+        return JPAService.runInTransaction(em -> doFindAll(em));
     }
 
     public static Group findByName(String name) {
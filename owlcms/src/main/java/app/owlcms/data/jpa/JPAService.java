@@ -24,6 +24,8 @@ import static org.hibernate.cfg.AvailableSettings.USE_STRUCTURED_CACHE;
 
 import java.io.File;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,10 +37,14 @@ import javax.persistence.EntityManagerFactory;
 import javax.persistence.spi.PersistenceUnitInfo;
 
 import org.h2.tools.Server;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
 import org.hibernate.dialect.H2Dialect;
 import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
@@ -322,13 +328,15 @@ public class JPAService {
         ImmutableMap<String, Object> vals = new ImmutableMap.Builder<String, Object>()
                 .put(HBM2DDL_AUTO, "update")
                 .put(SHOW_SQL, false)
-                .put(QUERY_STARTUP_CHECKING, false).put(GENERATE_STATISTICS, false)
-                .put(USE_REFLECTION_OPTIMIZER, false).put(USE_SECOND_LEVEL_CACHE, true).put(USE_QUERY_CACHE, false)
+                .put(QUERY_STARTUP_CHECKING, false).put(GENERATE_STATISTICS, true)
+                .put(USE_REFLECTION_OPTIMIZER, false).put(USE_SECOND_LEVEL_CACHE, true).put(USE_QUERY_CACHE, true)
                 .put(USE_STRUCTURED_CACHE, false).put(STATEMENT_BATCH_SIZE, 20)
                 .put(CACHE_REGION_FACTORY, "org.hibernate.cache.jcache.JCacheRegionFactory")
                 .put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider")
+                // region sizes and expiry
+                .put("hibernate.javax.cache.uri", "ehcache.xml")
                 .put("hibernate.javax.cache.missing_cache_strategy", "create")
-                .put("javax.persistence.sharedCache.mode", "ALL").put("hibernate.c3p0.min_size", 5)
+                .put("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE").put("hibernate.c3p0.min_size", 5)
                 .put("hibernate.enable_lazy_load_no_trans",true)
 //                .put("hibernate.c3p0.max_size", 20).put("hibernate.c3p0.acquire_increment", 5)
 //                .put("hibernate.c3p0.timeout", 84200).put("hibernate.c3p0.preferredTestQuery", "SELECT 1")
@@ -417,6 +425,33 @@ public class JPAService {
         return factory;
     }
 
+    /**
+     * Hits, misses and puts for the second-level cache regions and the query cache, since startup.
+     *
+     * @return the statistics for each region, sorted by region name; empty if the database is not open
+     */
+    public static List<CacheRegionStatistics> getCacheStatistics() {
+        List<CacheRegionStatistics> regions = new ArrayList<>();
+        if (factory == null) {
+            return regions;
+        }
+        Statistics statistics = factory.unwrap(SessionFactory.class).getStatistics();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(regionName);
+            if (regionStatistics != null) {
+                regions.add(regionStatistics);
+            }
+        }
+        // not listed with the entity regions
+        CacheRegionStatistics queryStatistics = statistics
+                .getQueryRegionStatistics(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+        if (queryStatistics != null) {
+            regions.add(queryStatistics);
+        }
+        regions.sort(Comparator.comparing(CacheRegionStatistics::getRegionName));
+        return regions;
+    }
+
     /**
      * @param factory the factory to set
      */
@@ -218,7 +218,8 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
      */
     @Override
     public SharedCacheMode getSharedCacheMode() {
-        return SharedCacheMode.UNSPECIFIED;
+        // only the entities marked @Cacheable; UNSPECIFIED would disable the second-level cache.
+        return SharedCacheMode.ENABLE_SELECTIVE;
     }
 
     /*
@@ -11,6 +11,8 @@ import java.util.List;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
+import org.hibernate.annotations.QueryHints;
+
 import app.owlcms.data.group.Group;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.fieldofplay.FieldOfPlay;
@@ -55,7 +57,9 @@ public class PlatformRepository {
      */
     @SuppressWarnings("unchecked")
     public static List<Platform> findAll() {
-        return JPAService.runInTransaction(em -> em.createQuery("select c from Platform c").getResultList());
+        return JPAService.runInTransaction(em -> em.createQuery("select c from Platform c")
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList());
     }
 
     /**
@@ -6,27 +6,24 @@
  *******************************************************************************/
 package app.owlcms.data.records;
 
-import java.io.InputStream;
 import java.time.LocalDate;
 import java.util.EnumSet;
+import java.util.List;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.jpa.JPAService;
+import app.owlcms.spreadsheet.DefinitionWorkbook;
 import app.owlcms.utils.LoggerUtils;
-import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
 
 /**
  * Read lifted weight records from an Excel file.
+ *
+ * The file is read through {@link DefinitionWorkbook}, so it is parsed only when its content changes.
  * 
  * Competition records for snatch, clean&jerk and total are read. All available tabs are scanned. Reading stops at first
  * empty line. Header line is skipped.
@@ -38,7 +35,7 @@ public class RecordDefinitionReader {
 
     private final static Logger logger = (Logger) LoggerFactory.getLogger(RecordDefinitionReader.class);
 
-    public static int createRecords(Workbook workbook, EnumSet<AgeDivision> ageDivisionOverride,
+    public static int createRecords(DefinitionWorkbook workbook, EnumSet<AgeDivision> ageDivisionOverride,
             String localizedName) {
 
         return JPAService.runInTransaction(em -> {
@@ -46,10 +43,10 @@ public class RecordDefinitionReader {
             int iSheet = 0;
             int iRecord = 0;
 
-            for (Sheet sheet : workbook) {
+            for (List<List<Object>> sheet : workbook.getSheets()) {
                 int iRow = 0;
 
-                processsheet: for (Row row : sheet) {
+                processsheet: for (List<Object> row : sheet) {
                     int iColumn = 0;
 
                     if (iRow == 0) {
@@ -59,11 +56,11 @@ public class RecordDefinitionReader {
 
                     RecordEvent rec = new RecordEvent();
 
-                    for (Cell cell : row) {
+                    for (Object cell : row) {
                         // logger.trace("[" + iSheet + "," + iRow + "," + iColumn + "]");
                         switch (iColumn) {
                         case 0: {
-                            String cellValue = cell.getStringCellValue();
+                            String cellValue = DefinitionWorkbook.getString(cell);
                             String trim = cellValue.trim();
                             if (trim.isEmpty()) {
                                 break processsheet;
@@ -73,47 +70,47 @@ public class RecordDefinitionReader {
                         }
 
                         case 1: {
-                            String cellValue = cell.getStringCellValue();
+                            String cellValue = DefinitionWorkbook.getString(cell);
                             cellValue = cellValue != null ? cellValue.trim() : cellValue;
                             rec.setAgeGrp(cellValue);
                             break;
                         }
 
                         case 2: {
-                            String cellValue = cell.getStringCellValue();
+                            String cellValue = DefinitionWorkbook.getString(cell);
                             cellValue = cellValue != null ? cellValue.trim().toUpperCase() : cellValue;
                             rec.setGender(Gender.valueOf(cellValue));
                             break;
                         }
 
                         case 3: {
-                            long cellValue = Math.round(cell.getNumericCellValue());
+                            long cellValue = Math.round(DefinitionWorkbook.getNumeric(cell));
                             rec.setBwCatUpper(Math.toIntExact(cellValue));
                             break;
                         }
 
                         case 4: {
-                            String cellValue = cell.getStringCellValue();
+                            String cellValue = DefinitionWorkbook.getString(cell);
                             cellValue = cellValue != null ? cellValue.trim() : cellValue;
                             rec.setRecordKind(cellValue.substring(0, 1));
                             break;
                         }
 
                         case 5: {
-                            long cellValue = Math.round(cell.getNumericCellValue());
+                            long cellValue = Math.round(DefinitionWorkbook.getNumeric(cell));
                             rec.setRecordValue(Math.toIntExact(cellValue));
                             break;
                         }
 
                         case 6: {
-                            String cellValue = cell.getStringCellValue();
+                            String cellValue = DefinitionWorkbook.getString(cell);
                             cellValue = cellValue != null ? cellValue.trim() : cellValue;
                             rec.setAthleteName(cellValue);
                             break;
                         }
 
                         case 7: {
-                            long cellValue = Math.round(cell.getNumericCellValue());
+                            long cellValue = Math.round(DefinitionWorkbook.getNumeric(cell));
                             int intExact = Math.toIntExact(cellValue);
                             if (cellValue < 3000) {
                                 rec.setRecordYear(intExact);
@@ -127,14 +124,14 @@ public class RecordDefinitionReader {
                         }
 
                         case 8: {
-                            String cellValue = cell.getStringCellValue();
+                            String cellValue = DefinitionWorkbook.getString(cell);
                             cellValue = cellValue != null ? cellValue.trim() : cellValue;
                             rec.setNation(cellValue);
                             break;
                         }
 
                         case 9: {
-                            long cellValue = Math.round(cell.getNumericCellValue());
+                            long cellValue = Math.round(DefinitionWorkbook.getNumeric(cell));
                             int intExact = Math.toIntExact(cellValue);
                             if (cellValue < 3000) {
                                 rec.setRecordYear(intExact);
@@ -173,12 +170,10 @@ public class RecordDefinitionReader {
     }
 
     static void doInsertRecords(EnumSet<AgeDivision> es, String localizedName) {
-        InputStream localizedResourceAsStream = ResourceWalker.getResourceAsStream(localizedName);
-        try (Workbook workbook = WorkbookFactory
-                .create(localizedResourceAsStream)) {
+        try {
             RecordRepository.logger.info("loading configuration file {}", localizedName);
+            DefinitionWorkbook workbook = DefinitionWorkbook.load(localizedName);
             createRecords(workbook, es, localizedName);
-            workbook.close();
         } catch (Exception e) {
             RecordRepository.logger.error("could not process ageGroup configuration\n{}", LoggerUtils./**/stackTrace(e));
         }
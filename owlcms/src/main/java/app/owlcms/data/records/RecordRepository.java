@@ -19,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.category.AgeDivision;
+import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ResourceWalker;
@@ -148,6 +149,7 @@ public class RecordRepository {
             }
             return null;
         });
+        CategoryRepository.invalidateIndex();
         RecordDefinitionReader.doInsertRecords(null, "/records/" + localizedFileName);
         AthleteRepository.resetParticipations();
     }
@@ -6,77 +6,228 @@
  *******************************************************************************/
 package app.owlcms.data.xml;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import javax.persistence.EntityManager;
 
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.agegroup.AgeGroupRepository;
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.config.Config;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
 import app.owlcms.data.platform.Platform;
 import app.owlcms.data.platform.PlatformRepository;
+import app.owlcms.spreadsheet.JXLSWorkbookStreamSource;
+import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
 
 public class CompetitionData {
 
+    /**
+     * Reads the athletes array element by element. When the import provides a destination for the athletes, each
+     * athlete is handed over as soon as it is read, and an empty list is returned; otherwise the athletes are
+     * returned as a list.
+     *
+     * The reference data precedes the athletes in the document; the import is told when it has been read, because
+     * reading an athlete requires the current competition.
+     */
+    @SuppressWarnings("serial")
+    static class AthleteListDeserializer extends StdDeserializer<List<Athlete>> {
+
+        AthleteListDeserializer() {
+            super(List.class);
+        }
+
+        @Override
+        public List<Athlete> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            @SuppressWarnings("unchecked")
+            Consumer<Athlete> sink = (Consumer<Athlete>) ctxt.getAttribute(ATHLETE_SINK);
+            Runnable referenceDataRead = (Runnable) ctxt.getAttribute(REFERENCE_DATA_READ);
+            List<Athlete> athletes = new ArrayList<>();
+            if (!p.isExpectedStartArrayToken()) {
+                @SuppressWarnings("unchecked")
+                List<Athlete> unexpected = (List<Athlete>) ctxt.handleUnexpectedToken(List.class, p);
+                return unexpected;
+            }
+            if (referenceDataRead != null) {
+                referenceDataRead.run();
+            }
+            JsonDeserializer<Object> athleteDeserializer = ctxt.findRootValueDeserializer(
+                    ctxt.constructType(Athlete.class));
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                Athlete a = (Athlete) athleteDeserializer.deserialize(p, ctxt);
+                if (sink != null) {
+                    sink.accept(a);
+                } else {
+                    athletes.add(a);
+                }
+            }
+            return athletes;
+        }
+    }
+
     final static Logger logger = (Logger) LoggerFactory.getLogger(CompetitionData.class);
 
+    /** deserialization attribute giving where the imported athletes go */
+    private static final String ATHLETE_SINK = "athleteSink";
+
+    /** deserialization attribute giving what to do once the data preceding the athletes has been read */
+    private static final String REFERENCE_DATA_READ = "referenceDataRead";
+
+    /** athletes read or written between progress reports, and between flushes when importing */
+    private static final int BATCH_SIZE = 100;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static ObjectMapper createMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        return mapper;
+    }
+
+    private static InputStream uncompressed(InputStream serialized) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(serialized, BUFFER_SIZE);
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b2 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        return in;
+    }
+
     private List<AgeGroup> ageGroups;
     private List<Athlete> athletes;
     private List<Group> groups;
     private List<Platform> platforms;
     private Competition competition;
     private Config config;
+    @JsonIgnore
+    private BiConsumer<Integer, Integer> progressListener;
 
     public CompetitionData() {
     }
 
+    /**
+     * Export the database, as produced by {@link #exportData(OutputStream)}, on a thread from the report
+     * pool.
+     *
+     * @return a stream to read the JSON from
+     */
     public InputStream exportData() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
         try {
-            ObjectWriter writerWithDefaultPrettyPrinter = mapper.writerWithDefaultPrettyPrinter();
-
             PipedOutputStream out = new PipedOutputStream();
-            PipedInputStream in = new PipedInputStream(out);
-            new Thread(() -> {
+            PipedInputStream in = new PipedInputStream(out, BUFFER_SIZE);
+            JXLSWorkbookStreamSource.getExecutor().submit(() -> {
                 try {
-                    writerWithDefaultPrettyPrinter.writeValue(out, this.fromDatabase());
-                    out.flush();
-                    out.close();
+                    exportData(out);
                 } catch (Throwable e) {
-                    e.printStackTrace();
+                    logger.error(LoggerUtils./**/stackTrace(e));
+                } finally {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                    }
                 }
-            }).start();
+            });
             return in;
+        } catch (RejectedExecutionException e) {
+            logger./**/warn("too many reports in progress, export refused");
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Write the database as compact JSON.
+     *
+     * The athletes are read from the database and written one page at a time, so the whole competition is never in
+     * memory. The document has the same structure as the one written by {@link #exportDataAsString()}.
+     *
+     * @param out where to write; closed at the end
+     * @throws IOException if the output cannot be written
+     */
+    public void exportData(OutputStream out) throws IOException {
+        ObjectMapper mapper = createMapper();
+        mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        OutputStream target = new BufferedOutputStream(out, BUFFER_SIZE);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(target, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName("config");
+            mapper.writeValue(generator, Config.getCurrent());
+            generator.writeFieldName("competition");
+            mapper.writeValue(generator, Competition.getCurrent());
+            generator.writeFieldName("platforms");
+            mapper.writeValue(generator, PlatformRepository.findAll());
+            generator.writeFieldName("groups");
+            mapper.writeValue(generator, GroupRepository.findAll());
+            generator.writeFieldName("ageGroups");
+            mapper.writeValue(generator, AgeGroupRepository.findAll());
+
+            generator.writeArrayFieldStart("athletes");
+            int total = AthleteRepository.countFiltered(null, null, null, null, null, null, null);
+            int done = 0;
+            List<Athlete> page;
+            do {
+                page = AthleteRepository.findAllPage(done, BATCH_SIZE);
+                for (Athlete a : page) {
+                    mapper.writeValue(generator, a);
+                }
+                done += page.size();
+                reportProgress(done, total);
+            } while (page.size() == BATCH_SIZE);
+            generator.writeEndArray();
+
+            generator.writeEndObject();
+            logger.info("exported {} athletes", done);
+        }
+    }
+
     /**
      * For debugging
      *
      * @return
      */
     public String exportDataAsString() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
+        ObjectMapper mapper = createMapper();
         ObjectWriter writerWithDefaultPrettyPrinter = mapper.writerWithDefaultPrettyPrinter();
         String serialized;
         try {
@@ -128,33 +279,91 @@ public class CompetitionData {
         return platforms;
     }
 
-    public CompetitionData importData(InputStream serialized) {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        CompetitionData newData;
-        try {
-            newData = mapper.readValue(serialized, CompetitionData.class);
-            //logger.debug("after unmarshall {}", newData.getPlatforms());
-            return newData;
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Read an export into the database, which must have been emptied beforehand.
+     *
+     * The document is parsed as a stream. The reference data (configuration, competition, platforms, groups, age
+     * groups and categories) comes first and is persisted when the athletes start; athletes are then persisted as
+     * they are read, and flushed to the database in batches. Compressed (gzip) exports are recognized.
+     *
+     * @param serialized the exported JSON
+     * @return this, with the configuration and competition read; the athletes are in the database only
+     * @throws IOException if the document cannot be read
+     */
+    public CompetitionData importData(InputStream serialized) throws IOException {
+        InputStream in = uncompressed(serialized);
+        ObjectMapper mapper = createMapper();
+        JPAService.runInTransaction(em -> {
+            int[] imported = { 0 };
+            boolean[] referencePersisted = { false };
+            Runnable referenceDataRead = () -> {
+                persistReferenceData(em);
+                referencePersisted[0] = true;
+            };
+            Consumer<Athlete> athleteSink = (a) -> {
+                em.persist(a);
+                imported[0]++;
+                if (imported[0] % BATCH_SIZE == 0) {
+                    // the athletes stay managed: the categories, which are, list their participations.
+                    em.flush();
+                    reportProgress(imported[0], -1);
+                }
+            };
+            try {
+                mapper.readerForUpdating(this)
+                        .withAttribute(REFERENCE_DATA_READ, referenceDataRead)
+                        .withAttribute(ATHLETE_SINK, athleteSink)
+                        .readValue(in);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (!referencePersisted[0]) {
+                // no athletes in the document
+                persistReferenceData(em);
+            }
+            em.flush();
+            reportProgress(imported[0], imported[0]);
+            logger.info("imported {} athletes", imported[0]);
             return null;
-        }
+        });
+        CategoryRepository.invalidateIndex();
+        return this;
     }
 
     public CompetitionData importDataFromString(String serialized)
             throws JsonMappingException, JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
+        ObjectMapper mapper = createMapper();
         CompetitionData newData = mapper.readValue(serialized, CompetitionData.class);
         //logger.debug("after unmarshall {}", newData.getPlatforms());
         return newData;
     }
 
+    private void persistReferenceData(EntityManager em) {
+        Config.setCurrent(getConfig());
+        Competition.setCurrent(getCompetition());
+        for (Platform p : getPlatforms()) {
+            em.persist(p);
+        }
+        for (AgeGroup ag : getAgeGroups()) {
+            em.persist(ag);
+        }
+        for (Group g : getGroups()) {
+            em.persist(g);
+        }
+    }
+
+    private void reportProgress(int done, int total) {
+        logger.debug("{} athletes of {}", done, total);
+        if (progressListener != null) {
+            progressListener.accept(done, total);
+        }
+    }
+
     public void setAgeGroups(List<AgeGroup> ageGroups) {
         this.ageGroups = ageGroups;
     }
 
+    @JsonDeserialize(using = AthleteListDeserializer.class)
     public void setAthletes(List<Athlete> athletes) {
         this.athletes = athletes;
     }
@@ -167,6 +376,14 @@ public class CompetitionData {
         this.platforms = platforms;
     }
 
+    /**
+     * @param progressListener called with the number of athletes exported or imported so far, and the total number
+     *                         of athletes (-1 if not yet known)
+     */
+    public void setProgressListener(BiConsumer<Integer, Integer> progressListener) {
+        this.progressListener = progressListener;
+    }
+
     /**
      * @param competition the competition to set
      */
@@ -6,7 +6,6 @@
  *******************************************************************************/
 package app.owlcms.displays.athletecard;
 
-import java.util.Enumeration;
 
 import org.slf4j.LoggerFactory;
 
@@ -40,8 +39,6 @@ import app.owlcms.ui.shared.SafeEventBusRegistration;
 import app.owlcms.utils.queryparameters.FOPParameters;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
-import elemental.json.Json;
-import elemental.json.JsonObject;
 
 /**
  * Attempt board.
@@ -247,15 +244,7 @@ public class AthleteCard extends PolymerTemplate<AthleteCard.AthleteCardModel>
     }
 
     protected void setTranslationMap() {
-        JsonObject translations = Json.createObject();
-        Enumeration<String> keys = Translator.getKeys();
-        while (keys.hasMoreElements()) {
-            String curKey = keys.nextElement();
-            if (curKey.startsWith("Card.")) {
-                translations.put(curKey.replace("Card.", ""), Translator.translate(curKey));
-            }
-        }
-        this.getElement().setPropertyJson("t", translations);
+        this.getElement().setPropertyJson("t", Translator.getTranslationJson("Card.").getJson());
     }
 
     private void init() {
@@ -325,12 +325,10 @@ public class AttemptBoard extends PolymerTemplate<AttemptBoard.AttemptBoardModel
 //        UIEventProcessor.uiAccessIgnoreIfSelfOrigin(this, uiEventBus, e, this.getOrigin(), e.getOrigin(), () -> {
 //            this.getElement().callJsFunction("down");
 //        });
-        // don't block others
-        new Thread(() -> {
-            UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
-                this.getElement().callJsFunction("down");
-            });
-        }).start();
+        // each subscriber has its own queue on the ui event bus, we don't block others
+        UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
+            this.getElement().callJsFunction("down");
+        });
     }
 
     @Subscribe
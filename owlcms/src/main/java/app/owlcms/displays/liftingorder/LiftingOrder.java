@@ -6,8 +6,6 @@
  *******************************************************************************/
 package app.owlcms.displays.liftingorder;
 
-import java.util.Collections;
-import java.util.Enumeration;
 import java.util.List;
 
 import org.slf4j.LoggerFactory;
@@ -32,28 +30,22 @@ import com.vaadin.flow.theme.Theme;
 import com.vaadin.flow.theme.lumo.Lumo;
 
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athleteSort.AthleteSorter;
-import app.owlcms.data.category.Category;
-import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
 import app.owlcms.displays.options.DisplayOptions;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsFactory;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.ui.lifting.UIEventProcessor;
-import app.owlcms.ui.shared.AthleteGridContent;
 import app.owlcms.ui.shared.RequireLogin;
 import app.owlcms.ui.shared.SafeEventBusRegistration;
 import app.owlcms.uievents.BreakDisplay;
+import app.owlcms.uievents.DisplayViewModel;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.uievents.UIEvent.Decision;
 import app.owlcms.utils.queryparameters.DisplayParameters;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
-import elemental.json.Json;
 import elemental.json.JsonArray;
-import elemental.json.JsonObject;
-import elemental.json.JsonValue;
 
 /**
  * Class LiftingOrder
@@ -254,7 +246,6 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
         UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
             Athlete a = e.getAthlete();
             getModel().setHidden(false);
-            liftsDone = AthleteSorter.countLiftsDone(order);
             doUpdate(a, e);
         });
     }
@@ -293,7 +284,6 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
         UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
             Athlete a = e.getAthlete();
             order = e.getLiftingOrder();
-            liftsDone = AthleteSorter.countLiftsDone(order);
             doUpdate(a, e);
         });
     }
@@ -388,7 +378,6 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
             init();
             // sync with current status of FOP
             order = fop.getLiftingOrder();
-            liftsDone = AthleteSorter.countLiftsDone(order);
             syncWithFOP(null);
             // we listen on uiEventBus.
             uiEventBus = uiEventBusRegister(this, fop);
@@ -397,15 +386,7 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
     }
 
     protected void setTranslationMap() {
-        JsonObject translations = Json.createObject();
-        Enumeration<String> keys = Translator.getKeys();
-        while (keys.hasMoreElements()) {
-            String curKey = keys.nextElement();
-            if (curKey.startsWith("Scoreboard.")) {
-                translations.put(curKey.replace("Scoreboard.", ""), Translator.translate(curKey));
-            }
-        }
-        this.getElement().setPropertyJson("t", translations);
+        this.getElement().setPropertyJson("t", Translator.getTranslationJson("Scoreboard.").getJson());
     }
 
     private String computeLiftType(Athlete a) {
@@ -432,42 +413,6 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
         updateBottom(model, computeLiftType(a));
     }
 
-    private JsonValue getAthletesJson(List<Athlete> list2) {
-        JsonArray jath = Json.createArray();
-        int athx = 0;
-        List<Athlete> list3 = Collections.unmodifiableList(list2);
-        for (Athlete a : list3) {
-            JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
-            String category;
-            if (Competition.getCurrent().isMasters()) {
-                category = a.getBWCategory();
-            } else {
-                category = curCat != null ? curCat.getName() : "";
-            }
-            ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
-            ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
-            ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
-            Integer startNumber = a.getStartNumber();
-            ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
-            String mastersAgeGroup = a.getMastersAgeGroup();
-            ja.put("mastersAgeGroup", mastersAgeGroup != null ? mastersAgeGroup : "");
-            ja.put("category", category != null ? category : "");
-            ja.put("nextAttemptNo", AthleteGridContent.formatAttemptNumber(a));
-            Integer nextAttemptRequestedWeight = a.getNextAttemptRequestedWeight();
-            ja.put("requestedWeight", nextAttemptRequestedWeight == 0 ? "-" : nextAttemptRequestedWeight.toString());
-            Integer liftOrderRank = a.getLiftOrderRank();
-            boolean notDone = a.getAttemptsDone() < 6;
-            String blink = (notDone ? " blink" : "");
-            if (notDone) {
-                ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
-            }
-            jath.set(athx, ja);
-            athx++;
-        }
-        return jath;
-    }
-
     private Object getOrigin() {
         return this;
     }
@@ -489,8 +434,12 @@ public class LiftingOrder extends PolymerTemplate<LiftingOrder.LiftingOrderModel
             model.setGroupName(
                     curGroup != null ? Translator.translate("Scoreboard.GroupLiftType", curGroup.getName(), liftType)
                             : "");
+            // rows shared by all the displays of the field of play
+            DisplayViewModel viewModel = fop.getDisplayViewModel();
+            order = viewModel.getLiftingOrder();
+            liftsDone = viewModel.getLiftsDone();
+            model.setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
+            this.getElement().setPropertyJson("athletes", viewModel.getLiftingOrderJson());
         });
-        model.setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
-        this.getElement().setPropertyJson("athletes", getAthletesJson(order));
     }
 }
@@ -6,8 +6,6 @@
  *******************************************************************************/
 package app.owlcms.displays.scoreboard;
 
-import java.util.Collections;
-import java.util.Enumeration;
 import java.util.List;
 
 import org.slf4j.LoggerFactory;
@@ -37,10 +35,6 @@ import app.owlcms.components.elements.AthleteTimerElement;
 import app.owlcms.components.elements.BreakTimerElement;
 import app.owlcms.components.elements.DecisionElement;
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athlete.LiftDefinition.Changes;
-import app.owlcms.data.athlete.LiftInfo;
-import app.owlcms.data.athlete.XAthlete;
-import app.owlcms.data.category.Category;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
 import app.owlcms.displays.options.DisplayOptions;
@@ -53,6 +47,7 @@ import app.owlcms.ui.shared.RequireLogin;
 import app.owlcms.ui.shared.SafeEventBusRegistration;
 import app.owlcms.uievents.BreakDisplay;
 import app.owlcms.uievents.BreakType;
+import app.owlcms.uievents.DisplayViewModel;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.uievents.UIEvent.Decision;
 import app.owlcms.uievents.UIEvent.LiftingOrderUpdated;
@@ -60,10 +55,6 @@ import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.queryparameters.DisplayParameters;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
-import elemental.json.Json;
-import elemental.json.JsonArray;
-import elemental.json.JsonObject;
-import elemental.json.JsonValue;
 
 /**
  * Class Scoreboard
@@ -152,8 +143,6 @@ public class CurrentAthlete extends PolymerTemplate<CurrentAthlete.ScoreboardMod
     private EventBus uiEventBus;
     private List<Athlete> order;
 
-    JsonArray sattempts;
-    JsonArray cattempts;
     private boolean darkMode;
     private Location location;
     private UI locationUI;
@@ -466,15 +455,7 @@ public class CurrentAthlete extends PolymerTemplate<CurrentAthlete.ScoreboardMod
     }
 
     protected void setTranslationMap() {
-        JsonObject translations = Json.createObject();
-        Enumeration<String> keys = Translator.getKeys();
-        while (keys.hasMoreElements()) {
-            String curKey = keys.nextElement();
-            if (curKey.startsWith("Scoreboard.")) {
-                translations.put(curKey.replace("Scoreboard.", ""), Translator.translate(curKey));
-            }
-        }
-        this.getElement().setPropertyJson("t", translations);
+        this.getElement().setPropertyJson("t", Translator.getTranslationJson("Scoreboard.").getJson());
     }
 
     private String computeLiftType(Athlete a) {
@@ -510,139 +491,6 @@ public class CurrentAthlete extends PolymerTemplate<CurrentAthlete.ScoreboardMod
         return translate;
     }
 
-    private String formatInt(Integer total) {
-        if (total == null || total == 0) {
-            return "-";
-        } else if (total == -1) {
-            return "inv.";// invited lifter, not eligible.
-        } else if (total < 0) {
-            return "(" + Math.abs(total) + ")";
-        } else {
-            return total.toString();
-        }
-    }
-
-    private String formatKg(String total) {
-        return (total == null || total.trim().isEmpty()) ? "-"
-                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
-    }
-
-    private void getAthleteJson(Athlete a, JsonObject ja, Category curCat, int liftOrderRank) {
-        String category;
-        category = curCat != null ? curCat.getName() : "";
-        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
-        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
-        ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
-        Integer startNumber = a.getStartNumber();
-        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
-        ja.put("category", category != null ? category : "");
-        getAttemptsJson(a, liftOrderRank);
-        ja.put("sattempts", sattempts);
-        ja.put("cattempts", cattempts);
-        ja.put("total", formatInt(a.getTotal()));
-        ja.put("snatchRank", formatInt(a.getMainRankings().getSnatchRank()));
-        ja.put("cleanJerkRank", formatInt(a.getMainRankings().getCleanJerkRank()));
-        ja.put("totalRank", formatInt(a.getMainRankings().getTotalRank()));
-        ja.put("group", a.getGroup() != null ? a.getGroup().getName() : "");
-        boolean notDone = a.getAttemptsDone() < 6;
-        String blink = (notDone ? " blink" : "");
-        if (notDone) {
-            ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
-        }
-    }
-
-    /**
-     * @param groupAthletes, List<Athlete> liftOrder
-     * @return
-     */
-    private JsonValue getAthletesJson(List<Athlete> groupAthletes, List<Athlete> liftOrder) {
-        JsonArray jath = Json.createArray();
-        int athx = 0;
-
-        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
-        List<Athlete> athletes = groupAthletes != null ? Collections.unmodifiableList(groupAthletes)
-                : Collections.emptyList();
-        for (Athlete a : athletes) {
-            if (a.getId() != currentId) {
-                continue;
-            }
-
-            JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
-            // 0 = no blinking
-            getAthleteJson(a, ja, curCat, 0);
-            String team = a.getTeam();
-            if (team != null && team.trim().length() > Competition.SHORT_TEAM_LENGTH) {
-                logger.trace("long team {}", team);
-                getModel().setWideTeamNames(true);
-            }
-            jath.set(athx, ja);
-            athx++;
-        }
-        return jath;
-    }
-
-    /**
-     * Compute Json string ready to be used by web component template
-     *
-     * CSS classes are pre-computed and passed along with the values; weights are formatted.
-     *
-     * @param a
-     * @param liftOrderRank2
-     * @return json string with nested attempts values
-     */
-    private void getAttemptsJson(Athlete a, int liftOrderRank) {
-        sattempts = Json.createArray();
-        cattempts = Json.createArray();
-        XAthlete x = new XAthlete(a);
-        Integer curLift = x.getAttemptsDone();
-        int ix = 0;
-        for (LiftInfo i : x.getRequestInfoArray()) {
-            JsonObject jri = Json.createObject();
-            String stringValue = i.getStringValue();
-            boolean notDone = x.getAttemptsDone() < 6;
-            String blink = (notDone ? " blink" : "");
-
-            jri.put("goodBadClassName", "narrow empty");
-            jri.put("stringValue", "");
-            if (i.getChangeNo() >= 0) {
-                String trim = stringValue != null ? stringValue.trim() : "";
-                switch (Changes.values()[i.getChangeNo()]) {
-                case ACTUAL:
-                    if (!trim.isEmpty()) {
-                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
-                            jri.put("goodBadClassName", "narrow fail");
-                            jri.put("stringValue", "-");
-                        } else {
-                            boolean failed = stringValue.startsWith("-");
-                            jri.put("goodBadClassName", failed ? "narrow fail" : "narrow good");
-                            jri.put("stringValue", formatKg(stringValue));
-                        }
-                    }
-                    break;
-                default:
-                    if (stringValue != null && !trim.isEmpty()) {
-                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
-                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
-                        jri.put("goodBadClassName", "narrow request");
-                        if (notDone) {
-                            jri.put("className", highlight);
-                        }
-                        jri.put("stringValue", stringValue);
-                    }
-                    break;
-                }
-            }
-
-            if (ix < 3) {
-                sattempts.set(ix, jri);
-            } else {
-                cattempts.set(ix % 3, jri);
-            }
-            ix++;
-        }
-    }
-
     private Object getOrigin() {
         return this;
     }
@@ -694,8 +542,12 @@ public class CurrentAthlete extends PolymerTemplate<CurrentAthlete.ScoreboardMod
                 model.setLiftsDone("Y");
                 this.getElement().callJsFunction("groupDone");
             }
-            this.getElement().setPropertyJson("athletes",
-                    getAthletesJson(order, fop.getLiftingOrder()));
+            // rows shared by all the displays of the field of play
+            DisplayViewModel viewModel = fop.getDisplayViewModel();
+            if (viewModel.isCurrentAthleteWideTeamName()) {
+                getModel().setWideTeamNames(true);
+            }
+            this.getElement().setPropertyJson("athletes", viewModel.getCurrentAthleteJson());
         });
     }
 }
\ No newline at end of file
@@ -6,8 +6,6 @@
  *******************************************************************************/
 package app.owlcms.displays.scoreboard;
 
-import java.util.Collections;
-import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
@@ -38,14 +36,7 @@ import com.vaadin.flow.theme.lumo.Lumo;
 import app.owlcms.components.elements.AthleteTimerElement;
 import app.owlcms.components.elements.BreakTimerElement;
 import app.owlcms.components.elements.DecisionElement;
-import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athlete.LiftDefinition.Changes;
-import app.owlcms.data.athlete.LiftInfo;
-import app.owlcms.data.athlete.XAthlete;
-import app.owlcms.data.athleteSort.AthleteSorter;
-import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
-import app.owlcms.data.category.Category;
 import app.owlcms.data.category.Participation;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
@@ -59,6 +50,7 @@ import app.owlcms.ui.shared.RequireLogin;
 import app.owlcms.ui.shared.SafeEventBusRegistration;
 import app.owlcms.uievents.BreakDisplay;
 import app.owlcms.uievents.BreakType;
+import app.owlcms.uievents.DisplayViewModel;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.uievents.UIEvent.Decision;
 import app.owlcms.uievents.UIEvent.LiftingOrderUpdated;
@@ -69,7 +61,6 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
 import elemental.json.JsonArray;
-import elemental.json.JsonObject;
 import elemental.json.JsonValue;
 
 /**
@@ -161,8 +152,6 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
     private Group curGroup;
     private int liftsDone;
 
-    JsonArray sattempts;
-    JsonArray cattempts;
     private boolean darkMode = true;
     private Location location;
     private UI locationUI;
@@ -170,7 +159,6 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
     private Dialog dialog;
     private boolean silenced = true;
     private boolean initializationNeeded;
-    private LinkedHashMap<String, Participation> ageGroupMap;
 
     /**
      * Instantiates a new results board.
@@ -307,10 +295,8 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
             if (a == null) {
                 displayOrder = fop.getLiftingOrder();
                 a = displayOrder.size() > 0 ? displayOrder.get(0) : null;
-                liftsDone = AthleteSorter.countLiftsDone(displayOrder);
                 doUpdate(a, e);
             } else {
-                liftsDone = AthleteSorter.countLiftsDone(displayOrder);
                 doUpdate(a, e);
             }
         }));
@@ -374,7 +360,6 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
         UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
             Athlete a = e.getAthlete();
             displayOrder = e.getDisplayOrder();
-            liftsDone = AthleteSorter.countLiftsDone(displayOrder);
             doUpdate(a, e);
         });
     }
@@ -480,7 +465,6 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
             // get the global category rankings (attached to each athlete)
             displayOrder = fop.getDisplayOrder();
 
-            liftsDone = AthleteSorter.countLiftsDone(displayOrder);
             syncWithFOP(new UIEvent.SwitchGroup(fop.getGroup(), fop.getState(), fop.getCurAthlete(), this));
             // we listen on uiEventBus.
             uiEventBus = uiEventBusRegister(this, fop);
@@ -490,15 +474,7 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
     }
 
     protected void setTranslationMap() {
-        JsonObject translations = Json.createObject();
-        Enumeration<String> keys = Translator.getKeys();
-        while (keys.hasMoreElements()) {
-            String curKey = keys.nextElement();
-            if (curKey.startsWith("Scoreboard.")) {
-                translations.put(curKey.replace("Scoreboard.", ""), Translator.translate(curKey));
-            }
-        }
-        this.getElement().setPropertyJson("t", translations);
+        this.getElement().setPropertyJson("t", Translator.getTranslationJson("Scoreboard.").getJson());
     }
 
     private void computeLeaders() {
@@ -508,10 +484,14 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
             if (curAthlete != null && curAthlete.getGender() != null) {
                 getModel().setCategoryName(curAthlete.getCategory().getName());
 
-                List<Athlete> order = fop.getLeaders();
-                if (order != null && order.size() > 0) {
-                    // null as second argument because we do not highlight current athletes in the leaderboard
-                    this.getElement().setPropertyJson("leaders", getAthletesJson(order, null));
+                DisplayViewModel viewModel = fop.getDisplayViewModel();
+                JsonValue leaders = viewModel.getMultiRanksLeadersJson();
+                if (leaders != null) {
+                    // current athletes are not highlighted in the leaderboard
+                    if (viewModel.isLeadersWideTeamNames()) {
+                        getModel().setWideTeamNames(true);
+                    }
+                    this.getElement().setPropertyJson("leaders", leaders);
                 } else {
                     // nothing to show
                     this.getElement().setPropertyJson("leaders", Json.createNull());
@@ -553,33 +533,6 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
         return translate;
     }
 
-    private String formatInt(Integer total) {
-        if (total == null || total == 0) {
-            return "-";
-        } else if (total == -1) {
-            return "inv.";// invited lifter, not eligible.
-        } else if (total < 0) {
-            return "(" + Math.abs(total) + ")";
-        } else {
-            return total.toString();
-        }
-    }
-
-    private String formatRank(Integer total) {
-        if (total == null || total == 0) {
-            return "";
-        } else if (total == -1) {
-            return "inv.";// invited lifter, not eligible.
-        } else {
-            return total.toString();
-        }
-    }
-
-    private String formatKg(String total) {
-        return (total == null || total.trim().isEmpty()) ? "-"
-                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
-    }
-
     private JsonArray getAgeGroupNamesJson(LinkedHashMap<String, Participation> currentAthleteParticipations) {
         JsonArray ageGroups = Json.createArray();
         int i = 0;
@@ -592,188 +545,10 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
         return ageGroups;
     }
 
-    private void getAthleteJson(Athlete a, JsonObject ja, Category curCat, int liftOrderRank) {
-        String category;
-        category = curCat != null ? curCat.getName() : "";
-        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
-        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
-        ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
-        Integer startNumber = a.getStartNumber();
-        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
-        ja.put("category", category != null ? category : "");
-        getAttemptsJson(a, liftOrderRank);
-        ja.put("sattempts", sattempts);
-        ja.put("cattempts", cattempts);
-        ja.put("total", formatInt(a.getTotal()));
-        setCurrentAthleteParticipations(a);
-        ja.put("snatchRanks", getRanksJson(a, Ranking.SNATCH, ageGroupMap));
-        ja.put("cleanJerkRanks", getRanksJson(a, Ranking.CLEANJERK, ageGroupMap));
-        ja.put("totalRanks", getRanksJson(a, Ranking.TOTAL, ageGroupMap));
-
-        ja.put("group", a.getGroup() != null ? a.getGroup().getName() : "");
-        boolean notDone = a.getAttemptsDone() < 6;
-        String blink = (notDone ? " blink" : "");
-        if (notDone) {
-            ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
-        }
-    }
-
-    private void setCurrentAthleteParticipations(Athlete a) {
-        OwlcmsSession.withFop(fop -> {
-            ageGroupMap = new LinkedHashMap<String, Participation>(fop.getAgeGroupMap());
-            for (Entry<String, Participation> cape : ageGroupMap.entrySet()) {
-                cape.setValue(null);
-            }
-            if (a != null) {
-                //logger,debug(">>>setCurrentAthleteParticipations begin");
-                //logger,debug("setting {}", a.getShortName());
-                for (Participation p : a.getParticipations()) {
-                    AgeGroup ag = p.getCategory() != null ? p.getCategory().getAgeGroup() : null;
-                    if (ag != null) {
-                        //logger,debug("athlete {} curRankings {} {}", a, ag.getCode(), p);
-                        ageGroupMap.put(ag.getCode(), p);
-                    }
-                }
-                //logger,debug("<<<setCurrentAthleteParticipations end");
-            } else {
-                //logger,debug("+++ cleared");
-            }
-        });
-    }
-
-    /**
-     * @param groupAthletes, List<Athlete> liftOrder
-     * @return
-     */
-    private JsonValue getAthletesJson(List<Athlete> displayOrder, List<Athlete> liftOrder) {
-        JsonArray jath = Json.createArray();
-        int athx = 0;
-        Category prevCat = null;
-        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
-        long nextId = (liftOrder != null && liftOrder.size() > 1) ? liftOrder.get(1).getId() : -1L;
-        List<Athlete> athletes = displayOrder != null ? Collections.unmodifiableList(displayOrder)
-                : Collections.emptyList();
-        for (Athlete a : athletes) {
-            JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
-            if (curCat != null && !curCat.sameAs(prevCat)) {
-                // changing categories, put marker before athlete
-                ja.put("isSpacer", true);
-                jath.set(athx, ja);
-                ja = Json.createObject();
-                prevCat = curCat;
-                athx++;
-            }
-            // compute the blinking rank (1 = current, 2 = next)
-            getAthleteJson(a, ja, curCat, (a.getId() == currentId)
-                    ? 1
-                    : ((a.getId() == nextId)
-                            ? 2
-                            : 0));
-            String team = a.getTeam();
-            if (team != null && team.trim().length() > Competition.SHORT_TEAM_LENGTH) {
-                logger.trace("long team {}", team);
-                getModel().setWideTeamNames(true);
-            }
-            jath.set(athx, ja);
-            athx++;
-        }
-        return jath;
-    }
-
-    /**
-     * Compute Json string ready to be used by web component template
-     *
-     * CSS classes are pre-computed and passed along with the values; weights are formatted.
-     *
-     * @param a
-     * @param liftOrderRank2
-     * @return json string with nested attempts values
-     */
-    private void getAttemptsJson(Athlete a, int liftOrderRank) {
-        sattempts = Json.createArray();
-        cattempts = Json.createArray();
-        XAthlete x = new XAthlete(a);
-        Integer curLift = x.getAttemptsDone();
-        int ix = 0;
-        for (LiftInfo i : x.getRequestInfoArray()) {
-            JsonObject jri = Json.createObject();
-            String stringValue = i.getStringValue();
-            boolean notDone = x.getAttemptsDone() < 6;
-            String blink = (notDone ? " blink" : "");
-
-            jri.put("goodBadClassName", "narrow empty");
-            jri.put("stringValue", "");
-            if (i.getChangeNo() >= 0) {
-                String trim = stringValue != null ? stringValue.trim() : "";
-                switch (Changes.values()[i.getChangeNo()]) {
-                case ACTUAL:
-                    if (!trim.isEmpty()) {
-                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
-                            jri.put("goodBadClassName", "narrow fail");
-                            jri.put("stringValue", "-");
-                        } else {
-                            boolean failed = stringValue.startsWith("-");
-                            jri.put("goodBadClassName", failed ? "narrow fail" : "narrow good");
-                            jri.put("stringValue", formatKg(stringValue));
-                        }
-                    }
-                    break;
-                default:
-                    if (stringValue != null && !trim.isEmpty()) {
-                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
-                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
-                        jri.put("goodBadClassName", "narrow request");
-                        if (notDone) {
-                            jri.put("className", highlight);
-                        }
-                        jri.put("stringValue", stringValue);
-                    }
-                    break;
-                }
-            }
-
-            if (ix < 3) {
-                sattempts.set(ix, jri);
-            } else {
-                cattempts.set(ix % 3, jri);
-            }
-            ix++;
-        }
-    }
-
     private Object getOrigin() {
         return this;
     }
 
-    private JsonValue getRanksJson(Athlete a, Ranking r, LinkedHashMap<String, Participation> ageGroupMap2) {
-        JsonArray ranks = Json.createArray();
-        int i = 0;
-        for (Entry<String, Participation> e : ageGroupMap.entrySet()) {
-            Participation p = e.getValue();
-            //logger,debug("a {} k {} v {}", a.getShortName(), e.getKey(), p);
-            if (p == null) {
-                ranks.set(i, "");
-            } else {
-                switch (r) {
-                case CLEANJERK:
-                    ranks.set(i, formatRank(p.getCleanJerkRank()));
-                    break;
-                case SNATCH:
-                    ranks.set(i, formatRank(p.getSnatchRank()));
-                    break;
-                case TOTAL:
-                    ranks.set(i, formatRank(p.getTotalRank()));
-                    break;
-                default:
-                    break;
-                }
-            }
-            i++;
-        }
-        return ranks;
-    }
-
     private void init() {
         OwlcmsSession.withFop(fop -> {
             logger.trace("{}Starting result board.", fop.getLoggingName());
@@ -815,14 +590,16 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
     private void updateBottom(ScoreboardModel model, String liftType) {
         OwlcmsSession.withFop((fop) -> {
             curGroup = fop.getGroup();
-            displayOrder = fop.getDisplayOrder();
+            // rows shared by all the displays of the field of play
+            DisplayViewModel viewModel = fop.getDisplayViewModel();
+            displayOrder = viewModel.getDisplayOrder();
 
             if (liftType != null) {
                 model.setGroupName(
                         curGroup != null
                                 ? Translator.translate("Scoreboard.GroupLiftType", curGroup.getName(), liftType)
                                 : "");
-                liftsDone = AthleteSorter.countLiftsDone(displayOrder);
+                liftsDone = viewModel.getLiftsDone();
                 model.setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
             } else {
                 model.setGroupName("X");
@@ -830,8 +607,10 @@ public class ScoreMultiRanks extends PolymerTemplate<ScoreMultiRanks.ScoreboardM
                 this.getElement().callJsFunction("groupDone");
             }
             this.getElement().setPropertyJson("ageGroups", getAgeGroupNamesJson(fop.getAgeGroupMap()));
-            this.getElement().setPropertyJson("athletes",
-                    getAthletesJson(displayOrder, fop.getLiftingOrder()));
+            if (viewModel.isWideTeamNames()) {
+                getModel().setWideTeamNames(true);
+            }
+            this.getElement().setPropertyJson("athletes", viewModel.getMultiRanksJson());
             computeLeaders();
         });
     }
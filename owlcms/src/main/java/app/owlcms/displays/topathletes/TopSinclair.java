@@ -8,7 +8,6 @@ package app.owlcms.displays.topathletes;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -49,6 +48,7 @@ import app.owlcms.ui.lifting.UIEventProcessor;
 import app.owlcms.ui.shared.RequireLogin;
 import app.owlcms.ui.shared.SafeEventBusRegistration;
 import app.owlcms.uievents.BreakDisplay;
+import app.owlcms.uievents.GlobalRankingPublisher;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.queryparameters.DisplayParameters;
@@ -152,12 +152,12 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.TopSinclairModel> i
         }));
     }
 
-    public void doUpdate(Competition competition) {
+    public void doUpdate(GlobalRankingPublisher.Snapshot rankings) {
         this.getElement().callJsFunction("reset");
 
         // create copies because we want to change the list
-        setSortedMen(competition.getGlobalSinclairRanking(Gender.M));
-        setSortedWomen(competition.getGlobalSinclairRanking(Gender.F));
+        setSortedMen(new ArrayList<>(rankings.getSinclairRanking(Gender.M)));
+        setSortedWomen(new ArrayList<>(rankings.getSinclairRanking(Gender.F)));
 
         topManSinclair = 0.0D;
         List<Athlete> sortedMen2 = getSortedMen();
@@ -317,10 +317,12 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.TopSinclairModel> i
     @Subscribe
     public void slaveGlobalRankingUpdated(UIEvent.GlobalRankingUpdated e) {
         uiLog(e);
-        Competition competition = Competition.getCurrent();
+        // computed once for all the displays
+        GlobalRankingPublisher.Snapshot rankings = e.getRankings() != null ? e.getRankings()
+                : GlobalRankingPublisher.get().getLatest();
 
         UIEventProcessor.uiAccess(this, uiEventBus, () -> {
-            doUpdate(competition);
+            doUpdate(rankings);
         });
     }
 
@@ -432,21 +434,12 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.TopSinclairModel> i
             // we listen on all the uiEventBus.
             uiEventBus = uiEventBusRegister(this, fop);
         }
-        Competition competition = Competition.getCurrent();
-        doUpdate(competition);
+        doUpdate(GlobalRankingPublisher.get().getLatest());
         logger.debug("onAttach end");
     }
 
     protected void setTranslationMap() {
-        JsonObject translations = Json.createObject();
-        Enumeration<String> keys = Translator.getKeys();
-        while (keys.hasMoreElements()) {
-            String curKey = keys.nextElement();
-            if (curKey.startsWith("Scoreboard.")) {
-                translations.put(curKey.replace("Scoreboard.", ""), Translator.translate(curKey));
-            }
-        }
-        this.getElement().setPropertyJson("t", translations);
+        this.getElement().setPropertyJson("t", Translator.getTranslationJson("Scoreboard.").getJson());
     }
 
     private String formatInt(Integer total) {
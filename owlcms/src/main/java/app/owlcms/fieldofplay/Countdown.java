@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.fieldofplay;
+
+/**
+ * State of a proxy timer: time remaining when last set or stopped, and if running, when it was started.
+ *
+ * Instances are immutable; the timers replace them as a whole, so the remaining time can be computed from a single
+ * volatile read without locking. Times are measured with {@link IDelayScheduler#nanoTime()}, which does not jump when
+ * the computer clock is adjusted.
+ *
+ * @author Jean-François Lamy
+ */
+final class Countdown {
+
+    /**
+     * @param timeRemaining milliseconds
+     * @return a countdown that is not running
+     */
+    static Countdown stopped(int timeRemaining) {
+        return new Countdown(false, timeRemaining, 0L);
+    }
+
+    private final boolean running;
+    private final int timeRemaining;
+    private final long startNanos;
+
+    private Countdown(boolean running, int timeRemaining, long startNanos) {
+        this.running = running;
+        this.timeRemaining = timeRemaining;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @return time remaining when the countdown was set, started or stopped
+     */
+    int getTimeRemaining() {
+        return timeRemaining;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param nanoTime current time
+     * @return time remaining, in milliseconds, negative once the time is over
+     */
+    int liveTimeRemaining(long nanoTime) {
+        if (!running) {
+            return timeRemaining;
+        }
+        return (int) (timeRemaining - (nanoTime - startNanos) / 1_000_000L);
+    }
+
+    /**
+     * @param nanoTime current time
+     * @return the same countdown, running from now
+     */
+    Countdown start(long nanoTime) {
+        return running ? this : new Countdown(true, timeRemaining, nanoTime);
+    }
+
+    /**
+     * @param nanoTime current time
+     * @return the countdown stopped now, with the time remaining at this point
+     */
+    Countdown stop(long nanoTime) {
+        return running ? stopped(liveTimeRemaining(nanoTime)) : this;
+    }
+
+}
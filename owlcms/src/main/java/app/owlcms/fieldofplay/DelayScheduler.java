@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.fieldofplay;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Scheduler shared by all the fields of play.
+ *
+ * A small pool of daemon threads runs all the delayed actions, instead of a timer thread for each action. Canceled
+ * actions are removed from the queue immediately.
+ *
+ * @author Jean-François Lamy
+ */
+public class DelayScheduler implements IDelayScheduler {
+
+    private static final int NB_THREADS = 2;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(DelayScheduler.class);
+
+    private static DelayScheduler shared;
+
+    /**
+     * @return the scheduler used by all fields of play
+     */
+    public static synchronized DelayScheduler getShared() {
+        if (shared == null) {
+            shared = new DelayScheduler();
+        }
+        return shared;
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private DelayScheduler() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(NB_THREADS, (r) -> {
+            Thread t = new Thread(r, "fop-scheduler-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @return number of actions waiting to run
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public Handle schedule(Runnable action, long delayMillis) {
+        ScheduledFuture<?> future = executor.schedule(() -> {
+            try {
+                action.run();
+            } catch (Throwable t) {
+                // an exception would otherwise be silently kept in the future
+                logger.error("delayed action failed {}", LoggerUtils.stackTrace(t));
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return new Handle() {
+            @Override
+            public boolean cancel() {
+                return future.cancel(false);
+            }
+
+            @Override
+            public boolean isDone() {
+                return future.isDone();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.fieldofplay;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.SubscriberExceptionContext;
+import com.google.common.eventbus.SubscriberExceptionHandler;
+
+import app.owlcms.utils.LatencyHistogram;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Event bus of a field of play, handled by a single thread.
+ *
+ * Events posted by the timekeeper, announcer, referee or jury screens are queued in a bounded mailbox and returned
+ * immediately; one thread takes them in order and delivers them to the subscribers, so the field of play state is
+ * only ever changed by that thread. Delayed actions (showing the decision after the reversal delay, timer warnings)
+ * are queued the same way with {@link #execute(Runnable)}. The thread stops when the field of play is idle and is
+ * recreated by the next event. If the mailbox is full, decisions, clock events and delayed actions wait for room;
+ * other events are dropped.
+ *
+ * When running tests, events are handled on the thread that posts them, before {@link #post(Object)} returns. Events
+ * posted while handling are handled next, as with a synchronous {@link EventBus}.
+ *
+ * For each event type, the delay between posting and the start of handling, and the delay between the start of
+ * handling and the last user interface event pushed as a result, are tracked.
+ *
+ * @author Jean-François Lamy
+ */
+public class FOPEventLoop extends EventBus {
+
+    /**
+     * An event or action waiting in the mailbox.
+     */
+    private class Envelope implements Runnable {
+        private final Object event;
+        private final Runnable action;
+        private final long postTime = System.nanoTime();
+
+        Envelope(Object event, Runnable action) {
+            this.event = event;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            dispatch(this);
+        }
+    }
+
+    private static final int MAILBOX_SIZE = 1000;
+
+    private static final int STATS_INTERVAL = 500;
+
+    private static final int WAIT_TIMEOUT_SECONDS = 10;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPEventLoop.class);
+
+    private final EventBus delivery;
+    private final ThreadPoolExecutor executor;
+
+    /** inline mode: events waiting while the posting thread handles an earlier one */
+    private final Deque<Envelope> pending = new ArrayDeque<>();
+    private boolean draining = false;
+
+    /** thread currently handling an event, and when it started */
+    private volatile Thread handlingThread;
+    private long handlingStart;
+    private long lastPush;
+
+    private final Map<String, LatencyHistogram> handledLatencies = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> pushedLatencies = new ConcurrentHashMap<>();
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param identifier name of the bus, used to name the thread
+     * @param inline     if true, handle events on the posting thread (for tests)
+     */
+    public FOPEventLoop(String identifier, boolean inline) {
+        super(identifier);
+        SubscriberExceptionHandler exceptionHandler = (Throwable exception,
+                SubscriberExceptionContext context) -> logger.error("{} {} could not handle {}\n{}", identifier,
+                        context.getSubscriber(), context.getEvent().getClass().getSimpleName(),
+                        LoggerUtils.stackTrace(exception));
+        this.delivery = new EventBus(exceptionHandler);
+        if (inline) {
+            this.executor = null;
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAILBOX_SIZE), (r) -> {
+                        Thread t = new Thread(r, identifier);
+                        t.setDaemon(true);
+                        return t;
+                    }, (r, e) -> mailboxFull((Envelope) r, e));
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+        }
+    }
+
+    /**
+     * Run an action on the handling thread, after the events already queued.
+     *
+     * @param action code that reads or changes the field of play state
+     */
+    public void execute(Runnable action) {
+        enqueue(new Envelope(null, action));
+    }
+
+    /**
+     * Run an action on the handling thread, after the events already queued, and wait for it to be done.
+     *
+     * Used when the caller needs the resulting state, for example a page that shows the group it just loaded. Runs
+     * the action directly if called while handling.
+     *
+     * @param action code that reads or changes the field of play state
+     */
+    public void executeAndWait(Runnable action) {
+        if (executor == null || isHandlingThread()) {
+            action.run();
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        execute(() -> {
+            try {
+                action.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        try {
+            if (!done.await(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger./**/warn("{} action not done after {}s", identifier(), WAIT_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of events and actions handled since the bus was created
+     */
+    public long getHandledCount() {
+        return handled.get();
+    }
+
+    /**
+     * @return delay between posting and the start of handling, by event type
+     */
+    public Map<String, LatencyHistogram> getHandledLatencies() {
+        return new TreeMap<>(handledLatencies);
+    }
+
+    /**
+     * @return delay between the start of handling and the last user interface event pushed, by event type, for the
+     *         events that pushed at least one
+     */
+    public Map<String, LatencyHistogram> getPushedLatencies() {
+        return new TreeMap<>(pushedLatencies);
+    }
+
+    /**
+     * @return number of events waiting in the mailbox
+     */
+    public int getQueueDepth() {
+        if (executor == null) {
+            synchronized (this) {
+                return pending.size();
+            }
+        }
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of events dropped because the mailbox was full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return true if called while handling an event or action
+     */
+    public boolean isHandlingThread() {
+        return Thread.currentThread() == handlingThread;
+    }
+
+    /**
+     * Queue the event for the subscribers. Returns immediately, unless handling inline or the mailbox is full.
+     */
+    @Override
+    public void post(Object event) {
+        enqueue(new Envelope(event, null));
+    }
+
+    /**
+     * Note that a user interface event resulting from the event being handled has been pushed. Ignored when called
+     * from another thread.
+     */
+    public void recordPush() {
+        if (isHandlingThread()) {
+            lastPush = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void register(Object object) {
+        delivery.register(object);
+    }
+
+    @Override
+    public String toString() {
+        return identifier() + " [handled=" + getHandledCount() + ", queued=" + getQueueDepth() + ", rejected="
+                + getRejectedCount() + ", handledLatency=" + handledLatencies + ", pushedLatency=" + pushedLatencies
+                + "]";
+    }
+
+    @Override
+    public void unregister(Object object) {
+        delivery.unregister(object);
+    }
+
+    /**
+     * Decisions, clock events and delayed actions (decision display, timer warnings) must not be lost: the poster
+     * waits for room in the mailbox. Other events are dropped.
+     */
+    private void mailboxFull(Envelope envelope, ThreadPoolExecutor pool) {
+        String what = envelope.event != null ? envelope.event.getClass().getSimpleName() : "action";
+        // the handling thread cannot wait for itself to make room.
+        if (mustDeliver(envelope) && !isHandlingThread() && !pool.isShutdown()) {
+            logger./**/warn("{} mailbox full, waiting to queue {}", identifier(), what);
+            try {
+                if (pool.getQueue().offer(envelope, WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // the handling thread is stuck; refuse rather than queue forever.
+        rejected.incrementAndGet();
+        logger.error("{} mailbox full, dropping {}", identifier(), what);
+    }
+
+    private boolean mustDeliver(Envelope envelope) {
+        Object event = envelope.event;
+        return event == null
+                || event instanceof FOPEvent.DecisionFullUpdate
+                || event instanceof FOPEvent.DecisionReset
+                || event instanceof FOPEvent.DecisionUpdate
+                || event instanceof FOPEvent.DownSignal
+                || event instanceof FOPEvent.ExplicitDecision
+                || event instanceof FOPEvent.JuryDecision
+                || event instanceof FOPEvent.ForceTime
+                || event instanceof FOPEvent.TimeOver
+                || event instanceof FOPEvent.TimeStarted
+                || event instanceof FOPEvent.TimeStopped;
+    }
+
+    private void dispatch(Envelope envelope) {
+        handlingThread = Thread.currentThread();
+        handlingStart = System.nanoTime();
+        lastPush = 0L;
+        try {
+            if (envelope.action != null) {
+                envelope.action.run();
+            } else {
+                delivery.post(envelope.event);
+            }
+        } catch (Throwable t) {
+            // keep the thread for the next events
+            logger.error("{} could not run action\n{}", identifier(), LoggerUtils.stackTrace(t));
+        } finally {
+            handlingThread = null;
+        }
+        if (envelope.event != null) {
+            String type = envelope.event.getClass().getSimpleName();
+            handledLatencies.computeIfAbsent(type, (k) -> new LatencyHistogram())
+                    .record(handlingStart - envelope.postTime);
+            if (lastPush != 0L) {
+                pushedLatencies.computeIfAbsent(type, (k) -> new LatencyHistogram()).record(lastPush - handlingStart);
+            }
+        }
+        if (handled.incrementAndGet() % STATS_INTERVAL == 0) {
+            logger.debug("{}", this);
+        }
+    }
+
+    private void enqueue(Envelope envelope) {
+        if (executor != null) {
+            executor.execute(envelope);
+            return;
+        }
+        synchronized (this) {
+            pending.addLast(envelope);
+            if (draining) {
+                // posted while handling; the outer call handles it next.
+                return;
+            }
+            draining = true;
+            try {
+                Envelope next;
+                while ((next = pending.pollFirst()) != null) {
+                    dispatch(next);
+                }
+            } finally {
+                draining = false;
+            }
+        }
+    }
+
+}
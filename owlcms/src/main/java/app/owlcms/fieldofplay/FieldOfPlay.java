@@ -17,9 +17,7 @@ import static app.owlcms.fieldofplay.FOPState.TIME_STOPPED;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.sound.sampled.LineUnavailableException;
@@ -28,7 +26,6 @@ import javax.sound.sampled.Mixer;
 import org.apache.commons.lang3.ObjectUtils;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
@@ -38,10 +35,10 @@ import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.athleteSort.RankingIndex;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.category.Participation;
 import app.owlcms.data.group.Group;
-import app.owlcms.data.jpa.JPAService;
 import app.owlcms.data.platform.Platform;
 import app.owlcms.fieldofplay.FOPEvent.BarbellOrPlatesChanged;
 import app.owlcms.fieldofplay.FOPEvent.BreakPaused;
@@ -60,16 +57,18 @@ import app.owlcms.fieldofplay.FOPEvent.TimeStarted;
 import app.owlcms.fieldofplay.FOPEvent.TimeStopped;
 import app.owlcms.fieldofplay.FOPEvent.WeightChange;
 import app.owlcms.i18n.Translator;
-import app.owlcms.init.OwlcmsSession;
 import app.owlcms.sound.Sound;
 import app.owlcms.sound.Tone;
 import app.owlcms.ui.shared.BreakManagement.CountdownType;
 import app.owlcms.uievents.BreakType;
+import app.owlcms.uievents.DisplayViewModel;
+import app.owlcms.uievents.GlobalRankingPublisher;
 import app.owlcms.uievents.EventForwarder;
 import app.owlcms.uievents.JuryDeliberationEventType;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.uievents.UIEvent.JuryNotification;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.OrderedEventBus;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
@@ -86,26 +85,6 @@ import ch.qos.logback.classic.Logger;
  */
 public class FieldOfPlay {
 
-    private class DelayTimer {
-        private final Timer t = new Timer();
-
-        public TimerTask schedule(final Runnable r, long delay) {
-            if (isTestingMode()) {
-                r.run();
-                return null;
-            } else {
-                final TimerTask task = new TimerTask() {
-                    @Override
-                    public void run() {
-                        r.run();
-                    }
-                };
-                t.schedule(task, delay);
-                return task;
-            }
-        }
-    }
-
     private static final int REVERSAL_DELAY = 3000;
 
     private static final long DECISION_VISIBLE_DURATION = 3500;
@@ -122,7 +101,7 @@ public class FieldOfPlay {
      */
     private Athlete clockOwner;
     private Athlete curAthlete;
-    private EventBus fopEventBus = null;
+    private FOPEventLoop fopEventBus = null;
     private EventBus uiEventBus = null;
     private EventBus postBus = null;
     private Group group = null;
@@ -137,10 +116,13 @@ public class FieldOfPlay {
     private List<Athlete> displayOrder;
     private int curWeight;
     private Tone downSignal;
-    private boolean initialWarningEmitted;
-    private boolean finalWarningEmitted;
-    private boolean timeoutEmitted;
-    private boolean downEmitted;
+    /**
+     * changed on the event handling thread, read by the timers.
+     */
+    private volatile boolean initialWarningEmitted;
+    private volatile boolean finalWarningEmitted;
+    private volatile boolean timeoutEmitted;
+    private volatile boolean downEmitted;
     private Boolean[] refereeDecision;
     private boolean decisionDisplayScheduled = false;
 
@@ -149,6 +131,11 @@ public class FieldOfPlay {
 
     private boolean testingMode;
 
+    /**
+     * delayed actions, shared scheduler in production, virtual clock when testing.
+     */
+    private IDelayScheduler scheduler = DelayScheduler.getShared();
+
     private CountdownType countdownType;
 
     private boolean cjStarted;
@@ -167,6 +154,18 @@ public class FieldOfPlay {
 
     private LinkedHashMap<String, Participation> ageGroupMap = new LinkedHashMap<>();
 
+    /**
+     * category rankings for the athletes in the categories of the current group, updated incrementally.
+     */
+    private RankingIndex rankingIndex = new RankingIndex();
+
+    /**
+     * what the displays show, built on first use after the orders or leaders change.
+     */
+    private volatile DisplayViewModel displayViewModel;
+    private final AtomicLong displayChangeCount = new AtomicLong();
+    private final Object displayViewModelLock = new Object();
+
     /**
      * Instantiates a new field of play state. When using this constructor {@link #init(List, IProxyTimer)} must later
      * be used to provide the athletes and set the athleteTimer
@@ -176,11 +175,11 @@ public class FieldOfPlay {
      */
     public FieldOfPlay(Group group, Platform platform2) {
         this.name = platform2.getName();
-        this.fopEventBus = new EventBus("FOP-" + name);
+        this.fopEventBus = new FOPEventLoop("FOP-" + name, false);
         this.postBus = new EventBus("POST-" + name);
 
-        // this.uiEventBus = new EventBus("UI-" + name);
-        this.uiEventBus = new AsyncEventBus(Executors.newCachedThreadPool());
+        // ordered per subscriber, bounded number of threads
+        this.uiEventBus = new OrderedEventBus("UI-" + name);
 
         this.athleteTimer = null;
         this.breakTimer = new ProxyBreakTimer(this);
@@ -198,7 +197,7 @@ public class FieldOfPlay {
      */
     public FieldOfPlay(List<Athlete> athletes, IProxyTimer timer1, IProxyTimer breakTimer1, boolean testingMode) {
         this.name = "test";
-        this.fopEventBus = new EventBus("FOP-" + this.name);
+        this.fopEventBus = new FOPEventLoop("FOP-" + this.name, true);
         this.uiEventBus = new EventBus("UI-" + this.name);
         this.postBus = new EventBus("POST-" + name);
         this.setTestingMode(testingMode);
@@ -306,6 +305,32 @@ public class FieldOfPlay {
         return curAthlete;
     }
 
+    /**
+     * The rows shown by the displays for the current state, computed once and shared by all the displays.
+     *
+     * @return the view model for the current lifting order, display order and leaders
+     */
+    public DisplayViewModel getDisplayViewModel() {
+        DisplayViewModel viewModel = displayViewModel;
+        if (viewModel != null) {
+            return viewModel;
+        }
+        synchronized (displayViewModelLock) {
+            viewModel = displayViewModel;
+            if (viewModel != null) {
+                return viewModel;
+            }
+            long startingCount = displayChangeCount.get();
+            viewModel = new DisplayViewModel(this, startingCount);
+            displayViewModel = viewModel;
+            // the orders may have changed while we were reading them; the change incremented the count first.
+            if (displayChangeCount.get() != startingCount) {
+                displayViewModel = null;
+            }
+            return viewModel;
+        }
+    }
+
     public List<Athlete> getDisplayOrder() {
         return displayOrder;
     }
@@ -317,6 +342,13 @@ public class FieldOfPlay {
         return fopEventBus;
     }
 
+    /**
+     * @return the fopEventBus, to run actions on the thread that handles the events, or to get its statistics
+     */
+    public FOPEventLoop getFopEventLoop() {
+        return fopEventBus;
+    }
+
     /**
      * @return the group
      */
@@ -424,6 +456,13 @@ public class FieldOfPlay {
         return timeAllowed;
     }
 
+    /**
+     * @return the scheduler for delayed actions; a {@link VirtualDelayScheduler} in testing mode
+     */
+    public IDelayScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * @return the bus on which we post commands for the listening browser pages.
      */
@@ -447,6 +486,9 @@ public class FieldOfPlay {
      * fopEventBus, this method reacts to the event by updating state, and we issue the resulting user interface
      * commands on the @link uiEventBus.
      *
+     * Events are handled one at a time by the thread of the {@link FOPEventLoop}, so the state is never changed
+     * concurrently; code running elsewhere (delayed actions, timers) uses {@link FOPEventLoop#execute(Runnable)}.
+     *
      * One exception is timers: the task to send UI events to start stop/start/manage timers is delegated to
      * implementers of IProxyTimer; these classes remember the time and broadcast to all listening timers.
      *
@@ -683,8 +725,9 @@ public class FieldOfPlay {
             JuryNotification event = new UIEvent.JuryNotification(a, e.getOrigin(),
                     e.success ? JuryDeliberationEventType.GOOD_LIFT : JuryDeliberationEventType.BAD_LIFT,
                     e.success && actualLift <= 0 || !e.success && actualLift > 0);
-            OwlcmsSession.getFop().getUiEventBus().post(event);
-            recomputeLiftingOrder();
+            getUiEventBus().post(event);
+            recomputeLiftingOrder(true, a);
+            uiShowUpdatedRankings();
         }
     }
 
@@ -697,11 +740,13 @@ public class FieldOfPlay {
         this.setClockOwnerInitialTimeAllowed(0);
         this.setPreviousAthlete(null);
         this.setLiftingOrder(athletes);
+        this.rankingIndex.invalidate();
         List<AgeGroup> allAgeGroups = AgeGroupRepository.findAgeGroups(getGroup());
         this.ageGroupMap = new LinkedHashMap<>();
         for (AgeGroup ag : allAgeGroups) {
             ageGroupMap.put(ag.getCode(), null);
         }
+        invalidateDisplayViewModel();
 
         if (athletes != null && athletes.size() > 0) {
             recomputeLiftingOrder();
@@ -734,7 +779,7 @@ public class FieldOfPlay {
         return testingMode;
     }
 
-    public synchronized boolean isTimeoutEmitted() {
+    public boolean isTimeoutEmitted() {
         return timeoutEmitted;
     }
 
@@ -779,9 +824,10 @@ public class FieldOfPlay {
     public void pushOut(UIEvent event) {
         getUiEventBus().post(event);
         getPostEventBus().post(event);
+        fopEventBus.recordPush();
     }
 
-    public synchronized void recomputeLiftingOrder() {
+    public void recomputeLiftingOrder() {
         recomputeLiftingOrder(true);
     }
 
@@ -790,25 +836,43 @@ public class FieldOfPlay {
      * lifters for all categories in the current group.
      */
     public void recomputeOrderAndRanks() {
+        recomputeOrderAndRanks(null);
+    }
+
+    /**
+     * Recompute lifting order, category ranks, and leaders for current category.
+     *
+     * When the athlete that changed is known, only the categories of that athlete are re-ranked. Otherwise, the
+     * athletes in the categories of the current group are reloaded and ranked from scratch. In both cases only the
+     * ranks that have moved are written to the database.
+     *
+     * @param changedAthlete the athlete whose lifts or requested weight changed, null if unknown.
+     */
+    public void recomputeOrderAndRanks(Athlete changedAthlete) {
         Group g = getGroup();
-        // we update the ranks of affected athletes in the database
-        JPAService.runInTransaction(em -> {
-            List<Athlete> l = AthleteSorter.assignCategoryRanks(g);
-            for (Athlete a : l) {
-                em.merge(a);
+        List<Participation> changedRanks;
+        if (rankingIndex.canUpdate(g, changedAthlete)) {
+            changedRanks = rankingIndex.update(changedAthlete);
+        } else {
+            List<Athlete> athletes = (g != null) ? AthleteRepository.findAthletesForGlobalRanking(g)
+                    : AthleteRepository.findAllByGroupAndWeighIn(null, true);
+            if (athletes == null) {
+                rankingIndex.invalidate();
+                setDisplayOrder(null);
+                setCurAthlete(null);
+                return;
             }
-            em.flush();
-            return null;
-        });
-        List<Athlete> rankedAthletes = AthleteRepository.findAthletesForGlobalRanking(g);
-        if (rankedAthletes == null) {
-            setDisplayOrder(null);
-            setCurAthlete(null);
-            return;
+            changedRanks = rankingIndex.rebuild(g, athletes);
         }
-        List<Athlete> currentGroupAthletes = AthleteSorter.displayOrderCopy(rankedAthletes).stream()
+        // we update the ranks of affected athletes in the database
+        AthleteRepository.updateCategoryRanks(changedRanks);
+        logger.debug("{}{} ranks written, {} since startup", getLoggingName(), changedRanks.size(),
+                AthleteRepository.getRankWriteCount());
+
+        List<Athlete> rankedAthletes = rankingIndex.getAthletes();
+        List<Athlete> currentGroupAthletes = AthleteSorter.displayOrderCopy(rankedAthletes.stream()
                 .filter(a -> a.getGroup() != null ? a.getGroup().equals(g) : false)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
         setDisplayOrder(currentGroupAthletes);
 
         setLiftingOrder(AthleteSorter.liftingOrderCopy(currentGroupAthletes));
@@ -861,6 +925,7 @@ public class FieldOfPlay {
      */
     public void setLeaders(List<Athlete> leaders) {
         this.leaders = leaders;
+        invalidateDisplayViewModel();
     }
 
     /**
@@ -893,6 +958,11 @@ public class FieldOfPlay {
      */
     public void setTestingMode(boolean testingMode) {
         this.testingMode = testingMode;
+        if (testingMode && !(scheduler instanceof VirtualDelayScheduler)) {
+            scheduler = new VirtualDelayScheduler();
+        } else if (!testingMode) {
+            scheduler = DelayScheduler.getShared();
+        }
     }
 
     public void setWeightAtLastStart(Integer nextAttemptRequestedWeight) {
@@ -1039,7 +1109,7 @@ public class FieldOfPlay {
         } else {
             logger.trace("&&3.C1 no clock owner, time is not running");
             // time is not running
-            recomputeLiftingOrder();
+            recomputeLiftingOrder(true, changingAthlete);
             // updateGlobalRankings(); // now done by recomputeLiftingOrder
             setStateUnlessInBreak(CURRENT_ATHLETE_DISPLAYED);
             logger.trace("&&3.C2 displaying, curAthlete={}, state={}", getCurAthlete(), state);
@@ -1049,7 +1119,7 @@ public class FieldOfPlay {
 
     private void doWeightChange(WeightChange wc, Athlete changingAthlete, Athlete clockOwner,
             boolean currentDisplayAffected) {
-        recomputeLiftingOrder(currentDisplayAffected);
+        recomputeLiftingOrder(currentDisplayAffected, changingAthlete);
         // if the currentAthlete owns the clock, then the next ui update will show the
         // correct athlete and
         // the time needs to be restarted (state = TIME_STOPPED). Going to TIME_STOPPED
@@ -1080,15 +1150,15 @@ public class FieldOfPlay {
         return decisionDisplayScheduled;
     }
 
-    private synchronized boolean isDownEmitted() {
+    private boolean isDownEmitted() {
         return downEmitted;
     }
 
-    private synchronized boolean isFinalWarningEmitted() {
+    private boolean isFinalWarningEmitted() {
         return finalWarningEmitted;
     }
 
-    private synchronized boolean isInitialWarningEmitted() {
+    private boolean isInitialWarningEmitted() {
         return initialWarningEmitted;
     }
 
@@ -1099,6 +1169,14 @@ public class FieldOfPlay {
 //                e.getOrigin()));
 //    }
 
+    /**
+     * The displays will get a new view model on their next read.
+     */
+    private void invalidateDisplayViewModel() {
+        displayChangeCount.incrementAndGet();
+        displayViewModel = null;
+    }
+
     private void prepareDownSignal() {
         if (isEmitSoundsOnServer()) {
             try {
@@ -1186,8 +1264,12 @@ public class FieldOfPlay {
     }
 
     private void recomputeLiftingOrder(boolean currentDisplayAffected) {
+        recomputeLiftingOrder(currentDisplayAffected, null);
+    }
+
+    private void recomputeLiftingOrder(boolean currentDisplayAffected, Athlete changedAthlete) {
         // this is where lifting order is actually recomputed
-        recomputeOrderAndRanks();
+        recomputeOrderAndRanks(changedAthlete);
         if (getCurAthlete() == null) {
             pushOutDone();
             return;
@@ -1274,25 +1356,27 @@ public class FieldOfPlay {
      */
     private void setDisplayOrder(List<Athlete> displayOrder) {
         this.displayOrder = displayOrder;
+        invalidateDisplayViewModel();
     }
 
-    private synchronized void setDownEmitted(boolean downEmitted) {
+    private void setDownEmitted(boolean downEmitted) {
         logger.trace("downEmitted {}", downEmitted);
         this.downEmitted = downEmitted;
     }
 
-    private synchronized void setFinalWarningEmitted(boolean finalWarningEmitted) {
+    private void setFinalWarningEmitted(boolean finalWarningEmitted) {
         logger.trace("finalWarningEmitted {}", finalWarningEmitted);
         this.finalWarningEmitted = finalWarningEmitted;
     }
 
-    private synchronized void setInitialWarningEmitted(boolean initialWarningEmitted) {
+    private void setInitialWarningEmitted(boolean initialWarningEmitted) {
         logger.trace("initialWarningEmitted {}", initialWarningEmitted);
         this.initialWarningEmitted = initialWarningEmitted;
     }
 
     private void setLiftingOrder(List<Athlete> liftingOrder) {
         this.liftingOrder = liftingOrder;
+        invalidateDisplayViewModel();
     }
 
     private void setPreviousAthlete(Athlete athlete) {
@@ -1334,7 +1418,7 @@ public class FieldOfPlay {
         }
     }
 
-    private synchronized void setTimeoutEmitted(boolean timeoutEmitted) {
+    private void setTimeoutEmitted(boolean timeoutEmitted) {
         logger.trace("timeoutEmitted {}", timeoutEmitted);
         this.timeoutEmitted = timeoutEmitted;
     }
@@ -1343,11 +1427,11 @@ public class FieldOfPlay {
         setWeightAtLastStart(getCurAthlete().getNextAttemptRequestedWeight());
     }
 
-    synchronized private void showDecisionAfterDelay(Object origin2) {
+    private void showDecisionAfterDelay(Object origin2) {
         logger.trace("{}scheduling decision display", getLoggingName());
         assert !isDecisionDisplayScheduled(); // caller checks.
         setDecisionDisplayScheduled(true); // so there are never two scheduled...
-        new DelayTimer().schedule(() -> showDecisionNow(origin2), REVERSAL_DELAY);
+        scheduler.schedule(() -> fopEventBus.execute(() -> showDecisionNow(origin2)), REVERSAL_DELAY);
 
     }
 
@@ -1375,11 +1459,11 @@ public class FieldOfPlay {
         getCurAthlete().resetForcedAsCurrent();
         AthleteRepository.save(getCurAthlete());
         uiShowRefereeDecisionOnSlaveDisplays(getCurAthlete(), goodLift, refereeDecision, refereeTime, origin);
-        recomputeLiftingOrder();
-        // updateGlobalRankings(); // now done in recomputeLiftingOrder
+        recomputeLiftingOrder(true, getCurAthlete());
+        uiShowUpdatedRankings();
         setState(DECISION_VISIBLE);
         // tell ourself to reset after 3 secs.
-        new DelayTimer().schedule(() -> fopEventBus.post(new DecisionReset(origin)), DECISION_VISIBLE_DURATION);
+        scheduler.schedule(() -> fopEventBus.post(new DecisionReset(origin)), DECISION_VISIBLE_DURATION);
     }
 
     /**
@@ -1516,19 +1600,19 @@ public class FieldOfPlay {
                 getCurAthlete().getShortName());
     }
 
-    private synchronized void uiShowDownSignalOnSlaveDisplays(Object origin2) {
+    private void uiShowDownSignalOnSlaveDisplays(Object origin2) {
         boolean emitSoundsOnServer2 = isEmitSoundsOnServer();
         boolean downEmitted2 = isDownEmitted();
         uiEventLogger.debug("showDownSignalOnSlaveDisplays server={} emitted={}", emitSoundsOnServer2, downEmitted2);
         if (emitSoundsOnServer2 && !downEmitted2) {
-            // sound is synchronous, we don't want to wait.
-            new Thread(() -> {
-                try {
+            // queued on the open output, returns immediately.
+            try {
+                if (downSignal != null) {
                     downSignal.emit();
-                } catch (IllegalArgumentException | LineUnavailableException e) {
-                    broadcast("SoundSystemProblem");
                 }
-            }).start();
+            } catch (IllegalArgumentException | LineUnavailableException e) {
+                broadcast("SoundSystemProblem");
+            }
             setDownEmitted(true);
         }
         pushOut(new UIEvent.DownSignal(origin2));
@@ -1546,8 +1630,15 @@ public class FieldOfPlay {
                 refereeForcedDecision ? null : refereeDecision2[2], origin2));
     }
 
+    /**
+     * Competition-wide rankings are published for all the platforms together, once changes have settled.
+     */
     private void uiShowUpdatedRankings() {
-        pushOut(new UIEvent.GlobalRankingUpdated(this));
+        if (isTestingMode()) {
+            pushOut(new UIEvent.GlobalRankingUpdated(this));
+        } else {
+            GlobalRankingPublisher.get().rankingsChanged();
+        }
     }
 
     private void uiShowUpdateOnJuryScreen() {
@@ -1599,7 +1690,7 @@ public class FieldOfPlay {
      * @param curAthlete
      */
     private void weightChangeDoNotDisturb(WeightChange e) {
-        recomputeOrderAndRanks();
+        recomputeOrderAndRanks(e.getAthlete());
         uiDisplayCurrentAthleteAndTime(false, e, false);
         // updateGlobalRankings(); // now done in recomputeOrderAndRanks
     }
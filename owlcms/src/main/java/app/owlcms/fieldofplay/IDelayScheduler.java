@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.fieldofplay;
+
+/**
+ * Runs the delayed actions of a field of play (decision display after the reversal delay, decision reset, etc.)
+ */
+public interface IDelayScheduler {
+
+    /**
+     * A scheduled action.
+     */
+    public interface Handle {
+        /**
+         * @return true if the action was prevented from running, false if it already ran or was already canceled.
+         */
+        public boolean cancel();
+
+        /**
+         * @return true if the action has run or was canceled
+         */
+        public boolean isDone();
+    }
+
+    /**
+     * @return current time in milliseconds, as seen by the scheduler
+     */
+    public long currentTimeMillis();
+
+    /**
+     * @return monotonic time in nanoseconds, as seen by the scheduler, for measuring elapsed time
+     */
+    public long nanoTime();
+
+    /**
+     * Run an action after a delay.
+     *
+     * @param action       the action
+     * @param delayMillis  the delay
+     * @return a handle to cancel the action
+     */
+    public Handle schedule(Runnable action, long delayMillis);
+
+}
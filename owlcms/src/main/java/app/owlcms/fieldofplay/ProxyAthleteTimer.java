@@ -6,9 +6,13 @@
  *******************************************************************************/
 package app.owlcms.fieldofplay;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.slf4j.LoggerFactory;
 
+import app.owlcms.fieldofplay.IDelayScheduler.Handle;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Level;
@@ -18,6 +22,9 @@ import ch.qos.logback.classic.Logger;
  * Class ProxyBreakTimer. Relay timer instructions from {@link FieldOfPlay} to the actual timers associated with each
  * screen. Memorize the elapsed time and timer state.
  *
+ * Elapsed time is measured on a monotonic clock. The warnings and the stop after time over are scheduled, the caller
+ * is never blocked.
+ *
  * @author Jean-François Lamy
  */
 public class ProxyAthleteTimer implements IProxyTimer {
@@ -27,12 +34,22 @@ public class ProxyAthleteTimer implements IProxyTimer {
         logger.setLevel(Level.INFO);
     }
 
-    private int timeRemaining;
+    private static final int INITIAL_WARNING = 90_000;
+    private static final int FINAL_WARNING = 30_000;
+    /**
+     * delay before stopping after time over, so the buzzer event reaches the displays.
+     */
+    private static final int STOP_DELAY = 1000;
+
     private FieldOfPlay fop;
-    private long startMillis;
-    private long stopMillis;
-    private boolean running = false;
-    private int timeRemainingAtLastStop;
+    private final IDelayScheduler clock;
+    private volatile Countdown countdown = Countdown.stopped(0);
+    private volatile int timeRemainingAtLastStop;
+
+    /**
+     * warnings and time over, scheduled when started, canceled when stopped.
+     */
+    private final List<Handle> callbacks = new ArrayList<>();
 
     /**
      * Instantiates a new countdown timer.
@@ -40,12 +57,24 @@ public class ProxyAthleteTimer implements IProxyTimer {
      * @param fop
      */
     public ProxyAthleteTimer(FieldOfPlay fop) {
+        this(fop, DelayScheduler.getShared());
+    }
+
+    /**
+     * Instantiates a new countdown timer on a given clock.
+     *
+     * @param fop
+     * @param clock measures elapsed time and runs the warnings; a {@link VirtualDelayScheduler} in manual mode for
+     *              tests
+     */
+    public ProxyAthleteTimer(FieldOfPlay fop, IDelayScheduler clock) {
         this.fop = fop;
+        this.clock = clock;
     }
 
     @Override
     public void finalWarning(Object origin) {
-        fop.emitFinalWarning();
+        fop.getFopEventLoop().execute(() -> fop.emitFinalWarning());
     }
 
     /**
@@ -53,7 +82,7 @@ public class ProxyAthleteTimer implements IProxyTimer {
      */
     @Override
     public int getTimeRemaining() {
-        return timeRemaining;
+        return countdown.getTimeRemaining();
     }
 
     /**
@@ -69,7 +98,7 @@ public class ProxyAthleteTimer implements IProxyTimer {
      */
     @Override
     public void initialWarning(Object origin) {
-        fop.emitInitialWarning();
+        fop.getFopEventLoop().execute(() -> fop.emitInitialWarning());
     }
 
     /**
@@ -77,27 +106,21 @@ public class ProxyAthleteTimer implements IProxyTimer {
      */
     @Override
     public boolean isRunning() {
-        return running;
+        return countdown.isRunning();
     }
 
     /**
-     * Compute time elapsed since start.
+     * Compute time elapsed since start. Does not lock, can be called from any thread.
      */
     @Override
     public int liveTimeRemaining() {
-        if (running) {
-            stopMillis = System.currentTimeMillis();
-            long elapsed = stopMillis - startMillis;
-            int tr = (int) (getTimeRemaining() - elapsed);
-            logger.debug("liveTimeRemaining running {} {}", DurationFormatUtils.formatDurationHMS(tr),
-                    LoggerUtils.whereFrom());
-            return tr;
-        } else {
-            int tr = getTimeRemaining();
-            logger.debug("liveTimeRemaining stopped {} {}", DurationFormatUtils.formatDurationHMS(tr),
-                    LoggerUtils.whereFrom());
-            return tr;
+        Countdown c = countdown;
+        int tr = c.liveTimeRemaining(clock.nanoTime());
+        if (logger.isDebugEnabled()) {
+            logger.debug("liveTimeRemaining {} {} {}", c.isRunning() ? "running" : "stopped",
+                    DurationFormatUtils.formatDurationHMS(tr), LoggerUtils.whereFrom());
         }
+        return tr;
     }
 
     /**
@@ -105,13 +128,10 @@ public class ProxyAthleteTimer implements IProxyTimer {
      */
     @Override
     public void setTimeRemaining(int timeRemaining) {
-        if (running) {
-            computeTimeRemaining();
-        }
+        cancelCallbacks();
         logger.info("{}setting Time -- timeRemaining = {}", fop.getLoggingName(), timeRemaining);
-        this.timeRemaining = timeRemaining;
+        countdown = Countdown.stopped(timeRemaining);
         fop.pushOut(new UIEvent.SetTime(timeRemaining, null));
-        running = false;
     }
 
     /**
@@ -119,13 +139,14 @@ public class ProxyAthleteTimer implements IProxyTimer {
      */
     @Override
     public void start() {
-        if (!running) {
-            startMillis = System.currentTimeMillis();
-            logger.info("{}starting Time -- timeRemaining = {}", fop.getLoggingName(), timeRemaining);
-            timeRemainingAtLastStop = timeRemaining;
+        Countdown c = countdown;
+        if (!c.isRunning()) {
+            logger.info("{}starting Time -- timeRemaining = {}", fop.getLoggingName(), c.getTimeRemaining());
+            timeRemainingAtLastStop = c.getTimeRemaining();
+            countdown = c.start(clock.nanoTime());
+            scheduleCallbacks(c.getTimeRemaining());
         }
-        fop.pushOut(new UIEvent.StartTime(timeRemaining, null, fop.isEmitSoundsOnServer()));
-        running = true;
+        fop.pushOut(new UIEvent.StartTime(c.getTimeRemaining(), null, fop.isEmitSoundsOnServer()));
     }
 
     /**
@@ -133,40 +154,61 @@ public class ProxyAthleteTimer implements IProxyTimer {
      */
     @Override
     public void stop() {
-        if (running) {
-            computeTimeRemaining();
-        }
-        logger.info("{}stopping Time -- timeRemaining = {}", fop.getLoggingName(), timeRemaining);
-        timeRemainingAtLastStop = timeRemaining;
-        fop.pushOut(new UIEvent.StopTime(timeRemaining, null));
-        running = false;
+        cancelCallbacks();
+        Countdown c = countdown.stop(clock.nanoTime());
+        countdown = c;
+        logger.info("{}stopping Time -- timeRemaining = {}", fop.getLoggingName(), c.getTimeRemaining());
+        timeRemainingAtLastStop = c.getTimeRemaining();
+        fop.pushOut(new UIEvent.StopTime(c.getTimeRemaining(), null));
     }
 
     @Override
     public void timeOver(Object origin) {
-        // avoid sending multiple events to FOP
-        boolean needToSendEvent = !fop.isTimeoutEmitted();
-        if (needToSendEvent) {
-            fop.emitTimeOver();
-            fop.getFopEventBus().post(new FOPEvent.TimeOver(origin));
-        }
-        // leave enough time for buzzer event to propagate allowing for some clock drift
-        if (running) {
-            try {
+        fop.getFopEventLoop().execute(() -> {
+            // avoid sending multiple events to FOP
+            boolean needToSendEvent = !fop.isTimeoutEmitted();
+            if (needToSendEvent) {
+                fop.emitTimeOver();
+                fop.getFopEventBus().post(new FOPEvent.TimeOver(origin));
+            }
+            // leave enough time for buzzer event to propagate allowing for some clock drift
+            Countdown expired = countdown;
+            if (expired.isRunning()) {
                 // timers that are more than 1 sec. late will now stop silently.
-                Thread.sleep(1000);
-                this.stop();
-            } catch (InterruptedException e) {
+                clock.schedule(() -> fop.getFopEventLoop().execute(() -> {
+                    // unless restarted in the meantime
+                    if (countdown == expired) {
+                        this.stop();
+                    }
+                }), STOP_DELAY);
+            }
+        });
+    }
+
+    private void cancelCallbacks() {
+        synchronized (callbacks) {
+            for (Handle h : callbacks) {
+                h.cancel();
             }
+            callbacks.clear();
         }
     }
 
     /**
-     * Compute time elapsed since start and adjust time remaining accordingly.
+     * The warnings and time over are signaled by the browser timers; the server also signals them, in case no
+     * browser is showing the clock. The field of play ignores the duplicates.
      */
-    private void computeTimeRemaining() {
-        stopMillis = System.currentTimeMillis();
-        long elapsed = stopMillis - startMillis;
-        timeRemaining = (int) (timeRemaining - elapsed);
+    private void scheduleCallbacks(int timeRemaining) {
+        synchronized (callbacks) {
+            if (timeRemaining > INITIAL_WARNING) {
+                callbacks.add(clock.schedule(() -> initialWarning(this), timeRemaining - INITIAL_WARNING));
+            }
+            if (timeRemaining > FINAL_WARNING) {
+                callbacks.add(clock.schedule(() -> finalWarning(this), timeRemaining - FINAL_WARNING));
+            }
+            if (timeRemaining > 0) {
+                callbacks.add(clock.schedule(() -> timeOver(this), timeRemaining));
+            }
+        }
     }
 }
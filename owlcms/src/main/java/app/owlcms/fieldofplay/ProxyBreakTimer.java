@@ -14,6 +14,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.EventBus;
 
+import app.owlcms.fieldofplay.IDelayScheduler.Handle;
 import app.owlcms.ui.shared.BreakManagement.CountdownType;
 import app.owlcms.uievents.BreakType;
 import app.owlcms.uievents.UIEvent;
@@ -25,6 +26,9 @@ import ch.qos.logback.classic.Logger;
  * Class ProxyBreakTimer. Relay timer instructions from {@link FieldOfPlay} to the actual timers
  * associated with each screen. Memorize the elapsed time and timer state.
  *
+ * Elapsed time is measured on a monotonic clock; a target end time is converted when set. The end of the break is
+ * also scheduled on the server.
+ *
  * @author Jean-François Lamy
  */
 /**
@@ -38,17 +42,21 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
         logger.setLevel(Level.INFO);
     }
 
-    private int timeRemaining;
     private FieldOfPlay fop;
-    private long startMillis;
-    private long stopMillis;
-    private boolean running = false;
-    private int timeRemainingAtLastStop;
-    private boolean indefinite;
-    private LocalDateTime end;
+    private final IDelayScheduler clock;
+    private volatile Countdown countdown = Countdown.stopped(0);
+    private volatile int timeRemainingAtLastStop;
+    private volatile boolean indefinite;
+    private volatile LocalDateTime end;
+    /**
+     * end, on the monotonic clock.
+     */
+    private volatile long endNanos;
     private Object origin;
-    private long lastStop;
+    private long lastStopNanos;
+    private boolean stoppedOnce = false;
     private Integer breakDuration;
+    private Handle breakDone;
 
     /**
      * Instantiates a new break timer proxy.
@@ -56,7 +64,19 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
      * @param fop the fop
      */
     public ProxyBreakTimer(FieldOfPlay fop) {
+        this(fop, DelayScheduler.getShared());
+    }
+
+    /**
+     * Instantiates a new break timer proxy on a given clock.
+     *
+     * @param fop   the fop
+     * @param clock measures elapsed time and signals the end of the break; a {@link VirtualDelayScheduler} in
+     *              manual mode for tests
+     */
+    public ProxyBreakTimer(FieldOfPlay fop, IDelayScheduler clock) {
         this.fop = fop;
+        this.clock = clock;
     }
 
     @Override
@@ -85,7 +105,7 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
      */
     @Override
     public int getTimeRemaining() {
-        return timeRemaining;
+        return countdown.getTimeRemaining();
     }
 
     /**
@@ -117,32 +137,27 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
      */
     @Override
     public boolean isRunning() {
-        return running;
+        return countdown.isRunning();
     }
 
     /**
-     * Compute time elapsed since start.
+     * Compute time elapsed since start. Does not lock, can be called from any thread.
      */
     @Override
     public int liveTimeRemaining() {
         if (end != null) {
-            int until = (int) LocalDateTime.now().until(end, ChronoUnit.MILLIS);
+            int until = untilEnd();
             logger.debug("liveTimeRemaining target {} {}", DurationFormatUtils.formatDurationHMS(until),
                     LoggerUtils.whereFrom());
             return until;
-        } else if (running) {
-            stopMillis = System.currentTimeMillis();
-            long elapsed = stopMillis - startMillis;
-            int tr = (int) (getTimeRemaining() - elapsed);
-            logger.debug("liveTimeRemaining running {} {}", DurationFormatUtils.formatDurationHMS(tr),
-                    LoggerUtils.whereFrom());
-            return tr;
-        } else {
-            int tr = getTimeRemaining();
-            logger.debug("liveTimeRemaining stopped {} {}", DurationFormatUtils.formatDurationHMS(tr),
-                    LoggerUtils.whereFrom());
-            return tr;
         }
+        Countdown c = countdown;
+        int tr = c.liveTimeRemaining(clock.nanoTime());
+        if (logger.isDebugEnabled()) {
+            logger.debug("liveTimeRemaining {} {} {}", c.isRunning() ? "running" : "stopped",
+                    DurationFormatUtils.formatDurationHMS(tr), LoggerUtils.whereFrom());
+        }
+        return tr;
     }
 
     /**
@@ -161,6 +176,11 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
         indefinite = false;
         // end != null overrides duration computation
         logger.debug("setting end time = {}", targetTime);
+        if (targetTime != null) {
+            // the end is a time of day; from now on, count down on the monotonic clock.
+            this.endNanos = clock.nanoTime()
+                    + LocalDateTime.now().until(targetTime, ChronoUnit.MILLIS) * 1_000_000L;
+        }
         this.end = targetTime;
     }
 
@@ -175,7 +195,6 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
         this.setEnd(null);
         fop.pushOut(new UIEvent.BreakSetTime(fop.getBreakType(), fop.getCountdownType(), getTimeRemaining(), null,
                 true, this));
-        running = false;
         indefinite = true;
     }
 
@@ -192,7 +211,7 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
     public void setTimeRemaining(int timeRemaining2) {
         indefinite = false;
 
-        this.timeRemaining = timeRemaining2;
+        this.countdown = Countdown.stopped(timeRemaining2);
 //        if (running) {
 //            computeTimeRemaining();
 //        }
@@ -201,7 +220,6 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
 
 //        fop.pushOut(new UIEvent.BreakSetTime(fop.getBreakType(), fop.getCountdownType(), timeRemaining,
 //                this.indefinite, this));
-        running = false;
     }
 
     /**
@@ -209,12 +227,16 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
      */
     @Override
     public void start() {
-        startMillis = System.currentTimeMillis();
+        countdown = countdown.start(clock.nanoTime());
+        cancelBreakDone();
+        if (!isIndefinite()) {
+            // in case no browser is showing the break timer; duplicates are ignored.
+            breakDone = clock.schedule(() -> timeOver(this), Math.max(0, getMillis()));
+        }
         UIEvent.BreakStarted event = new UIEvent.BreakStarted(isIndefinite() ? null : getMillis(), getOrigin(), false,
                 fop.getBreakType(), fop.getCountdownType());
         logger.debug("posting {}", event);
         fop.pushOut(event);
-        running = true;
     }
 
     /**
@@ -222,11 +244,11 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
      */
     @Override
     public void stop() {
-        if (running) {
+        cancelBreakDone();
+        if (isRunning()) {
             computeTimeRemaining();
         }
-        running = false;
-        timeRemainingAtLastStop = timeRemaining;
+        timeRemainingAtLastStop = getTimeRemaining();
         logger.debug("***stopping Break -- timeRemaining = {} [{}]", getTimeRemaining(), LoggerUtils.whereFrom());
         timeRemainingAtLastStop = getTimeRemaining();
         logger.debug("break stop = {} [{}]", liveTimeRemaining(), LoggerUtils.whereFrom());
@@ -243,11 +265,23 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
      */
     @Override
     public void timeOver(Object origin) {
-        if (running && !isIndefinite()) {
-            long now = System.currentTimeMillis();
-            if (now - lastStop > 1000) {
+        fop.getFopEventLoop().execute(() -> doTimeOver(origin));
+    }
+
+    private void cancelBreakDone() {
+        if (breakDone != null) {
+            breakDone.cancel();
+            breakDone = null;
+        }
+    }
+
+    private void doTimeOver(Object origin) {
+        if (isRunning() && !isIndefinite()) {
+            long now = clock.nanoTime();
+            if (!stoppedOnce || now - lastStopNanos > 1_000_000_000L) {
                 // ignore rash of timers all signaling break over
-                lastStop = System.currentTimeMillis();
+                stoppedOnce = true;
+                lastStopNanos = now;
                 this.stop();
             } else {
                 return;
@@ -256,7 +290,7 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
             // we've already signaled time over.
             return;
         }
-        logger.debug("break {} {} timeover = {} [{}]", running, isIndefinite(), getTimeRemaining(),
+        logger.debug("break {} {} timeover = {} [{}]", isRunning(), isIndefinite(), getTimeRemaining(),
                 LoggerUtils.whereFrom());
 
         // should emit sound at end of break
@@ -277,18 +311,19 @@ public class ProxyBreakTimer implements IProxyTimer, IBreakTimer {
      */
     private int computeTimeRemaining() {
         if (end != null) {
-            setTimeRemaining((int) LocalDateTime.now().until(end, ChronoUnit.MILLIS));
+            setTimeRemaining(untilEnd());
         } else {
-            stopMillis = System.currentTimeMillis();
-            long elapsed = stopMillis - startMillis;
-            setTimeRemaining((int) (getTimeRemaining() - elapsed));
+            setTimeRemaining(countdown.liveTimeRemaining(clock.nanoTime()));
         }
         return getTimeRemaining();
     }
 
     private int getMillis() {
-        return (int) (this.getEnd() != null ? LocalDateTime.now().until(getEnd(), ChronoUnit.MILLIS)
-                : getTimeRemaining());
+        return this.getEnd() != null ? untilEnd() : getTimeRemaining();
+    }
+
+    private int untilEnd() {
+        return (int) ((endNanos - clock.nanoTime()) / 1_000_000L);
     }
 
 }
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.fieldofplay;
+
+import java.util.PriorityQueue;
+
+/**
+ * Scheduler running on a virtual clock, for testing.
+ *
+ * In automatic mode (the default), scheduling an action moves the clock forward by the delay and runs the action
+ * immediately, in the caller's thread, so tests do not wait. In manual mode, actions are queued and run only when
+ * the test calls {@link #advance(long)}, in order of their due time.
+ *
+ * @author Jean-François Lamy
+ */
+public class VirtualDelayScheduler implements IDelayScheduler {
+
+    private class Task implements Handle, Comparable<Task> {
+        private final Runnable action;
+        private final long due;
+        private final long seq;
+        private boolean done = false;
+
+        Task(Runnable action, long due, long seq) {
+            this.action = action;
+            this.due = due;
+            this.seq = seq;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (VirtualDelayScheduler.this) {
+                if (done) {
+                    return false;
+                }
+                done = true;
+                queue.remove(this);
+                return true;
+            }
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            int c = Long.compare(due, o.due);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+
+        @Override
+        public boolean isDone() {
+            synchronized (VirtualDelayScheduler.this) {
+                return done;
+            }
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long now = 0L;
+    private long seq = 0L;
+    private boolean automatic = true;
+
+    /**
+     * Move the clock forward, running the actions that become due, including those they schedule.
+     *
+     * @param millis
+     */
+    public void advance(long millis) {
+        long target;
+        synchronized (this) {
+            target = now + millis;
+        }
+        while (true) {
+            Task next;
+            synchronized (this) {
+                next = queue.peek();
+                if (next == null || next.due > target) {
+                    now = target;
+                    return;
+                }
+                queue.poll();
+                next.done = true;
+                now = next.due;
+            }
+            next.action.run();
+        }
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return now * 1_000_000L;
+    }
+
+    /**
+     * @return number of actions waiting for the clock to advance
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    public synchronized boolean isAutomatic() {
+        return automatic;
+    }
+
+    @Override
+    public Handle schedule(Runnable action, long delayMillis) {
+        Task task;
+        synchronized (this) {
+            task = new Task(action, now + Math.max(0, delayMillis), seq++);
+            if (!automatic) {
+                queue.add(task);
+                return task;
+            }
+            task.done = true;
+            now = task.due;
+        }
+        action.run();
+        return task;
+    }
+
+    /**
+     * @param automatic if true, actions run as soon as they are scheduled; if false, they wait for
+     *                  {@link #advance(long)}
+     */
+    public synchronized void setAutomatic(boolean automatic) {
+        this.automatic = automatic;
+    }
+
+}
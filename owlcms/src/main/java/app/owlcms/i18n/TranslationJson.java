@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.i18n;
+
+import elemental.json.JsonObject;
+
+/**
+ * The translations sent to a web page, for one locale and one key prefix.
+ *
+ * The keys have the prefix removed ("Scoreboard.Start" becomes "Start"). Instances are computed once per translation
+ * table and shared by all the displays using the same locale, so the JSON object must not be modified. The version
+ * changes whenever the translations are reloaded; two instances with the same version have the same content.
+ *
+ * @author Jean-François Lamy
+ */
+public final class TranslationJson {
+
+    private final JsonObject json;
+    private final String jsonString;
+    private final String version;
+
+    TranslationJson(JsonObject json, String version) {
+        this.json = json;
+        this.jsonString = json.toJson();
+        this.version = version;
+    }
+
+    /**
+     * @return the translations, shared, not to be modified
+     */
+    public JsonObject getJson() {
+        return json;
+    }
+
+    /**
+     * @return the translations, serialized
+     */
+    public String getJsonString() {
+        return jsonString;
+    }
+
+    /**
+     * @return an identifier for the locale, prefix and translation table
+     */
+    public String getVersion() {
+        return version;
+    }
+
+}
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.i18n;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.slf4j.LoggerFactory;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
+
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+
+/**
+ * Translations read from the CSV file, for all the languages, ready for lookup.
+ *
+ * A table is never modified once read; {@link Translator} replaces it as a whole when the translation file is
+ * reloaded. For each locale, the translations are merged once along the same fallback chain as a ResourceBundle
+ * would use (fr_CA, then fr; the default locale if the language is missing), so a lookup is a single map access.
+ * Message patterns and the JSON sent to web pages are computed once.
+ *
+ * @author Jean-François Lamy
+ */
+final class TranslationTable {
+
+    /**
+     * Translations for a requested locale.
+     */
+    static final class LocaleTranslations {
+        /** the entries of the most specific language found, without fallback */
+        final Map<String, String> own;
+        /** the entries with the fallbacks, as seen through a resource bundle */
+        final Map<String, String> resolved;
+
+        private LocaleTranslations(Map<String, String> own, Map<String, String> resolved) {
+            this.own = own;
+            this.resolved = resolved;
+        }
+    }
+
+    private static final Logger logger = (Logger) LoggerFactory.getLogger(TranslationTable.class);
+    private static final AtomicLong generations = new AtomicLong();
+
+    /**
+     * Read the CSV file. The first line gives the languages; the first column gives the keys.
+     *
+     * @param csvName     resource name, for messages
+     * @param csvSupplier opens the resource; called again if the separator must be guessed again
+     * @return the table
+     */
+    static TranslationTable read(String csvName, Supplier<InputStream> csvSupplier) {
+        InputStream csvStream = csvSupplier.get();
+        ICsvListReader listReader = null;
+        int line = 0;
+        try {
+            CsvPreference[] preferences = new CsvPreference[] { CsvPreference.STANDARD_PREFERENCE,
+                    CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE, CsvPreference.TAB_PREFERENCE };
+
+            List<String> stringList = new ArrayList<>();
+            for (CsvPreference preference : preferences) {
+                listReader = new CsvListReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8), preference);
+                line = 1;
+                if ((stringList = listReader.read()) == null) {
+                    throw new RuntimeException(csvName + " file is empty");
+                } else if (stringList.size() <= 2) {
+                    // reset stream
+                    csvStream = csvSupplier.get();
+                } else {
+                    logger.debug(stringList.toString());
+                    break;
+                }
+            }
+
+            List<Locale> locales = new ArrayList<>();
+            List<Map<String, String>> languageEntries = new ArrayList<>();
+            for (int i = 1; i < stringList.size(); i++) {
+                String language = stringList.get(i);
+                if (language == null || language.isBlank()) {
+                    break;
+                }
+                locales.add(Translator.createLocale(language));
+                languageEntries.add(new HashMap<>());
+            }
+            int nbLanguages = locales.size();
+
+            while ((stringList = listReader.read()) != null) {
+                line++;
+                final String key = stringList.get(0);
+                if (key == null) {
+                    String message = MessageFormat.format("{0} line {1}: key is null", csvName, line);
+                    logger.error(message);
+                    throw new RuntimeException(message);
+                }
+                for (int i = 1; i < nbLanguages + 1 && i < stringList.size(); i++) {
+                    // treat the CSV strings using same rules as Properties files.
+                    // u0000 escapes are translated to Java characters
+                    String input = stringList.get(i);
+                    if (input != null) {
+                        // "\ " is not valid, \u0020 is needed.
+                        String unescapeJava = StringEscapeUtils.unescapeJava(input.trim());
+                        if (!unescapeJava.isEmpty()) {
+                            languageEntries.get(i - 1).put(key, unescapeJava);
+                        }
+                    }
+                }
+            }
+
+            Map<Locale, Map<String, String>> byLocale = new LinkedHashMap<>();
+            for (int i = 0; i < nbLanguages; i++) {
+                byLocale.put(locales.get(i), Collections.unmodifiableMap(languageEntries.get(i)));
+            }
+            logger.debug("read {} languages from {}", nbLanguages, csvName);
+            return new TranslationTable(byLocale);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (listReader != null) {
+                try {
+                    listReader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Locales to try for a locale, most specific first (same order as ResourceBundle candidates).
+     */
+    private static List<Locale> candidates(Locale locale) {
+        List<Locale> candidates = new ArrayList<>(3);
+        String language = locale.getLanguage();
+        String country = locale.getCountry();
+        String variant = locale.getVariant();
+        if (!variant.isEmpty()) {
+            candidates.add(new Locale(language, country, variant));
+        }
+        if (!country.isEmpty()) {
+            candidates.add(new Locale(language, country));
+        }
+        if (!language.isEmpty()) {
+            candidates.add(new Locale(language));
+        }
+        return candidates;
+    }
+
+    private final Map<Locale, Map<String, String>> byLocale;
+    private final List<Locale> locales;
+    private final Map<Locale, LocaleTranslations> resolvedByLocale = new ConcurrentHashMap<>();
+    private final Map<String, MessageFormat> formats = new ConcurrentHashMap<>();
+    private final Map<String, TranslationJson> jsonByPrefix = new ConcurrentHashMap<>();
+    private final long generation;
+
+    private TranslationTable(Map<Locale, Map<String, String>> byLocale) {
+        this.byLocale = byLocale;
+        this.generation = generations.incrementAndGet();
+        this.locales = Collections.unmodifiableList(new ArrayList<>(byLocale.keySet()));
+        // resolve the languages in the file ahead of time; others are resolved on first use.
+        for (Locale l : locales) {
+            forLocale(l);
+        }
+    }
+
+    /**
+     * Format a translation with parameters, using a pattern compiled on first use.
+     *
+     * @param pattern the translation
+     * @param params  the parameters
+     * @return the formatted message
+     */
+    String format(String pattern, Object... params) {
+        MessageFormat mf = formats.computeIfAbsent(pattern, (p) -> {
+            // single quotes must be doubled. If already doubled in the input, fix back.
+            String escaped = p.replaceAll("'", "''");
+            escaped = escaped.replaceAll("''''", "''");
+            return new MessageFormat(escaped);
+        });
+        // a MessageFormat is not thread-safe
+        synchronized (mf) {
+            return mf.format(params);
+        }
+    }
+
+    /**
+     * @param locale the requested locale
+     * @return the translations for the locale
+     * @throws MissingResourceException if neither the locale nor the default locale have translations
+     */
+    LocaleTranslations forLocale(Locale locale) {
+        LocaleTranslations lt = resolvedByLocale.get(locale);
+        if (lt == null) {
+            lt = resolve(locale);
+            resolvedByLocale.putIfAbsent(locale, lt);
+        }
+        return lt;
+    }
+
+    /**
+     * The translations whose English key starts with a prefix, with the prefix removed. A key missing for the locale
+     * is shown as for {@link Translator#translate(String, Locale)}.
+     *
+     * @param locale the requested locale
+     * @param prefix such as "Scoreboard."
+     * @return the translations, computed on first use
+     */
+    TranslationJson getJson(Locale locale, String prefix) {
+        String version = generation + "_" + locale.toLanguageTag() + "_" + prefix;
+        TranslationJson tj = jsonByPrefix.get(version);
+        if (tj == null) {
+            Map<String, String> resolved = forLocale(locale).resolved;
+            JsonObject translations = Json.createObject();
+            for (String key : forLocale(Locale.ENGLISH).resolved.keySet()) {
+                if (key.startsWith(prefix)) {
+                    String value = resolved.get(key);
+                    translations.put(key.substring(prefix.length()),
+                            value != null ? value : "!" + locale.getLanguage() + ": " + key);
+                }
+            }
+            tj = new TranslationJson(translations, version);
+            jsonByPrefix.putIfAbsent(version, tj);
+        }
+        return tj;
+    }
+
+    List<Locale> getLocales() {
+        return locales;
+    }
+
+    private LocaleTranslations resolve(Locale locale) {
+        List<Map<String, String>> chain = new ArrayList<>();
+        for (Locale candidate : candidates(locale)) {
+            Map<String, String> entries = byLocale.get(candidate);
+            if (entries != null) {
+                chain.add(entries);
+            }
+        }
+        if (chain.isEmpty() && !locale.equals(Locale.getDefault())) {
+            for (Locale candidate : candidates(Locale.getDefault())) {
+                Map<String, String> entries = byLocale.get(candidate);
+                if (entries != null) {
+                    chain.add(entries);
+                }
+            }
+        }
+        if (chain.isEmpty()) {
+            throw new MissingResourceException("no translations for locale " + locale, Translator.class.getName(),
+                    locale.toString());
+        }
+        // most general first, so that specific entries win
+        Map<String, String> resolved = new HashMap<>();
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            resolved.putAll(chain.get(i));
+        }
+        return new LocaleTranslations(chain.get(0), Collections.unmodifiableMap(resolved));
+    }
+
+}
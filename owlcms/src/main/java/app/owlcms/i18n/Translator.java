@@ -6,34 +6,15 @@
  *******************************************************************************/
 package app.owlcms.i18n;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.MissingResourceException;
-import java.util.Properties;
-import java.util.PropertyResourceBundle;
-import java.util.ResourceBundle;
 
-import org.apache.commons.lang3.StringEscapeUtils;
 import org.slf4j.LoggerFactory;
-import org.supercsv.io.CsvListReader;
-import org.supercsv.io.ICsvListReader;
-import org.supercsv.prefs.CsvPreference;
 
 import com.vaadin.flow.i18n.I18NProvider;
 
@@ -42,8 +23,11 @@ import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
 
 /**
- * This class creates a resource bundle from a CSV file containing the various translations, and provides translations
- * for Components according to the Vaadin translation spec.
+ * This class reads a CSV file containing the various translations, and provides translations for Components according
+ * to the Vaadin translation spec.
+ *
+ * The file is read once into a {@link TranslationTable}, which is replaced as a whole by {@link #reset()}. Lookups use
+ * the current table without locking.
  *
  * Static variations of the translation routines are also provided for translations that do not take place inside Vaadin
  * components (e.g. spreadsheets).
@@ -57,10 +41,8 @@ public class Translator implements I18NProvider {
     private static final String BUNDLE_BASE = "translation4";
     private static final String BUNDLE_PACKAGE_SLASH = "/i18n/";
 
-    private static List<Locale> locales = null;
     private static Locale forcedLocale = null;
-    private static ClassLoader i18nloader = null;
-    private static int line;
+    private static volatile TranslationTable table = null;
     private static long resetTimeStamp = System.currentTimeMillis();
 
     public static Locale createLocale(String localeString) {
@@ -83,10 +65,7 @@ public class Translator implements I18NProvider {
     }
 
     public static List<Locale> getAllAvailableLocales() {
-        if (locales == null) {
-            Translator.getBundleFromCSV(Locale.ENGLISH);
-        }
-        return locales;
+        return getTable().getLocales();
     }
 
     public static List<Locale> getAvailableLocales() {
@@ -98,28 +77,38 @@ public class Translator implements I18NProvider {
     }
 
     public static Enumeration<String> getKeys() {
-        return Translator.getBundleFromCSV(Locale.ENGLISH).getKeys();
+        return Collections.enumeration(getTable().forLocale(Locale.ENGLISH).resolved.keySet());
     }
 
+    /**
+     * @return the translations for the current locale, shared and read-only
+     */
     public static Map<String, String> getMap() {
-        final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(OwlcmsSession.getLocale());
-        Map<String, String> translations = new HashMap<>();
-        Enumeration<String> keys = bundle.getKeys();
-        String key;
-        while (keys.hasMoreElements()) {
-            key = keys.nextElement();
-            translations.put(key, bundle.getString(key));
-        }
-        return translations;
+        return getMap(OwlcmsSession.getLocale());
     }
 
-    public static long getResetTimeStamp() {
-        return resetTimeStamp;
+    /**
+     * @param locale
+     * @return the translations for the locale, shared and read-only
+     */
+    public static Map<String, String> getMap(Locale locale) {
+        return getTable().forLocale(locale).resolved;
     }
 
-    public static List<String> readLine(ICsvListReader listReader) throws IOException {
-        line++;
-        return listReader.read();
+    /**
+     * Translations for a web page, in the current locale.
+     *
+     * The result is computed once and shared until the translations are reloaded; its version identifies the content.
+     *
+     * @param prefix the prefix of the keys needed by the page, removed in the result
+     * @return the translations
+     */
+    public static TranslationJson getTranslationJson(String prefix) {
+        return getTable().getJson(helper.overrideLocale(OwlcmsSession.getLocale()), prefix);
+    }
+
+    public static long getResetTimeStamp() {
+        return resetTimeStamp;
     }
 
     /**
@@ -127,16 +116,13 @@ public class Translator implements I18NProvider {
      */
     public static void reset() {
         resetTimeStamp = System.currentTimeMillis();
-        locales = null;
-        i18nloader = null;
+        table = null;
         helper = new Translator();
-        logger.debug("cleared translation class loader");
+        logger.debug("cleared translation table");
     }
 
     public static void setForcedLocale(Locale locale) {
         if (locale != null) {
-            locales = getAllAvailableLocales();
-
             for (Locale l : getAllAvailableLocales()) {
                 if (l.getLanguage() == locale.getLanguage()) {
                     // thing will work no matter what the country and variant
@@ -178,126 +164,25 @@ public class Translator implements I18NProvider {
     }
 
     /**
-     * Return a resource bundle created by reading a CSV files. This creates properties files, and uses the standard
-     * caching implementation and bundle hierarchy as defined by Java.
-     *
-     * Resource bundles are cached by the Java implementation, so this method can be called repeatedly.
-     *
-     * Adapted from https://hub.jmonkeyengine.org/t/i18n-from-csv-calc/31492
-     *
-     * @param locale
+     * Return the translations read from the CSV file. The file is read on first use after a {@link #reset()}; the
+     * table is then shared by all threads.
      *
-     * @return
+     * @return the current translation table
      */
-    private static ResourceBundle getBundleFromCSV(Locale locale) {
-        String baseName = BUNDLE_BASE;
-        String csvName = BUNDLE_PACKAGE_SLASH + baseName + ".csv";
-        Path bundleDir = null;
-        try {
-            bundleDir = Files.createTempDirectory("bundles");
-        } catch (IOException e1) {
-            throw new RuntimeException(e1);
-        }
-        line = 0;
-
-        if (i18nloader == null) {
-            logger.debug("reloading translation bundles");
-            InputStream csvStream = ResourceWalker.getResourceAsStream(csvName);
-            ICsvListReader listReader = null;
-            try {
-                CsvPreference[] preferences = new CsvPreference[] { CsvPreference.STANDARD_PREFERENCE,
-                        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE, CsvPreference.TAB_PREFERENCE };
-
-                List<String> stringList = new ArrayList<>();
-                for (CsvPreference preference : preferences) {
-                    listReader = new CsvListReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8),
-                            preference);
-
-                    if ((stringList = readLine(listReader)) == null) {
-                        throw new RuntimeException(csvName + " file is empty");
-                    } else if (stringList.size() <= 2) {
-                        // reset stream
-                        csvStream = ResourceWalker.getResourceAsStream(csvName);
-                    } else {
-                        logger.debug(stringList.toString());
-                        break;
-                    }
-                }
-
-                final File[] outFiles = new File[stringList.size()];
-                final Properties[] languageProperties = new Properties[outFiles.length];
-                locales = new ArrayList<>();
-
-                int nbLanguages = 0;
-                for (int i = 1; i < outFiles.length; i++) {
-                    String language = stringList.get(i);
-                    logger.trace("language={} {}", language, i);
-                    if (language == null || language.isBlank()) {
-                        nbLanguages = i - 1;
-                        break;
-                    }
-                    locales.add(createLocale(language));
-                    if (language != null && !language.isEmpty()) {
-                        language = "_" + language;
-                    }
-                    final File outfile = new File(bundleDir.toFile(), baseName + language + ".properties");
-                    outFiles[i] = outfile;
-                    languageProperties[i] = new Properties();
-                }
-
-                // reading to properties
-                while ((stringList = readLine(listReader)) != null) {
-                    final String key = stringList.get(0);
-                    if (key == null) {
-                        String message = MessageFormat.format("{0} line {1}: key is null", csvName, line);
-                        logger.error(message);
-                        throw new RuntimeException(message);
-                    }
-                    logger.debug(stringList.toString());
-                    for (int i = 1; i < nbLanguages + 1; i++) {
-                        // treat the CSV strings using same rules as Properties files.
-                        // u0000 escapes are translated to Java characters
-                        String input = stringList.get(i);
-                        if (input != null) {
-                            // "\ " is not valid, \u0020 is needed.
-                            String unescapeJava = StringEscapeUtils.unescapeJava(input.trim());
-                            if (!unescapeJava.isEmpty()) {
-                                Properties properties = languageProperties[i];
-                                if (properties == null) {
-                                    String message = MessageFormat
-                                            .format("{0} line {1}: languageProperties[{2}] is null", csvName, line, i);
-                                    logger.error(message);
-                                    throw new RuntimeException(message);
-                                }
-                                properties.setProperty(key, unescapeJava);
-                            }
-                        }
-                    }
-                }
-
-                // writing
-                for (int i = 1; i < nbLanguages + 1; i++) {
-                    logger.debug("writing to " + outFiles[i].getAbsolutePath());
-                    languageProperties[i].store(new FileOutputStream(outFiles[i]), "generated from " + csvName);
-                }
-                final URL[] urls = { bundleDir.toUri().toURL() };
-                i18nloader = new URLClassLoader(urls);
-
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (listReader != null) {
-                    try {
-                        listReader.close();
-                    } catch (IOException e) {
-                    }
+    private static TranslationTable getTable() {
+        TranslationTable t = table;
+        if (t == null) {
+            synchronized (Translator.class) {
+                t = table;
+                if (t == null) {
+                    logger.debug("reloading translations");
+                    String csvName = BUNDLE_PACKAGE_SLASH + BUNDLE_BASE + ".csv";
+                    t = TranslationTable.read(csvName, () -> ResourceWalker.getResourceAsStream(csvName));
+                    table = t;
                 }
             }
         }
-
-        // reload the files
-        ResourceBundle.clearCache();
-        return ResourceBundle.getBundle(baseName, locale, i18nloader);
+        return t;
     }
 
     private static void throwInvalidLocale(String localeString) {
@@ -327,12 +212,8 @@ public class Translator implements I18NProvider {
             return "";
         }
 
-        final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(locale);
-
-        String value;
-        try {
-            value = bundle.getString(key);
-        } catch (final MissingResourceException e) {
+        String value = getTable().forLocale(locale).resolved.get(key);
+        if (value == null) {
             return "!" + locale.getLanguage() + ": " + key;
         }
         if (params.length > 0) {
@@ -346,11 +227,8 @@ public class Translator implements I18NProvider {
             nullTranslationKey();
             return "";
         }
-        final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(locale);
-
-        String value;
-        value = (String) bundle.handleGetObject(key);
-        if (params.length > 0) {
+        String value = getTable().forLocale(locale).own.get(key);
+        if (params.length > 0 && value != null) {
             value = format(value, params);
         }
         return value;
@@ -363,14 +241,10 @@ public class Translator implements I18NProvider {
             nullTranslationKey();
             return "";
         }
-        final PropertyResourceBundle bundle = (PropertyResourceBundle) getBundleFromCSV(locale);
-
-        String value;
-        try {
-            value = bundle.getString(key);
-        } catch (final MissingResourceException e) {
-            PropertyResourceBundle enBundle = (PropertyResourceBundle) getBundleFromCSV(Locale.ENGLISH);
-            value = (String) enBundle.handleGetObject(key);
+        TranslationTable t = getTable();
+        String value = t.forLocale(locale).resolved.get(key);
+        if (value == null) {
+            value = t.forLocale(Locale.ENGLISH).own.get(key);
         }
         if (params.length > 0 && value != null) {
             value = format(value, params);
@@ -390,11 +264,8 @@ public class Translator implements I18NProvider {
     private String format(String pattern, Object... params) {
         String value = pattern;
         if (params.length > 0) {
-            // single quotes must be doubled.  If already doubled in the input, fix back.
-            pattern = pattern.replaceAll("'", "''");
-            pattern = pattern.replaceAll("''''", "''");
-            value = MessageFormat.format(pattern, params);
-            //logger.trace("format {} input={} params={} \\n result={}", params.getClass(), pattern, params, value);
+            // quotes are escaped when the pattern is compiled
+            value = getTable().format(pattern, params);
         }
         return value;
     }
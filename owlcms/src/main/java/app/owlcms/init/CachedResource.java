@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.init;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import app.owlcms.utils.ResourceWalker;
+
+/**
+ * Content of a file served by {@link FileServlet}, kept in memory.
+ *
+ * The content comes either from the local override directory or from the classpath. Content larger than the size
+ * given to {@link #load(String, long)} is not read; it is streamed from its source on each request. An entry remains valid as long
+ * as the override directory and the override file (its presence, size and modification time) are unchanged. The ETag
+ * is derived from the content, so it is stable across restarts. A gzip variant is computed on first use for text
+ * content.
+ *
+ * @author Jean-François Lamy
+ */
+class CachedResource {
+
+    private static final long startTime = System.currentTimeMillis();
+
+    /**
+     * Read the content for a resource.
+     *
+     * @param resourceName absolute resource name, such as /sounds/down.mp3
+     * @param maxSize      resources larger than this are not read, and are streamed instead
+     * @return the content, or null if neither an override file nor a classpath resource exist
+     * @throws IOException
+     */
+    static CachedResource load(String resourceName, long maxSize) throws IOException {
+        Path overridePath = overridePath(resourceName);
+        String fileName = resourceName.substring(resourceName.lastIndexOf('/') + 1);
+        if (overridePath != null) {
+            BasicFileAttributes attrs = Files.readAttributes(overridePath, BasicFileAttributes.class);
+            if (attrs.size() > maxSize) {
+                return new CachedResource(fileName, attrs.size(), attrs.lastModifiedTime().toMillis(),
+                        sourceKey(overridePath, attrs), overridePath, null);
+            }
+            byte[] content;
+            try (FileChannel channel = FileChannel.open(overridePath, StandardOpenOption.READ)) {
+                // read in one pass from the channel
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                content = buffer.array();
+            }
+            return new CachedResource(fileName, content, attrs.lastModifiedTime().toMillis(),
+                    sourceKey(overridePath, attrs));
+        }
+
+        URL url = ResourceWalker.class.getResource(resourceName);
+        if (url == null) {
+            return null;
+        }
+        URLConnection connection = url.openConnection();
+        long lastModified = connection.getLastModified();
+        long size = connection.getContentLengthLong();
+        if (size > maxSize) {
+            return new CachedResource(fileName, size, lastModified > 0 ? lastModified : startTime,
+                    sourceKey(null, null), null, url);
+        }
+        byte[] content;
+        try (InputStream in = connection.getInputStream()) {
+            content = IOUtils.toByteArray(in);
+        }
+        return new CachedResource(fileName, content, lastModified > 0 ? lastModified : startTime,
+                sourceKey(null, null));
+    }
+
+    /**
+     * @return an override file for the resource, null if there is none
+     */
+    static Path overridePath(String resourceName) {
+        Path localDirPath = ResourceWalker.getLocalDirPath();
+        if (localDirPath == null) {
+            return null;
+        }
+        Path base = localDirPath.normalize();
+        Path target = base.resolve(resourceName.startsWith("/") ? resourceName.substring(1) : resourceName)
+                .normalize();
+        return target.startsWith(base) && Files.isRegularFile(target) ? target : null;
+    }
+
+    /**
+     * @return a key describing where the content currently comes from
+     */
+    static String sourceKey(Path overridePath, BasicFileAttributes attrs) {
+        if (overridePath == null) {
+            return "classpath:" + ResourceWalker.getLocalDirPath();
+        }
+        return overridePath.toAbsolutePath() + ":" + attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+    }
+
+    private final String fileName;
+    private final byte[] content;
+    private final long length;
+    private final long lastModified;
+    private final String eTag;
+    private final String sourceKey;
+    private final Path streamedPath;
+    private final URL streamedUrl;
+    private volatile byte[] gzipped;
+
+    private CachedResource(String fileName, byte[] content, long lastModified, String sourceKey) {
+        this.fileName = fileName;
+        this.content = content;
+        this.length = content.length;
+        this.lastModified = lastModified;
+        this.sourceKey = sourceKey;
+        this.streamedPath = null;
+        this.streamedUrl = null;
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        this.eTag = fileName + "_" + content.length + "_" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * A resource too large to be kept in memory, read from the override file or the classpath URL when served.
+     */
+    private CachedResource(String fileName, long length, long lastModified, String sourceKey, Path streamedPath,
+            URL streamedUrl) {
+        this.fileName = fileName;
+        this.content = null;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.sourceKey = sourceKey;
+        this.streamedPath = streamedPath;
+        this.streamedUrl = streamedUrl;
+        this.eTag = fileName + "_" + length + "_" + Long.toHexString(lastModified);
+    }
+
+    /**
+     * @return the content, null if the resource is streamed
+     */
+    byte[] getContent() {
+        return content;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return the content compressed with gzip, computed once
+     */
+    byte[] getGzipped() {
+        byte[] g = gzipped;
+        if (g == null) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 3 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+                gz.write(content);
+            } catch (IOException e) {
+                // cannot happen in memory
+                throw new RuntimeException(e);
+            }
+            g = bos.toByteArray();
+            gzipped = g;
+        }
+        return g;
+    }
+
+    /**
+     * @return the content, read from memory or from the source of a streamed resource
+     * @throws IOException
+     */
+    InputStream openStream() throws IOException {
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        } else if (streamedPath != null) {
+            return Files.newInputStream(streamedPath);
+        } else {
+            return streamedUrl.openStream();
+        }
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    /**
+     * @return false if the resource is too large to be kept in memory, and is read from its source when served
+     */
+    boolean isInMemory() {
+        return content != null;
+    }
+
+    /**
+     * @return true if the override directory and the override file are still those the content was read from
+     */
+    boolean isCurrent(String resourceName) {
+        Path overridePath = overridePath(resourceName);
+        if (overridePath == null) {
+            return Objects.equals(sourceKey, sourceKey(null, null));
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(overridePath, BasicFileAttributes.class);
+            return Objects.equals(sourceKey, sourceKey(overridePath, attrs));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+}
@@ -21,21 +21,17 @@
 package app.owlcms.init;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
@@ -44,12 +40,10 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.utils.LoggerUtils;
-import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
 
 /**
@@ -62,7 +56,8 @@ import ch.qos.logback.classic.Logger;
  */
 /**
  * Modified to fetch files under the ./local directory relative to the startup directory and, failing that, as a
- * resource on the classpath.
+ * resource on the classpath. The content is kept in memory (see {@link CachedResource}) and reread when the override
+ * file changes; text content is compressed once.
  *
  * @author Jean-François Lamy
  *
@@ -106,6 +101,15 @@ public class FileServlet extends HttpServlet {
 
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    private static final int MAX_CACHED_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Content of the files served, by resource name.
+     */
+    private static final Map<String, CachedResource> cache = new ConcurrentHashMap<>();
+
     // Actions ------------------------------------------------------------------------------------
 
     private static boolean ignoreCaching = false;
@@ -159,37 +163,23 @@ public class FileServlet extends HttpServlet {
     }
 
     /**
-     * Copy the given byte range of the given input to the given output.
+     * Write the given byte range of the given content to the given output.
      *
-     * @param input  The input to copy the given range to the given output for.
-     * @param output The output to copy the given range from the given input for.
+     * @param file   The cached content, or a resource streamed from its source.
+     * @param output The output to write the given range to.
      * @param start  Start of the byte range.
      * @param length Length of the byte range.
      * @throws IOException If something fails at I/O level.
      */
-    private static void copy(RandomAccessFile input, OutputStream output, long start, long length)
+    private static void copy(CachedResource file, OutputStream output, long start, long length)
             throws IOException {
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        int read;
-
-        if (input.length() == length) {
-            // Write full range.
-            while ((read = input.read(buffer)) > 0) {
-                output.write(buffer, 0, read);
-            }
-        } else {
-            // Write partial range.
-            input.seek(start);
-            long toRead = length;
-
-            while ((read = input.read(buffer)) > 0) {
-                if ((toRead -= read) > 0) {
-                    output.write(buffer, 0, read);
-                } else {
-                    output.write(buffer, 0, (int) toRead + read);
-                    break;
-                }
-            }
+        byte[] content = file.getContent();
+        if (content != null) {
+            output.write(content, (int) start, (int) length);
+            return;
+        }
+        try (InputStream input = file.openStream()) {
+            IOUtils.copyLarge(input, output, start, length, new byte[DEFAULT_BUFFER_SIZE]);
         }
     }
 
@@ -288,7 +278,7 @@ public class FileServlet extends HttpServlet {
         processRequest(request, response, false);
     }
 
-    private File getFileFromPathInfo(HttpServletResponse response, String requestedFile)
+    private CachedResource getResourceFromPathInfo(HttpServletResponse response, String requestedFile)
             throws IOException, UnsupportedEncodingException {
 
         // Check if file is actually supplied to the request URL.
@@ -306,8 +296,7 @@ public class FileServlet extends HttpServlet {
             // URL-decode the file name (might contain spaces and on) and prepare file object.
             logger.debug("requestedFile {}", requestedFile);
             String relativeFileName = URLDecoder.decode(requestedFile, "UTF-8");
-            Path finalPath = Paths.get(relativeFileName);
-            return getFileFromResource(response, finalPath, "/" + relativeFileName);
+            return getCachedResource(response, "/" + relativeFileName);
         } catch (IllegalArgumentException e) {
             logger.error(e.getLocalizedMessage());
             response.getWriter().print(e.getLocalizedMessage());
@@ -321,26 +310,29 @@ public class FileServlet extends HttpServlet {
         }
     }
 
-    private File getFileFromResource(HttpServletResponse response, Path finalPath, String resourceName)
-            throws IOException, FileNotFoundException {
-        InputStream in = ResourceWalker.getResourceAsStream(resourceName);
-        if (in != null) {
-            final String fullFileName = finalPath.getFileName().toString();
-            final String extension = FilenameUtils.getExtension(fullFileName);
-            final String baseName = FilenameUtils.getBaseName(fullFileName);
-            final File tempFile = File.createTempFile(baseName, "." + extension);
-            logger.debug("creating {}", tempFile.getAbsolutePath());
-            tempFile.deleteOnExit();
-            try (FileOutputStream out = new FileOutputStream(tempFile)) {
-                IOUtils.copy(in, out);
+    /**
+     * Get the content from the cache, reading it again if the override directory or override file have changed.
+     */
+    private CachedResource getCachedResource(HttpServletResponse response, String resourceName)
+            throws IOException {
+        CachedResource cached = cache.get(resourceName);
+        if (cached == null || !cached.isCurrent(resourceName)) {
+            cached = CachedResource.load(resourceName, MAX_CACHED_SIZE);
+            if (cached == null) {
+                cache.remove(resourceName);
+                logger./**/error("resource or override not found {}", resourceName);
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return null;
+            }
+            if (cached.isInMemory()) {
+                logger.debug("caching {} {} bytes", resourceName, cached.getLength());
+                cache.put(resourceName, cached);
+            } else {
+                logger.debug("streaming {} {} bytes", resourceName, cached.getLength());
+                cache.remove(resourceName);
             }
-            tempFile.setReadable(true);
-            return tempFile;
-        } else {
-            logger./**/error("resource or override not found {}", resourceName);
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return null;
         }
+        return cached;
     }
 
     /**
@@ -359,16 +351,17 @@ public class FileServlet extends HttpServlet {
         String requestedFileName = request.getPathInfo();
         logger.debug("requested file = {}", requestedFileName);
 
-        File file = getFileFromPathInfo(response, requestedFileName);
+        CachedResource file = getResourceFromPathInfo(response, requestedFileName);
         if (file == null) {
             return;
         }
 
-        // Prepare some variables. The ETag is an unique identifier of the file.
-        String fileName = file.getName();
-        long length = file.length();
-        long lastModified = file.lastModified();
-        String eTag = fileName + "_" + length + "_" + lastModified;
+        // Prepare some variables. The ETag is an unique identifier of the content.
+        String fileName = file.getFileName();
+        long length = file.getLength();
+        long lastModified = file.getLastModified();
+        String eTag = file.getETag();
+        String gzipETag = eTag + GZIP_ETAG_SUFFIX;
         long expires;
         if (isIgnoreCaching()) {
             expires = System.currentTimeMillis() - 2000; // already expired to force reload
@@ -387,9 +380,9 @@ public class FileServlet extends HttpServlet {
         if (!noCache) {
             // If-None-Match header should contain "*" or ETag. If so, then return 304.
             String ifNoneMatch = request.getHeader("If-None-Match");
-            if (ifNoneMatch != null && matches(ifNoneMatch, eTag)) {
+            if (ifNoneMatch != null && (matches(ifNoneMatch, eTag) || matches(ifNoneMatch, gzipETag))) {
                 response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                response.setHeader("ETag", eTag); // Required in 304.
+                response.setHeader("ETag", matches(ifNoneMatch, gzipETag) ? gzipETag : eTag); // Required in 304.
                 response.setDateHeader("Expires", expires); // Postpone cache with 1 week.
                 return;
             }
@@ -409,7 +402,7 @@ public class FileServlet extends HttpServlet {
 
         // If-Match header should contain "*" or ETag. If not, then return 412.
         String ifMatch = request.getHeader("If-Match");
-        if (ifMatch != null && !matches(ifMatch, eTag)) {
+        if (ifMatch != null && !matches(ifMatch, eTag) && !matches(ifMatch, gzipETag)) {
             response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
             return;
         }
@@ -514,19 +507,21 @@ public class FileServlet extends HttpServlet {
         response.setBufferSize(DEFAULT_BUFFER_SIZE);
         response.setHeader("Content-Disposition", disposition + ";filename=\"" + fileName + "\"");
         response.setHeader("Accept-Ranges", "bytes");
-        response.setHeader("ETag", eTag);
+        boolean sendGzip = acceptsGzip && file.isInMemory() && (ranges.isEmpty() || ranges.get(0) == full);
+        response.setHeader("ETag", sendGzip ? gzipETag : eTag);
+        if (contentType.startsWith("text")) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
         response.setDateHeader("Last-Modified", lastModified);
         response.setDateHeader("Expires", expires);
 
         // Send requested file (part(s)) to client ------------------------------------------------
 
         // Prepare streams.
-        RandomAccessFile input = null;
         OutputStream output = null;
 
         try {
             // Open streams.
-            input = new RandomAccessFile(file, "r");
             output = response.getOutputStream();
 
             if (ranges.isEmpty() || ranges.get(0) == full) {
@@ -536,18 +531,18 @@ public class FileServlet extends HttpServlet {
                 response.setContentType(contentType);
 
                 if (content) {
-                    if (acceptsGzip) {
-                        // The browser accepts GZIP, so GZIP the content.
+                    if (sendGzip) {
+                        // The browser accepts GZIP, send the precompressed variant.
+                        byte[] gzipped = file.getGzipped();
                         response.setHeader("Content-Encoding", "gzip");
-                        output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
+                        response.setHeader("Content-Length", String.valueOf(gzipped.length));
+                        output.write(gzipped);
                     } else {
-                        // Content length is not directly predictable in case of GZIP.
-                        // So only add it if there is no means of GZIP, else browser will hang.
                         response.setHeader("Content-Length", String.valueOf(r.length));
-                    }
 
-                    // Copy full range.
-                    copy(input, output, r.start, r.length);
+                        // Copy full range.
+                        copy(file, output, r.start, r.length);
+                    }
                 }
 
             } else if (ranges.size() == 1) {
@@ -561,7 +556,7 @@ public class FileServlet extends HttpServlet {
 
                 if (content) {
                     // Copy single part range.
-                    copy(input, output, r.start, r.length);
+                    copy(file, output, r.start, r.length);
                 }
 
             } else {
@@ -583,7 +578,7 @@ public class FileServlet extends HttpServlet {
                         sos.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
 
                         // Copy single part range of multi part range.
-                        copy(input, output, r.start, r.length);
+                        copy(file, output, r.start, r.length);
                     }
 
                     // End with multipart boundary.
@@ -594,7 +589,6 @@ public class FileServlet extends HttpServlet {
         } finally {
             // Gently close streams.
             close(output);
-            close(input);
         }
     }
 
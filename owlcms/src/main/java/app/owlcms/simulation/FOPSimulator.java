@@ -300,7 +300,7 @@ public class FOPSimulator implements Runnable {
         if (curGs.size() > 0) {
             Group g = curGs.get(0);
             logger.info("########## starting group {} of {}", g, curGs);
-            fop.startLifting(g, this);
+            fop.getFopEventLoop().executeAndWait(() -> fop.startLifting(g, this));
             return true;
         } else {
             return false;
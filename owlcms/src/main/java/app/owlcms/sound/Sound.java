@@ -6,24 +6,18 @@
  *******************************************************************************/
 package app.owlcms.sound;
 
-import java.io.InputStream;
-
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.sound.sampled.LineEvent;
-import javax.sound.sampled.LineListener;
 import javax.sound.sampled.Mixer;
 
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.utils.LoggerUtils;
-import app.owlcms.utils.ResourceWalker;
 import ch.qos.logback.classic.Logger;
 
 /**
  * Play a sampled sound. Requires an uncompressed format (WAV), not a compressed (MP3) format.
  *
+ * The sound is decoded once and played by the {@link SoundEngine} of the mixer.
+ *
  * @author jflamy
  */
 public class Sound {
@@ -31,46 +25,25 @@ public class Sound {
 
     final Logger logger = (Logger) LoggerFactory.getLogger(Sound.class);
     private Mixer mixer;
-    private InputStream resource;
 
-    private String soundURL;
+    private String soundRelativeURL;
 
     public Sound(Mixer mixer, String soundRelativeURL) throws IllegalArgumentException {
         this.mixer = mixer;
-        this.soundURL = SOUND_PREFIX + soundRelativeURL;
-        this.resource = ResourceWalker.getResourceAsStream(soundURL);
+        this.soundRelativeURL = soundRelativeURL;
     }
 
-    public synchronized void emit() {
+    /**
+     * Start playing. Returns immediately.
+     */
+    public void emit() {
         try {
             if (mixer == null) {
                 return;
             }
-
-            // since we are reading from the jar, we need to avoid the mark/reset trial and
-            // error from AudioSystem.getAudioInputStream
-            // so we force WaveFileReader.
-            WaveFileReader wfr = new WaveFileReader();
-            final AudioInputStream inputStream = wfr.getAudioInputStream(resource);
-            final Clip clip = AudioSystem.getClip(mixer.getMixerInfo());
-            clip.open(inputStream);
-
-            // clip.start() creates a native thread 'behind the scenes'
-            // unless this is added, it never goes away
-            // ref:
-            // http://stackoverflow.com/questions/837974/determine-when-to-close-a-sound-playing-thread-in-java
-            clip.addLineListener(new LineListener() {
-                @Override
-                public void update(LineEvent evt) {
-                    if (evt.getType() == LineEvent.Type.STOP) {
-                        evt.getLine().close();
-                    }
-                }
-            });
-            clip.start();
-
+            SoundEngine.get(mixer).play(soundRelativeURL);
         } catch (Exception e) {
-            logger.error("could not emit {} {}", soundURL, LoggerUtils./**/stackTrace(e));
+            logger.error("could not emit {} {}", SOUND_PREFIX + soundRelativeURL, LoggerUtils./**/stackTrace(e));
         }
     }
 
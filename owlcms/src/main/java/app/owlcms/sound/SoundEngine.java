@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.sound;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.ResourceWalker;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Plays the server-side sounds of one output (mixer).
+ *
+ * The sounds are decoded once into PCM samples and kept. A single line is opened on the mixer and kept open; a
+ * thread mixes the sounds being played and writes them to the line in short chunks, so a new sound starts within
+ * the few chunks already buffered, whatever else is playing. Several sounds can be heard at the same time (down
+ * signal and time over, for example).
+ *
+ * @author Jean-François Lamy
+ */
+public class SoundEngine {
+
+    /**
+     * A sound being played.
+     */
+    private static class Voice {
+        private final short[] samples;
+        private int position = 0;
+
+        Voice(short[] samples) {
+            this.samples = samples;
+        }
+    }
+
+    /**
+     * CD quality, the format of the WAV files provided.
+     */
+    static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+
+    private static final int CHANNELS = 2;
+
+    /**
+     * samples (all channels) written at a time, 10 ms.
+     */
+    private static final int CHUNK_SAMPLES = 441 * CHANNELS;
+
+    /**
+     * chunks buffered by the line; bounds the delay before a new sound is heard.
+     */
+    private static final int BUFFERED_CHUNKS = 4;
+
+    private static final int MAX_VOICES = 8;
+
+    /**
+     * the WAV files used by the server, decoded when the engine is created.
+     */
+    private static final String[] PRELOADED = { "initialWarning2.wav", "finalWarning2.wav", "timeOver2.wav",
+            "down2.wav", "beepBeep2.wav" };
+
+    final static Logger logger = (Logger) LoggerFactory.getLogger(SoundEngine.class);
+
+    private static final Map<String, SoundEngine> engines = new ConcurrentHashMap<>();
+
+    /**
+     * @param mixer the output
+     * @return the engine for the output, created on first use
+     */
+    public static SoundEngine get(Mixer mixer) {
+        return engines.computeIfAbsent(mixer.getMixerInfo().getName(), (n) -> new SoundEngine(mixer));
+    }
+
+    /**
+     * @param hz    frequency
+     * @param msecs duration
+     * @param vol   between 0.0 and 1.0
+     * @return the samples of a sine wave, with short fade in and fade out to avoid clicks
+     */
+    static short[] tone(int hz, int msecs, double vol) {
+        if (vol > 1.0 || vol < 0.0) {
+            throw new IllegalArgumentException("Volume out of range 0.0 - 1.0");
+        }
+        float rate = FORMAT.getSampleRate();
+        int frames = (int) (msecs * rate / 1000);
+        int fade = (int) (rate / 400);
+        short[] samples = new short[frames * CHANNELS];
+        for (int f = 0; f < frames; f++) {
+            double value = Math.sin(f / (rate / hz) * 2.0 * Math.PI) * Short.MAX_VALUE * vol;
+            if (f < fade) {
+                value = value * f / fade;
+            } else if (frames - 1 - f < fade) {
+                value = value * (frames - 1 - f) / fade;
+            }
+            for (int c = 0; c < CHANNELS; c++) {
+                samples[f * CHANNELS + c] = (short) value;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * @param resourceName a WAV resource
+     * @return the samples, in {@link #FORMAT}
+     */
+    static short[] decode(String resourceName) throws IOException, UnsupportedAudioFileException {
+        byte[] content;
+        try (InputStream is = ResourceWalker.getResourceAsStream(resourceName)) {
+            if (is == null) {
+                throw new FileNotFoundException(resourceName);
+            }
+            content = IOUtils.toByteArray(is);
+        }
+        // force WaveFileReader, AudioSystem guesses the type by trial and error
+        AudioInputStream in = new WaveFileReader().getAudioInputStream(new ByteArrayInputStream(content));
+        if (!in.getFormat().matches(FORMAT)) {
+            in = AudioSystem.getAudioInputStream(FORMAT, in);
+        }
+        byte[] pcm = IOUtils.toByteArray(in);
+        short[] samples = new short[pcm.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((pcm[2 * i] & 0xff) | (pcm[2 * i + 1] << 8));
+        }
+        return samples;
+    }
+
+    private final Mixer mixer;
+    private final Map<String, short[]> decoded = new ConcurrentHashMap<>();
+    private final List<Voice> voices = new ArrayList<>();
+    private SourceDataLine line;
+    private Thread writer;
+
+    private SoundEngine(Mixer mixer) {
+        this.mixer = mixer;
+        for (String name : PRELOADED) {
+            try {
+                samples(name);
+            } catch (Exception e) {
+                logger./**/warn("could not decode {} {}", name, LoggerUtils.exceptionMessage(e));
+            }
+        }
+    }
+
+    /**
+     * Play a sound from the sounds directory. Returns immediately.
+     *
+     * @param soundRelativeURL the file name, e.g. timeOver2.wav
+     * @throws LineUnavailableException if the output cannot be opened
+     */
+    public void play(String soundRelativeURL) throws LineUnavailableException {
+        short[] samples;
+        try {
+            samples = samples(soundRelativeURL);
+        } catch (IOException | UnsupportedAudioFileException e) {
+            logger.error("could not decode {} {}", soundRelativeURL, LoggerUtils.exceptionMessage(e));
+            return;
+        }
+        start(samples);
+    }
+
+    /**
+     * Play a tone. Returns immediately.
+     *
+     * @param hz    frequency
+     * @param msecs duration
+     * @param vol   between 0.0 and 1.0
+     * @throws LineUnavailableException if the output cannot be opened
+     */
+    public void playTone(int hz, int msecs, double vol) throws LineUnavailableException {
+        start(decoded.computeIfAbsent("tone:" + hz + ":" + msecs + ":" + vol, (k) -> tone(hz, msecs, vol)));
+    }
+
+    /**
+     * Mix the next chunk of the sounds being played.
+     *
+     * @param accumulator work area
+     * @param chunk       receives the mix
+     * @return false if nothing is playing; the sum is clipped to 16 bits
+     */
+    private boolean mixChunk(int[] accumulator, short[] chunk) {
+        synchronized (voices) {
+            if (voices.isEmpty()) {
+                return false;
+            }
+            Arrays.fill(accumulator, 0);
+            for (Iterator<Voice> it = voices.iterator(); it.hasNext();) {
+                Voice v = it.next();
+                int n = Math.min(chunk.length, v.samples.length - v.position);
+                for (int i = 0; i < n; i++) {
+                    accumulator[i] += v.samples[v.position + i];
+                }
+                v.position += n;
+                if (v.position >= v.samples.length) {
+                    it.remove();
+                }
+            }
+        }
+        for (int i = 0; i < chunk.length; i++) {
+            int v = accumulator[i];
+            chunk[i] = (short) (v > Short.MAX_VALUE ? Short.MAX_VALUE : (v < Short.MIN_VALUE ? Short.MIN_VALUE : v));
+        }
+        return true;
+    }
+
+    private synchronized void openLine() throws LineUnavailableException {
+        if (line != null) {
+            return;
+        }
+        SourceDataLine sdl = AudioSystem.getSourceDataLine(FORMAT, mixer.getMixerInfo());
+        sdl.open(FORMAT, CHUNK_SAMPLES * 2 * BUFFERED_CHUNKS);
+        sdl.start();
+        line = sdl;
+        writer = new Thread(this::writeLoop, "sound-" + mixer.getMixerInfo().getName());
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("opened sound output {}", mixer.getMixerInfo().getName());
+    }
+
+    private short[] samples(String soundRelativeURL) throws IOException, UnsupportedAudioFileException {
+        short[] samples = decoded.get(soundRelativeURL);
+        if (samples == null) {
+            samples = decode(Sound.SOUND_PREFIX + soundRelativeURL);
+            decoded.put(soundRelativeURL, samples);
+        }
+        return samples;
+    }
+
+    private void start(short[] samples) throws LineUnavailableException {
+        openLine();
+        synchronized (voices) {
+            if (voices.size() >= MAX_VOICES) {
+                logger./**/warn("too many sounds playing on {}, ignored", mixer.getMixerInfo().getName());
+                return;
+            }
+            voices.add(new Voice(samples));
+            voices.notifyAll();
+        }
+    }
+
+    private void writeLoop() {
+        int[] accumulator = new int[CHUNK_SAMPLES];
+        short[] chunk = new short[CHUNK_SAMPLES];
+        byte[] bytes = new byte[CHUNK_SAMPLES * 2];
+        while (true) {
+            try {
+                if (!mixChunk(accumulator, chunk)) {
+                    // nothing to play; the line stays open and started, ready for the next sound.
+                    synchronized (voices) {
+                        while (voices.isEmpty()) {
+                            voices.wait();
+                        }
+                    }
+                    continue;
+                }
+                for (int i = 0; i < chunk.length; i++) {
+                    bytes[2 * i] = (byte) chunk[i];
+                    bytes[2 * i + 1] = (byte) (chunk[i] >> 8);
+                }
+                // blocks while the line buffer is full, which paces the loop
+                line.write(bytes, 0, bytes.length);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.error("sound output failed {}", LoggerUtils.stackTrace(e));
+            }
+        }
+    }
+
+}
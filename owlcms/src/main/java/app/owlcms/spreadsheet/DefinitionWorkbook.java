@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.spreadsheet;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.ResourceWalker;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Cell values of a definition workbook (age groups, records), read once.
+ *
+ * Each sheet is a list of rows, and each row the list of the cells present in the file, in order, as the POI
+ * iterators return them. A value is a String, a Double (numbers and dates), a Boolean, or null for a blank cell.
+ *
+ * Workbooks are kept by resource name and content hash, in memory and as JSON files in the temporary directory, so a
+ * definition file is only parsed again when its content changes. Excel 2007 files are read as a stream, without
+ * building the POI workbook.
+ *
+ * @author Jean-François Lamy
+ */
+public class DefinitionWorkbook {
+
+    private static final String CACHE_VERSION = "1";
+
+    final static Logger logger = (Logger) LoggerFactory.getLogger(DefinitionWorkbook.class);
+
+    private static final Map<String, DefinitionWorkbook> workbooks = new ConcurrentHashMap<>();
+
+    /**
+     * @param cell a cell value
+     * @return the value as shown by Excel for the general format
+     */
+    public static String format(Object cell) {
+        if (cell instanceof Double) {
+            double d = (Double) cell;
+            if (d == Math.rint(d) && !Double.isInfinite(d)) {
+                return Long.toString((long) d);
+            }
+            return cell.toString();
+        } else if (cell instanceof Boolean) {
+            return ((Boolean) cell) ? "TRUE" : "FALSE";
+        }
+        return cell == null ? "" : cell.toString();
+    }
+
+    /**
+     * @param cell a cell value
+     * @return the boolean value, false for a blank cell
+     * @throws IllegalStateException if the cell is not a boolean
+     */
+    public static boolean getBoolean(Object cell) {
+        if (cell == null) {
+            return false;
+        } else if (cell instanceof Boolean) {
+            return (Boolean) cell;
+        }
+        throw new IllegalStateException("Cannot get a BOOLEAN value from " + cell);
+    }
+
+    /**
+     * @param cell a cell value
+     * @return the numeric value, 0 for a blank cell
+     * @throws IllegalStateException if the cell is not numeric
+     */
+    public static double getNumeric(Object cell) {
+        if (cell == null) {
+            return 0.0D;
+        } else if (cell instanceof Double) {
+            return (Double) cell;
+        }
+        throw new IllegalStateException("Cannot get a NUMERIC value from " + cell);
+    }
+
+    /**
+     * @param cell a cell value
+     * @return the text, empty for a blank cell
+     * @throws IllegalStateException if the cell is not text
+     */
+    public static String getString(Object cell) {
+        if (cell == null) {
+            return "";
+        } else if (cell instanceof String) {
+            return (String) cell;
+        }
+        throw new IllegalStateException("Cannot get a STRING value from " + cell);
+    }
+
+    /**
+     * Read a definition workbook from the local override directory or the classpath.
+     *
+     * @param resourceName the resource name, e.g. /agegroups/AgeGroups.xlsx
+     * @return the cell values
+     * @throws IOException if the resource does not exist or cannot be read
+     */
+    public static DefinitionWorkbook load(String resourceName) throws IOException {
+        byte[] content;
+        try (InputStream is = ResourceWalker.getResourceAsStream(resourceName)) {
+            if (is == null) {
+                throw new FileNotFoundException(resourceName);
+            }
+            content = IOUtils.toByteArray(is);
+        }
+        String hash = hash(content);
+
+        DefinitionWorkbook workbook = workbooks.get(resourceName);
+        if (workbook != null && hash.equals(workbook.getHash())) {
+            return workbook;
+        }
+
+        Path cacheFile = cacheFile(resourceName, hash);
+        workbook = readCacheFile(cacheFile);
+        if (workbook == null) {
+            long start = System.currentTimeMillis();
+            workbook = new DefinitionWorkbook();
+            workbook.setHash(hash);
+            workbook.setSheets(parse(content));
+            logger.debug("parsed {} in {} ms", resourceName, System.currentTimeMillis() - start);
+            writeCacheFile(cacheFile, workbook);
+        }
+        workbooks.put(resourceName, workbook);
+        return workbook;
+    }
+
+    private static Path cacheFile(String resourceName, String hash) {
+        String fileName = resourceName.replaceAll("[^A-Za-z0-9_.-]", "_") + "_" + hash + ".json";
+        return Paths.get(System.getProperty("java.io.tmpdir"), "owlcms-definitions-" + CACHE_VERSION, fileName);
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest(content)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required on every Java platform
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<List<List<Object>>> parse(byte[] content) throws IOException {
+        if (content.length >= 2 && content[0] == 'P' && content[1] == 'K') {
+            return XlsxSheetReader.readSheets(new ByteArrayInputStream(content));
+        }
+        // older Excel format, read by POI
+        try (Workbook workbook = WorkbookFactory.create(new ByteArrayInputStream(content))) {
+            List<List<List<Object>>> sheets = new ArrayList<>();
+            for (Sheet sheet : workbook) {
+                List<List<Object>> rows = new ArrayList<>();
+                for (Row row : sheet) {
+                    List<Object> cells = new ArrayList<>();
+                    for (Cell cell : row) {
+                        cells.add(value(cell));
+                    }
+                    rows.add(cells);
+                }
+                sheets.add(rows);
+            }
+            return sheets;
+        }
+    }
+
+    private static DefinitionWorkbook readCacheFile(Path cacheFile) {
+        if (!Files.exists(cacheFile)) {
+            return null;
+        }
+        try {
+            return new ObjectMapper().readValue(cacheFile.toFile(), DefinitionWorkbook.class);
+        } catch (IOException e) {
+            logger./**/warn("ignoring unreadable cache file {} {}", cacheFile, LoggerUtils.exceptionMessage(e));
+            return null;
+        }
+    }
+
+    private static Object value(Cell cell) {
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType()
+                : cell.getCellType();
+        switch (type) {
+        case NUMERIC:
+            return cell.getNumericCellValue();
+        case STRING:
+            return cell.getStringCellValue();
+        case BOOLEAN:
+            return cell.getBooleanCellValue();
+        case ERROR:
+            return "#ERROR";
+        default:
+            return null;
+        }
+    }
+
+    private static void writeCacheFile(Path cacheFile, DefinitionWorkbook workbook) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            // written aside and moved, so a concurrent reader never sees a partial file
+            Path temp = Files.createTempFile(cacheFile.getParent(), "definition", ".tmp");
+            new ObjectMapper().writeValue(temp.toFile(), workbook);
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the cache is an optimization; the workbook will be parsed again next time.
+            logger./**/warn("could not write cache file {} {}", cacheFile, LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    private String hash;
+
+    private List<List<List<Object>>> sheets;
+
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @param i index of the sheet
+     * @return the rows of the sheet
+     */
+    public List<List<Object>> getSheet(int i) {
+        return sheets.get(i);
+    }
+
+    public List<List<List<Object>>> getSheets() {
+        return sheets;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public void setSheets(List<List<List<Object>>> sheets) {
+        this.sheets = sheets;
+    }
+
+}
@@ -58,7 +58,7 @@ public class JXLSCatResults extends JXLSWorkbookStreamSource {
             return;
         }
 
-        cellLeft.setCellValue(Translator.translate("Category"));
+        cellLeft.setCellValue(Translator.translate("Category", getLocale()));
 
         Cell cellRight = row.getCell(cellnum + 1);
         if (cellRight == null) {
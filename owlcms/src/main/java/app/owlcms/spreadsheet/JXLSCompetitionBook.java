@@ -8,6 +8,7 @@ package app.owlcms.spreadsheet;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -23,7 +24,6 @@ import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.i18n.Translator;
-import app.owlcms.init.OwlcmsSession;
 import net.sf.jxls.transformer.XLSTransformer;
 
 /**
@@ -123,10 +123,10 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
     @Override
     protected void setReportingInfo() {
         Competition competition = Competition.getCurrent();
-        competition.computeReportingInfo(getAgeGroupPrefix(), getAgeDivision());
+        HashMap<String, Object> beans = competition.computeReportingInfo(getAgeGroupPrefix(), getAgeDivision());
 
         super.setReportingInfo();
-        setReportingBeans(competition.getReportingBeans());
+        setReportingBeans(beans);
     }
 
     private void setTeamSheetPrintArea(Workbook workbook, String sheetName, int nbClubs) {
@@ -148,38 +148,38 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
             Sheet curSheet = workbook.getSheetAt(sheetIndex);
             String sheetName = curSheet.getSheetName();
             workbook.setSheetName(sheetIndex,
-                    Translator.translate("CompetitionBook." + sheetName, OwlcmsSession.getLocale()));
+                    Translator.translate("CompetitionBook." + sheetName, getLocale()));
 
             // use translate so this shows as missing on the sheet.
             String leftHeader = Translator.translate("CompetitionBook." + sheetName + "_LeftHeader",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (leftHeader != null) {
                 curSheet.getHeader().setLeft(leftHeader);
             }
             String centerHeader = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_CenterHeader",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (centerHeader != null) {
                 curSheet.getHeader().setCenter(centerHeader);
             }
             // use translate so this shows as missing on the sheet.
             String rightHeader = Translator.translate("CompetitionBook." + sheetName + "_RightHeader",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (rightHeader != null) {
                 curSheet.getHeader().setRight(rightHeader);
             }
 
             String leftFooter = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_LeftFooter",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (leftFooter != null) {
                 curSheet.getFooter().setLeft(leftFooter);
             }
             String centerFooter = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_CenterFooter",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (centerFooter != null) {
                 curSheet.getFooter().setCenter(centerFooter);
             }
             String rightFooter = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_RightFooter",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (rightFooter != null) {
                 curSheet.getFooter().setRight(rightFooter);
             }
@@ -6,14 +6,29 @@
  *******************************************************************************/
 package app.owlcms.spreadsheet;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.ObjectUtils;
@@ -40,6 +55,7 @@ import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ResourceWalker;
+import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import net.sf.jxls.transformer.XLSTransformer;
@@ -47,10 +63,121 @@ import net.sf.jxls.transformer.XLSTransformer;
 /**
  * Encapsulate a spreadsheet as a StreamSource so that it can be used as a source of data when the user clicks on a
  * link. This class converts the output stream to an input stream that the vaadin framework can consume.
+ *
+ * The spreadsheet is produced without holding the Vaadin session lock, so the screens of the browser requesting the
+ * report keep working. The session lock is only taken briefly to read the locale, and by the notifications shown at
+ * the end. Each download is a {@link ReportJob}, which holds the locale and reporting beans of that download, so the
+ * same source can serve several downloads at once.
+ *
+ * When used as a link, the workbook is produced by the request thread and written directly to the response. When
+ * started with {@link #start(Locale, Consumer)}, it is produced on a small shared pool of threads (reportThreads
+ * parameter, OWLCMS_REPORTTHREADS environment variable) into a temporary file, with progress reported to the caller,
+ * and can be cancelled. In both cases at most reportThreads reports are produced at the same time.
  */
 @SuppressWarnings("serial")
 public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
 
+    /**
+     * Progress of the report being produced.
+     */
+    public enum ReportStage {
+        QUEUED, COLLECTING, TRANSFORMING, WRITING, DONE, FAILED, CANCELLED
+    }
+
+    /**
+     * A report being produced for one download.
+     */
+    public static class ReportJob {
+        private final Locale locale;
+        private final Consumer<ReportJob> listener;
+        private final boolean toBrowser;
+        private HashMap<String, Object> reportingBeans;
+        private volatile ReportStage stage;
+        private volatile boolean cancelled;
+        private volatile Path result;
+        private volatile String error;
+
+        ReportJob(Locale locale, HashMap<String, Object> reportingBeans, Consumer<ReportJob> listener,
+                boolean toBrowser) {
+            this.locale = locale;
+            this.reportingBeans = new HashMap<>(reportingBeans);
+            this.listener = listener;
+            this.toBrowser = toBrowser;
+        }
+
+        /**
+         * Stop the report. A report waiting for a thread does not start; one being produced stops at the next step or
+         * buffer written.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * @return the workbook produced, read once; the temporary file is removed when the stream is closed.
+         * @throws IOException if the report is not {@link ReportStage#DONE}
+         */
+        public InputStream getResult() throws IOException {
+            Path p = result;
+            if (p == null || stage != ReportStage.DONE) {
+                throw new IOException("report not available: " + stage);
+            }
+            return Files.newInputStream(p, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        /**
+         * @return why the report is {@link ReportStage#FAILED}
+         */
+        public String getError() {
+            return error;
+        }
+
+        public ReportStage getStage() {
+            return stage;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void setStage(ReportStage stage) {
+            this.stage = stage;
+            if (listener != null) {
+                listener.accept(this);
+            }
+        }
+    }
+
+    /**
+     * Output stream that stops the report when the job is cancelled.
+     */
+    private static class CancellableOutputStream extends FilterOutputStream {
+        private final ReportJob job;
+
+        CancellableOutputStream(OutputStream out, ReportJob job) {
+            super(out);
+            this.job = job;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkCancelled();
+            out.write(b);
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (job.isCancelled() || Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("report cancelled");
+            }
+        }
+    }
+
     final private static Logger logger = (Logger) LoggerFactory.getLogger(JXLSWorkbookStreamSource.class);
     final private static Logger jexlLogger = (Logger) LoggerFactory.getLogger("org.apache.commons.jexl2.JexlEngine");
     final private static Logger tagLogger = (Logger) LoggerFactory.getLogger("net.sf.jxls.tag.ForEachTag");
@@ -60,6 +187,52 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
         tagLogger.setLevel(Level.ERROR);
     }
 
+    /** reports waiting for a thread, beyond which requests are refused */
+    private static final int MAX_QUEUED = 10;
+
+    /** how long a link waits for one of the reports in progress to finish */
+    private static final int WAIT_SECONDS = 60;
+
+    private static final String TOO_MANY_REPORTS = "Too many reports in progress, please retry.";
+
+    private static ExecutorService executor;
+
+    private static Semaphore reportPermits;
+
+    /**
+     * @return the bounded pool shared by all the reports and the database exports
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int nbThreads = getReportThreads();
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadFactory threadFactory = (r) -> {
+                Thread t = new Thread(r, "reports-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(nbThreads, nbThreads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_QUEUED), threadFactory);
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * @return permits for producing a workbook, shared by the links and the pool
+     */
+    private static synchronized Semaphore getReportPermits() {
+        if (reportPermits == null) {
+            reportPermits = new Semaphore(getReportThreads(), true);
+        }
+        return reportPermits;
+    }
+
+    private static int getReportThreads() {
+        return StartupUtils.getIntegerParam("reportThreads", 2);
+    }
+
     private HashMap<String, Object> reportingBeans;
 
     private boolean excludeNotWeighed;
@@ -67,6 +240,9 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
     private Group group;
     private UI ui;
 
+    /** the download being produced by the current thread */
+    private final transient ThreadLocal<ReportJob> currentJob = new ThreadLocal<>();
+
     public JXLSWorkbookStreamSource(UI ui) {
         this.ui = ui;
         this.setExcludeNotWeighed(true);
@@ -76,54 +252,39 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
     /**
      * Read the xls template and write the processed XLS file out.
      *
+     * Called by the request thread when the link is followed; the workbook is produced by that thread, without the
+     * session lock, and written directly to the response. If the report is abandoned, writing stops at the next buffer.
+     *
      * @see com.vaadin.flow.server.StreamResourceWriter#accept(java.io.OutputStream,
      *      com.vaadin.flow.server.VaadinSession)
      */
-    @SuppressWarnings("unchecked")
     @Override
     public void accept(OutputStream stream, VaadinSession session) throws IOException {
+        Locale locale;
+        session.lock();
         try {
-            session.lock();
-            Locale locale = OwlcmsSession.getLocale();
-            XLSTransformer transformer = new XLSTransformer();
-            configureTransformer(transformer);
-            Workbook workbook = null;
-            try {
-                // logger.debug("wsss setReportingInfo");
-                setReportingInfo();
-                HashMap<String, Object> reportingInfo = getReportingBeans();
-                List<Athlete> athletes = (List<Athlete>) reportingInfo.get("athletes");
-                if (athletes != null && athletes.size() > 0) {
-                    workbook = transformer.transformXLS(getTemplate(locale), reportingInfo);
-                    if (workbook != null) {
-                        postProcess(workbook);
-                    }
-                } else {
-                    String noAthletes = "No Athletes";
-                    logger./**/warn("no athletes: empty report.");
-                    ui.access(() -> {
-                        Notification notif = new Notification();
-                        notif.addThemeVariants(NotificationVariant.LUMO_ERROR);
-                        notif.setPosition(Position.TOP_STRETCH);
-                        notif.setDuration(3000);
-                        notif.setText(noAthletes);
-                        notif.open();
-                    });
-                    workbook = new HSSFWorkbook();
-                    workbook.createSheet().createRow(1).createCell(1).setCellValue(noAthletes);
-                }
-            } catch (Exception e) {
-                LoggerUtils.logError(logger,e);
+            locale = OwlcmsSession.getLocale();
+        } finally {
+            session.unlock();
+        }
+
+        ReportJob job = new ReportJob(locale, reportingBeans, null, true);
+        Semaphore permits = getReportPermits();
+        try {
+            if (!permits.tryAcquire(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                refuse(job);
+                return;
             }
-            if (workbook != null) {
-                workbook.write(stream);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            if (produce(job, stream)) {
+                setStage(job, ReportStage.DONE);
             }
-        } catch (IOException e) {
-            // ignore
-        } catch (Throwable t) {
-            logger.error(LoggerUtils./**/stackTrace(t));
         } finally {
-            session.unlock();
+            permits.release();
         }
     }
 
@@ -131,8 +292,12 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
         return group;
     }
 
+    /**
+     * @return the beans of the download being produced by the current thread, else the beans shared by the downloads
+     */
     public HashMap<String, Object> getReportingBeans() {
-        return reportingBeans;
+        ReportJob job = currentJob.get();
+        return job != null ? job.reportingBeans : reportingBeans;
     }
 
     public List<String> getSuffixes(Locale locale) {
@@ -168,8 +333,35 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
         this.group = group;
     }
 
+    /**
+     * @param jXLSBeans the beans of the download being produced by the current thread, else the beans shared by the
+     *                  downloads
+     */
     public void setReportingBeans(HashMap<String, Object> jXLSBeans) {
-        this.reportingBeans = jXLSBeans;
+        ReportJob job = currentJob.get();
+        if (job != null) {
+            job.reportingBeans = jXLSBeans;
+        } else {
+            this.reportingBeans = jXLSBeans;
+        }
+    }
+
+    /**
+     * Produce the report on the report pool, into a temporary file.
+     *
+     * @param locale   the locale of the browser requesting the report
+     * @param listener called with the job at each stage, from the thread producing it, without the session lock.
+     * @return the job, to follow or cancel the report
+     */
+    public ReportJob start(Locale locale, Consumer<ReportJob> listener) {
+        ReportJob job = new ReportJob(locale, reportingBeans, listener, false);
+        job.setStage(ReportStage.QUEUED);
+        try {
+            getExecutor().execute(() -> produceToFile(job));
+        } catch (RejectedExecutionException e) {
+            refuse(job);
+        }
+        return job;
     }
 
     /**
@@ -239,6 +431,14 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
         throw new IOException("no template found for : " + templateName + extension + " tried with suffix " + tryList);
     }
 
+    /**
+     * @return the locale of the browser requesting the report being produced by the current thread
+     */
+    protected Locale getLocale() {
+        ReportJob job = currentJob.get();
+        return job != null ? job.locale : OwlcmsSession.getLocale();
+    }
+
     protected abstract List<Athlete> getSortedAthletes();
 
     protected void init() {
@@ -249,6 +449,145 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
         // do nothing, to be overridden as needed,
     }
 
+    /**
+     * Compute the reporting beans and write the workbook. The beans and locale are those of the job.
+     *
+     * @param job    the download
+     * @param stream the response or the temporary file
+     * @return true if the workbook was written; the caller marks the job done once the stream is complete.
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean produce(ReportJob job, OutputStream stream) {
+        Workbook workbook = null;
+        currentJob.set(job);
+        try {
+            checkCancelled(job);
+            setStage(job, ReportStage.COLLECTING);
+            setReportingInfo();
+            // the template sees a copy, the beans may be shared with other reports.
+            HashMap<String, Object> reportingInfo = new HashMap<>(getReportingBeans());
+            reportingInfo.put("t", Translator.getMap(getLocale()));
+            List<Athlete> athletes = (List<Athlete>) reportingInfo.get("athletes");
+            if (athletes != null && athletes.size() > 0) {
+                checkCancelled(job);
+                setStage(job, ReportStage.TRANSFORMING);
+                XLSTransformer transformer = new XLSTransformer();
+                configureTransformer(transformer);
+                workbook = transformer.transformXLS(getTemplate(getLocale()), reportingInfo);
+                if (workbook != null) {
+                    postProcess(workbook);
+                }
+            } else {
+                String noAthletes = "No Athletes";
+                logger./**/warn("no athletes: empty report.");
+                notifyError(noAthletes);
+                workbook = new HSSFWorkbook();
+                workbook.createSheet().createRow(1).createCell(1).setCellValue(noAthletes);
+            }
+            if (workbook != null) {
+                checkCancelled(job);
+                setStage(job, ReportStage.WRITING);
+                try {
+                    workbook.write(new CancellableOutputStream(stream, job));
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (IOException e) {
+                    if (!job.toBrowser) {
+                        throw e;
+                    }
+                    // browser went away
+                    setStage(job, ReportStage.CANCELLED);
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedIOException | CancellationException e) {
+            setStage(job, ReportStage.CANCELLED);
+        } catch (Throwable t) {
+            fail(job, t);
+        } finally {
+            currentJob.remove();
+        }
+        return false;
+    }
+
+    private void checkCancelled(ReportJob job) {
+        if (job.isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private void notifyError(String message) {
+        if (ui == null) {
+            return;
+        }
+        ui.access(() -> {
+            Notification notif = new Notification();
+            notif.addThemeVariants(NotificationVariant.LUMO_ERROR);
+            notif.setPosition(Position.TOP_STRETCH);
+            notif.setDuration(3000);
+            notif.setText(message);
+            notif.open();
+        });
+    }
+
+    private void fail(ReportJob job, Throwable t) {
+        job.error = "Report failed: " + LoggerUtils.exceptionMessage(t);
+        setStage(job, ReportStage.FAILED);
+        LoggerUtils.logError(logger, t);
+    }
+
+    private void produceToFile(ReportJob job) {
+        Semaphore permits = getReportPermits();
+        Path file = null;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            job.setStage(ReportStage.CANCELLED);
+            return;
+        }
+        try {
+            file = Files.createTempFile("owlcms-report", ".xls");
+            // in case the browser never fetches it
+            file.toFile().deleteOnExit();
+            boolean written;
+            try (OutputStream out = Files.newOutputStream(file)) {
+                written = produce(job, out);
+            }
+            if (written) {
+                // complete, now owned by the download.
+                job.result = file;
+                file = null;
+                setStage(job, ReportStage.DONE);
+            }
+        } catch (IOException e) {
+            fail(job, e);
+        } finally {
+            permits.release();
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger./**/warn("could not delete {}", file);
+                }
+            }
+        }
+    }
+
+    private void refuse(ReportJob job) {
+        logger./**/warn("too many reports in progress, {} refused", this.getClass().getSimpleName());
+        job.error = TOO_MANY_REPORTS;
+        job.setStage(ReportStage.FAILED);
+        if (job.listener == null) {
+            notifyError(TOO_MANY_REPORTS);
+        }
+    }
+
+    private void setStage(ReportJob job, ReportStage stage) {
+        logger.debug("{} {}", this.getClass().getSimpleName(), stage);
+        job.setStage(stage);
+    }
+
     /**
      * Return athletes as required by the template.
      */
@@ -259,7 +598,7 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
             getReportingBeans().put("lifters", athletes); // legacy
         }
         Competition competition = Competition.getCurrent();
-        getReportingBeans().put("t", Translator.getMap());
+        getReportingBeans().put("t", Translator.getMap(getLocale()));
         getReportingBeans().put("competition", competition);
         getReportingBeans().put("session", getGroup()); // legacy
         getReportingBeans().put("group", getGroup());
@@ -70,6 +70,11 @@ public class PAthlete extends Athlete implements IRankHolder {
     }
 
     // the remaining methods come from athlete
+    @Override
+    public int getActualLiftValue(int liftNo) {
+        return a.getActualLiftValue(liftNo);
+    }
+
     @Override
     public Integer getAge() {
         return a.getAge();
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.spreadsheet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Read the cell values of an Excel 2007 (.xlsx) workbook with a SAX parser.
+ *
+ * Only the shared strings and one sheet at a time are parsed; the POI object model is not built. Rows and cells are
+ * returned as {@link DefinitionWorkbook} expects them.
+ *
+ * @author Jean-François Lamy
+ */
+class XlsxSheetReader extends DefaultHandler {
+
+    /**
+     * @param in the workbook content
+     * @return the sheets, in workbook order
+     * @throws IOException if the content is not a readable workbook
+     */
+    static List<List<List<Object>>> readSheets(InputStream in) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(in)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            List<List<List<Object>>> sheets = new ArrayList<>();
+            Iterator<InputStream> sheetsData = reader.getSheetsData();
+            while (sheetsData.hasNext()) {
+                try (InputStream sheetData = sheetsData.next()) {
+                    XlsxSheetReader handler = new XlsxSheetReader(strings);
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(handler);
+                    parser.parse(new InputSource(sheetData));
+                    sheets.add(handler.rows);
+                }
+            }
+            return sheets;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private final ReadOnlySharedStringsTable strings;
+    private final List<List<Object>> rows = new ArrayList<>();
+    private List<Object> cells;
+
+    /** type attribute of the current cell */
+    private String type;
+    private final StringBuilder text = new StringBuilder();
+    private boolean inValue;
+    private boolean hasValue;
+
+    private XlsxSheetReader(ReadOnlySharedStringsTable strings) {
+        this.strings = strings;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (inValue) {
+            text.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        switch (localName) {
+        case "v":
+        case "t":
+            inValue = false;
+            break;
+        case "c":
+            cells.add(hasValue ? value() : null);
+            break;
+        case "row":
+            rows.add(cells);
+            cells = null;
+            break;
+        default:
+            break;
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        switch (localName) {
+        case "row":
+            cells = new ArrayList<>();
+            break;
+        case "c":
+            type = attributes.getValue("t");
+            text.setLength(0);
+            hasValue = false;
+            break;
+        case "v":
+        case "t":
+            // t elements hold inline strings, including the runs of rich text
+            if (cells != null) {
+                inValue = true;
+                hasValue = true;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private Object value() {
+        String s = text.toString();
+        if (s.isEmpty()) {
+            // some writers emit an empty <v/>; blank, as POI reads it
+            return null;
+        }
+        if (type == null || type.equals("n")) {
+            return Double.parseDouble(s);
+        }
+        switch (type) {
+        case "s":
+            return strings.getItemAt(Integer.parseInt(s)).getString();
+        case "b":
+            return s.equals("1");
+        case "e":
+            return "#ERROR";
+        default:
+            // inline string, formula string result, ISO date
+            return s;
+        }
+    }
+
+}
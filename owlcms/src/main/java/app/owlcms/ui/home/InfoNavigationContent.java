@@ -15,6 +15,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
+import org.hibernate.stat.CacheRegionStatistics;
 import org.slf4j.LoggerFactory;
 
 import com.github.appreciated.app.layout.component.applayout.AbstractLeftAppLayoutBase;
@@ -28,6 +29,7 @@ import com.github.appreciated.layout.FlexibleGridLayout;
 import com.vaadin.flow.component.Component;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.Label;
 import com.vaadin.flow.component.orderedlayout.BoxSizing;
@@ -38,6 +40,7 @@ import com.vaadin.flow.router.Location;
 import com.vaadin.flow.router.Route;
 
 import app.owlcms.components.NavigationPage;
+import app.owlcms.data.jpa.JPAService;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsFactory;
 import app.owlcms.init.OwlcmsSession;
@@ -194,9 +197,31 @@ public class InfoNavigationContent extends BaseNavigationContent implements Navi
 
         doGroup(getTranslation("reloadTranslationInfo"), grid1, license);
 
+        license.add(new H3(getTranslation("CacheStatistics")));
+        Grid<CacheRegionStatistics> cacheGrid = buildCacheStatistics();
+        Button refreshCache = new Button(getTranslation("CacheStatistics.Refresh"),
+                buttonClickEvent -> cacheGrid.setItems(JPAService.getCacheStatistics()));
+        doGroup(getTranslation("CacheStatisticsInfo"), HomeNavigationContent.navigationGrid(refreshCache), license);
+        license.add(cacheGrid);
+
         return license;
     }
 
+    private Grid<CacheRegionStatistics> buildCacheStatistics() {
+        Grid<CacheRegionStatistics> grid = new Grid<>();
+        grid.addColumn(s -> {
+            String regionName = s.getRegionName();
+            return regionName.substring(regionName.lastIndexOf('.') + 1);
+        }).setHeader(getTranslation("CacheStatistics.Region")).setAutoWidth(true);
+        grid.addColumn(CacheRegionStatistics::getHitCount).setHeader(getTranslation("CacheStatistics.Hits"));
+        grid.addColumn(CacheRegionStatistics::getMissCount).setHeader(getTranslation("CacheStatistics.Misses"));
+        grid.addColumn(CacheRegionStatistics::getPutCount).setHeader(getTranslation("CacheStatistics.Puts"));
+        grid.setItems(JPAService.getCacheStatistics());
+        grid.setHeightByRows(true);
+        grid.setWidth("80%");
+        return grid;
+    }
+
     private String translators() {
         Map<String, List<Locale>> translatorToLocales = new HashMap<>();
         for (Locale l : Translator.getAllAvailableLocales()) {
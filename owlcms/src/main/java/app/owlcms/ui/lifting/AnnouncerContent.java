@@ -206,8 +206,10 @@ public class AnnouncerContent extends AthleteGridContent implements HasDynamicTi
 
         introCountdownButton = new Button(getTranslation("introCountdown"), AvIcons.AV_TIMER.create(), (e) -> {
             OwlcmsSession.withFop(fop -> {
-                fop.setBreakType(BreakType.BEFORE_INTRODUCTION);
-                fop.setCountdownType(CountdownType.TARGET);
+                fop.getFopEventLoop().execute(() -> {
+                    fop.setBreakType(BreakType.BEFORE_INTRODUCTION);
+                    fop.setCountdownType(CountdownType.TARGET);
+                });
             });
             BreakDialog dialog = new BreakDialog(this, BreakType.BEFORE_INTRODUCTION, CountdownType.TARGET);
             dialog.open();
@@ -23,6 +23,7 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.router.Route;
 
 import app.owlcms.data.config.Config;
+import app.owlcms.data.config.ConfigRepository;
 import app.owlcms.ui.crudui.OwlcmsCrudFormFactory;
 import app.owlcms.ui.shared.OwlcmsContent;
 import app.owlcms.ui.shared.OwlcmsRouterLayout;
@@ -56,7 +57,9 @@ public class ConfigContent extends Composite<VerticalLayout>
             LoggerUtils.logError(logger,e);
         }
         factory = createFormFactory();
-        Component form = factory.buildNewForm(CrudOperation.UPDATE, Config.getCurrent(), false, null, event -> {
+        // edit a copy, the shared current configuration is replaced when saved
+        Config config = ConfigRepository.findAll().get(0);
+        Component form = factory.buildNewForm(CrudOperation.UPDATE, config, false, null, event -> {
         });
         fillH(form, getContent());
     }
@@ -6,33 +6,26 @@
  *******************************************************************************/
 package app.owlcms.ui.preparation;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.exc.StreamReadException;
-import com.fasterxml.jackson.databind.DatabindException;
 import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.html.H3;
 import com.vaadin.flow.component.html.H5;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.upload.Upload;
-import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
+import com.vaadin.flow.component.upload.receivers.FileBuffer;
 
-import app.owlcms.data.agegroup.AgeGroup;
-import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.competition.Competition;
 import app.owlcms.data.competition.CompetitionRepository;
-import app.owlcms.data.config.Config;
-import app.owlcms.data.group.Group;
-import app.owlcms.data.jpa.JPAService;
-import app.owlcms.data.platform.Platform;
 import app.owlcms.data.xml.CompetitionData;
 import app.owlcms.i18n.Translator;
+import app.owlcms.spreadsheet.JXLSWorkbookStreamSource;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
 
@@ -48,10 +41,12 @@ public class JsonUploadDialog extends Dialog {
         H5 label = new H5(Translator.translate("ExportDatabase.WarningWillReplaceAll"));
         label.getStyle().set("color", "red");
 
-        MemoryBuffer buffer = new MemoryBuffer();
+        FileBuffer buffer = new FileBuffer();
         Upload upload = new Upload(buffer);
         upload.setWidth("40em");
 
+        Span progress = new Span();
+
         TextArea ta = new TextArea(getTranslation("Errors"));
         ta.setHeight("20ex");
         ta.setWidth("80em");
@@ -59,65 +54,53 @@ public class JsonUploadDialog extends Dialog {
 
         upload.addSucceededListener(event -> {
             try {
-                processInput(event.getFileName(), buffer.getInputStream(), ta);
-            } catch (IOException e) {
-                ta.setValue(LoggerUtils./**/stackTrace(e));
+                processInput(event.getFileName(), buffer.getInputStream(), progress, ta);
+            } catch (RejectedExecutionException e) {
+                ta.setValue(LoggerUtils.exceptionMessage(e));
+                ta.setVisible(true);
             }
         });
 
         upload.addStartedListener(event -> {
             ta.clear();
             ta.setVisible(false);
+            progress.setText("");
         });
 
         H3 title = new H3(getTranslation("ExportDatabase.UploadJson"));
-        VerticalLayout vl = new VerticalLayout(title, label, upload, ta);
+        VerticalLayout vl = new VerticalLayout(title, label, upload, progress, ta);
         add(vl);
     }
 
-    private void processInput(String fileName, InputStream inputStream, TextArea ta)
-            throws StreamReadException, DatabindException, IOException {
-        CompetitionRepository.removeAll();
-
-        CompetitionData current = new CompetitionData();
-
-        CompetitionData updated;
-        try {
-            updated = current.importData(inputStream);
-
-            JPAService.runInTransaction(em -> {
-                try {
-                    Config config = updated.getConfig();
-                    Config.setCurrent(config);
-                    Locale defaultLocale = config.getDefaultLocale();
-                    Translator.reset();
-                    Translator.setForcedLocale(defaultLocale);
-
-                    Competition competition = updated.getCompetition();
-                    Competition.setCurrent(competition);
-
-                    for (Platform p : updated.getPlatforms()) {
-                        em.persist(p);
-                    }
-                    for (AgeGroup ag : updated.getAgeGroups()) {
-                        em.persist(ag);
-                    }
-                    for (Group g : updated.getGroups()) {
-                        em.persist(g);
-                    }
-                    for (Athlete a : updated.getAthletes()) {
-                        em.persist(a);
-                    }
-
-                    ui.getPage().reload();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                return null;
-            });
-        } catch (Throwable e1) {
-            ta.setValue(LoggerUtils.exceptionMessage(e1));
-        }
+    /**
+     * Replace the database with the uploaded export.
+     *
+     * The import runs on the report pool so the UI remains responsive; the number of athletes read so far is shown
+     * while it runs, and the page is reloaded at the end.
+     */
+    private void processInput(String fileName, InputStream inputStream, Span progress, TextArea ta) {
+        JXLSWorkbookStreamSource.getExecutor().submit(() -> {
+            try (InputStream in = inputStream) {
+                CompetitionRepository.removeAll();
+
+                CompetitionData current = new CompetitionData();
+                current.setProgressListener((done, total) -> ui.access(
+                        () -> progress.setText(Translator.translate("ExportDatabase.Imported", done))));
+                CompetitionData updated = current.importData(in);
+
+                Locale defaultLocale = updated.getConfig().getDefaultLocale();
+                Translator.reset();
+                Translator.setForcedLocale(defaultLocale);
+
+                ui.access(() -> ui.getPage().reload());
+            } catch (Throwable e1) {
+                logger.error("{} could not be imported\n{}", fileName, LoggerUtils./**/stackTrace(e1));
+                ui.access(() -> {
+                    ta.setValue(LoggerUtils.exceptionMessage(e1));
+                    ta.setVisible(true);
+                });
+            }
+        });
     }
 
 //    private void resetAthletes() {
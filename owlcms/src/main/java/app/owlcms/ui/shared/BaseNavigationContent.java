@@ -258,12 +258,12 @@ public abstract class BaseNavigationContent extends VerticalLayout
         Group group = group2;
         Group currentGroup = fop.getGroup();
         if (group == null) {
-            fop.startLifting(null, this.getOrigin());
+            fop.getFopEventLoop().executeAndWait(() -> fop.startLifting(null, this.getOrigin()));
             if (groupSelect != null) {
                 groupSelect.setValue(null);
             }
         } else if (!group.equals(currentGroup)) {
-            fop.startLifting(group, this.getOrigin());
+            fop.getFopEventLoop().executeAndWait(() -> fop.startLifting(group, this.getOrigin()));
             if (groupSelect != null) {
                 groupSelect.setValue(group);
             }
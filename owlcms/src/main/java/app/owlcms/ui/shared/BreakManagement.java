@@ -486,17 +486,21 @@ public class BreakManagement extends VerticalLayout implements SafeEventBusRegis
         athleteButton = new Button(
                 getTranslation(DisplayType.class.getSimpleName() + "." + DisplayType.LIFT_INFO.name()), (e) -> {
                     OwlcmsSession.withFop(fop -> {
-                        fop.recomputeLiftingOrder();
-                        fop.uiDisplayCurrentAthleteAndTime(false, new FOPEvent(null, this), true);
+                        fop.getFopEventLoop().execute(() -> {
+                            fop.recomputeLiftingOrder();
+                            fop.uiDisplayCurrentAthleteAndTime(false, new FOPEvent(null, this), true);
+                        });
                     });
                 });
         countdownButton = new Button(
                 getTranslation(DisplayType.class.getSimpleName() + "." + DisplayType.COUNTDOWN_INFO.name()), (e) -> {
                     OwlcmsSession.withFop(fop -> {
-                        fop.recomputeLiftingOrder();
-                        OwlcmsSession.getFop().getUiEventBus()
-                                .post(new UIEvent.BreakStarted(0, this.getOrigin(), true, bt.getValue(),
-                                        ct.getValue()));
+                        UIEvent.BreakStarted breakStarted = new UIEvent.BreakStarted(0, this.getOrigin(), true,
+                                bt.getValue(), ct.getValue());
+                        fop.getFopEventLoop().execute(() -> {
+                            fop.recomputeLiftingOrder();
+                            fop.getUiEventBus().post(breakStarted);
+                        });
                     });
                 });
         athleteButton.getThemeNames().add("secondary contrast");
@@ -7,22 +7,36 @@
 package app.owlcms.ui.shared;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 import org.slf4j.LoggerFactory;
 
+import com.vaadin.flow.component.UI;
 import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.html.Anchor;
 import com.vaadin.flow.component.html.Div;
+import com.vaadin.flow.component.html.Label;
+import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.icon.VaadinIcon;
+import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.component.notification.Notification.Position;
+import com.vaadin.flow.component.notification.NotificationVariant;
+import com.vaadin.flow.component.orderedlayout.FlexComponent.Alignment;
+import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.server.StreamResource;
 
 import app.owlcms.components.elements.LazyDownloadButton;
 import app.owlcms.data.xml.CompetitionData;
+import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.spreadsheet.JXLSWorkbookStreamSource;
+import app.owlcms.spreadsheet.JXLSWorkbookStreamSource.ReportJob;
+import app.owlcms.spreadsheet.JXLSWorkbookStreamSource.ReportStage;
 import ch.qos.logback.classic.Logger;
 
 /**
@@ -35,24 +49,47 @@ public class DownloadButtonFactory {
     /**
      * Creates a new DownloadButton object for a dynamically created file.
      *
+     * The workbook is produced on the report pool; a notification shows its progress and allows cancelling it, and the
+     * file is downloaded when it is ready.
+     *
      * @param prefix    the prefix
      * @param label     the label
      * @param xlsSource the xls source
      * @return the div
      */
     public static Div createDynamicXLSDownloadButton(String prefix, String label, JXLSWorkbookStreamSource xlsSource) {
-        final LazyDownloadButton downloadButton = new LazyDownloadButton(
-                label,
-                new Icon(VaadinIcon.DOWNLOAD_ALT),
-                () -> {
-                    LocalDateTime now = LocalDateTime.now().withNano(0);
-                    return prefix
-                            + "_" + now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH'h'mm';'ss"))
-                            + ".xls";
-                },
-                xlsSource);
+        Button downloadButton = new Button(label, new Icon(VaadinIcon.DOWNLOAD_ALT));
+        Anchor anchor = new Anchor();
+        anchor.getElement().setAttribute("download", true);
+        anchor.getElement().getStyle().set("display", "none");
+        Div div = new Div(downloadButton, anchor);
 
-        return new Div(downloadButton);
+        downloadButton.addClickListener(event -> {
+            UI ui = UI.getCurrent();
+            LocalDateTime now = LocalDateTime.now().withNano(0);
+            String fileName = prefix
+                    + "_" + now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH'h'mm';'ss"))
+                    + ".xls";
+
+            Label stage = new Label();
+            Button cancelButton = new Button(Translator.translate("Cancel"));
+            HorizontalLayout content = new HorizontalLayout(stage, cancelButton);
+            content.setAlignItems(Alignment.BASELINE);
+            Notification notification = new Notification(content);
+            notification.setDuration(0);
+            notification.setPosition(Position.BOTTOM_END);
+            downloadButton.setEnabled(false);
+            notification.open();
+
+            ReportJob job = xlsSource.start(OwlcmsSession.getLocale(),
+                    j -> ui.access(() -> showStage(j, fileName, stage, notification, downloadButton, anchor)));
+            cancelButton.addClickListener(e -> {
+                job.cancel();
+                notification.close();
+                downloadButton.setEnabled(true);
+            });
+        });
+        return div;
     }
 
     public static Div createDynamicZipDownloadButton(String prefix, String label, byte[] content) {
@@ -72,7 +109,17 @@ public class DownloadButtonFactory {
         return new Div(downloadButton);
     }
 
+    /**
+     * Creates a new Download Button object for a database export. The number of athletes exported so far is shown
+     * next to the button while the export runs.
+     *
+     * @param prefix the prefix
+     * @param label  the label
+     * @return the div
+     */
     public static Div createDynamicJsonDownloadButton(String prefix, String label) {
+        UI ui = UI.getCurrent();
+        Span progress = new Span();
         final LazyDownloadButton downloadButton = new LazyDownloadButton(
                 label,
                 new Icon(VaadinIcon.DOWNLOAD_ALT),
@@ -83,10 +130,13 @@ public class DownloadButtonFactory {
                             + ".json";
                 },
                 () -> {
-                    return new CompetitionData().exportData();
+                    CompetitionData data = new CompetitionData();
+                    data.setProgressListener((done, total) -> ui.access(
+                            () -> progress.setText(Translator.translate("ExportDatabase.Exported", done, total))));
+                    return data.exportData();
                 });
 
-        return new Div(downloadButton);
+        return new Div(downloadButton, progress);
     }
 
     /**
@@ -105,6 +155,51 @@ public class DownloadButtonFactory {
         return buildButton(prefix, label, href);
     }
 
+    private static void showStage(ReportJob job, String fileName, Label stage, Notification notification,
+            Button downloadButton, Anchor anchor) {
+        ReportStage reportStage = job.getStage();
+        switch (reportStage) {
+        case DONE:
+            if (job.isCancelled()) {
+                // finished before the cancel was seen; drop the file.
+                try (InputStream unread = job.getResult()) {
+                } catch (IOException e) {
+                    logger.debug("{}", e.getMessage());
+                }
+                break;
+            }
+            StreamResource href = new StreamResource(fileName, () -> {
+                try {
+                    return job.getResult();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            href.setCacheTime(0);
+            anchor.setHref(href);
+            anchor.getElement().callJsFunction("click");
+            notification.close();
+            downloadButton.setEnabled(true);
+            break;
+        case FAILED:
+            notification.close();
+            Notification notif = new Notification();
+            notif.addThemeVariants(NotificationVariant.LUMO_ERROR);
+            notif.setPosition(Position.TOP_STRETCH);
+            notif.setDuration(3000);
+            notif.setText(job.getError());
+            notif.open();
+            downloadButton.setEnabled(true);
+            break;
+        case CANCELLED:
+            notification.close();
+            downloadButton.setEnabled(true);
+            break;
+        default:
+            stage.setText(Translator.translate("ReportStage." + reportStage));
+        }
+    }
+
     private static Div buildButton(String prefix, String label, StreamResource href) {
         Anchor finalResults = new Anchor(href, "");
         Button finalResultsButton = new Button(label, new Icon(VaadinIcon.DOWNLOAD_ALT));
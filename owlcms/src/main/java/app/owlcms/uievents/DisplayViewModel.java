@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.uievents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.LiftDefinition.Changes;
+import app.owlcms.data.athlete.LiftInfo;
+import app.owlcms.data.athlete.XAthlete;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.Participation;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.i18n.Translator;
+import app.owlcms.init.OwlcmsSession;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+/**
+ * What the scoreboards and other displays of a field of play show, computed once for each state of the field of play.
+ *
+ * The field of play creates a new view model when its lifting order, display order or leaders change; all the displays
+ * attached to it then bind the same rows instead of each formatting the athletes. The JSON values are shared between
+ * the displays and must not be modified.
+ *
+ * The rows that depend on the language of the display (lifting order) are computed once per locale.
+ *
+ * @author Jean-François Lamy
+ */
+public class DisplayViewModel {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(DisplayViewModel.class);
+
+    /**
+     * same as {@link app.owlcms.ui.shared.AthleteGridContent#formatAttemptNumber(Athlete)}, without depending on the
+     * user interface classes.
+     */
+    private static String formatAttemptNumber(Athlete a) {
+        Integer attemptsDone = a.getAttemptsDone();
+        Integer attemptNumber = a.getAttemptNumber();
+        return (attemptsDone >= 3)
+                ? ((attemptsDone >= 6) ? Translator.translate("Done")
+                        : Translator.translate("C_and_J_number", attemptNumber))
+                : Translator.translate("Snatch_number", attemptNumber);
+    }
+
+    private static String formatInt(Integer total) {
+        if (total == null || total == 0) {
+            return "-";
+        } else if (total == -1) {
+            return "inv.";// invited lifter, not eligible.
+        } else if (total < 0) {
+            return "(" + Math.abs(total) + ")";
+        } else {
+            return total.toString();
+        }
+    }
+
+    private static String formatKg(String total) {
+        return (total == null || total.trim().isEmpty()) ? "-"
+                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
+    }
+
+    private static String formatRank(Integer total) {
+        if (total == null || total == 0) {
+            return "";
+        } else if (total == -1) {
+            return "inv.";// invited lifter, not eligible.
+        } else {
+            return total.toString();
+        }
+    }
+
+    private static boolean isWideTeam(Athlete a) {
+        String team = a.getTeam();
+        return team != null && team.trim().length() > Competition.SHORT_TEAM_LENGTH;
+    }
+
+    private final long version;
+    private final List<Athlete> displayOrder;
+    private final List<Athlete> liftingOrder;
+    private final List<Athlete> leaders;
+    private final List<String> ageGroupCodes;
+    private final int liftsDone;
+
+    private final JsonValue athletesJson;
+    private final boolean wideTeamNames;
+    private final JsonValue leadersJson;
+    private final boolean leadersWideTeamNames;
+    private final JsonValue currentAthleteJson;
+    private final boolean currentAthleteWideTeamName;
+
+    /** rows computed on first use, by kind and locale */
+    private final Map<String, JsonValue> lazyRows = new ConcurrentHashMap<>();
+
+    /**
+     * @param fop     the field of play, whose current orders are read
+     * @param version the version of the field of play state
+     */
+    public DisplayViewModel(FieldOfPlay fop, long version) {
+        long start = System.nanoTime();
+        this.version = version;
+        this.displayOrder = copy(fop.getDisplayOrder());
+        this.liftingOrder = copy(fop.getLiftingOrder());
+        this.leaders = copy(fop.getLeaders());
+        LinkedHashMap<String, Participation> ageGroupMap = fop.getAgeGroupMap();
+        this.ageGroupCodes = ageGroupMap != null ? new ArrayList<>(ageGroupMap.keySet()) : Collections.emptyList();
+        this.liftsDone = AthleteSorter.countLiftsDone(displayOrder);
+
+        this.athletesJson = getAthletesJson(displayOrder, liftingOrder);
+        this.wideTeamNames = displayOrder.stream().anyMatch(a -> isWideTeam(a));
+        this.leadersJson = leaders.isEmpty() ? null : getAthletesJson(leaders, null);
+        this.leadersWideTeamNames = leaders.stream().anyMatch(a -> isWideTeam(a));
+        this.currentAthleteJson = getCurrentAthleteJson(liftingOrder);
+        this.currentAthleteWideTeamName = liftingOrder.size() > 0 && isWideTeam(liftingOrder.get(0));
+        logger.trace("{}display view model {} computed in {} µs", fop.getLoggingName(), version,
+                (System.nanoTime() - start) / 1000);
+    }
+
+    /**
+     * @return the athletes of the group in display order, with category separators; the current and next athletes
+     *         are highlighted
+     */
+    public JsonValue getAthletesJson() {
+        return athletesJson;
+    }
+
+    /**
+     * @return the current athlete, alone, not highlighted
+     */
+    public JsonValue getCurrentAthleteJson() {
+        return currentAthleteJson;
+    }
+
+    public List<Athlete> getDisplayOrder() {
+        return displayOrder;
+    }
+
+    /**
+     * @return the leaders of the current category, null if there are none
+     */
+    public JsonValue getLeadersJson() {
+        return leadersJson;
+    }
+
+    public List<Athlete> getLeaders() {
+        return leaders;
+    }
+
+    /**
+     * @return the athletes in lifting order, with their next attempt, in the language of the current session
+     */
+    public JsonValue getLiftingOrderJson() {
+        Locale locale = OwlcmsSession.getLocale();
+        return lazyRows.computeIfAbsent("liftingOrder." + locale, (k) -> computeLiftingOrderJson());
+    }
+
+    public List<Athlete> getLiftingOrder() {
+        return liftingOrder;
+    }
+
+    public int getLiftsDone() {
+        return liftsDone;
+    }
+
+    /**
+     * @return the athletes of the group in display order, with their ranks in each age group of the group
+     */
+    public JsonValue getMultiRanksJson() {
+        return lazyRows.computeIfAbsent("multiRanks", (k) -> computeMultiRanksJson(displayOrder, liftingOrder));
+    }
+
+    /**
+     * @return the leaders of the current category, with their ranks in each age group of the group, null if there are
+     *         none
+     */
+    public JsonValue getMultiRanksLeadersJson() {
+        if (leaders.isEmpty()) {
+            return null;
+        }
+        return lazyRows.computeIfAbsent("multiRanksLeaders", (k) -> computeMultiRanksJson(leaders, null));
+    }
+
+    /**
+     * @return the version of the field of play state shown
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isCurrentAthleteWideTeamName() {
+        return currentAthleteWideTeamName;
+    }
+
+    public boolean isLeadersWideTeamNames() {
+        return leadersWideTeamNames;
+    }
+
+    public boolean isWideTeamNames() {
+        return wideTeamNames;
+    }
+
+    private JsonValue computeLiftingOrderJson() {
+        JsonArray jath = Json.createArray();
+        int athx = 0;
+        boolean masters = Competition.getCurrent().isMasters();
+        for (Athlete a : liftingOrder) {
+            JsonObject ja = Json.createObject();
+            Category curCat = a.getCategory();
+            String category;
+            if (masters) {
+                category = a.getBWCategory();
+            } else {
+                category = curCat != null ? curCat.getName() : "";
+            }
+            ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
+            ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
+            ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
+            Integer startNumber = a.getStartNumber();
+            ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
+            String mastersAgeGroup = a.getMastersAgeGroup();
+            ja.put("mastersAgeGroup", mastersAgeGroup != null ? mastersAgeGroup : "");
+            ja.put("category", category != null ? category : "");
+            ja.put("nextAttemptNo", formatAttemptNumber(a));
+            Integer nextAttemptRequestedWeight = a.getNextAttemptRequestedWeight();
+            ja.put("requestedWeight", nextAttemptRequestedWeight == 0 ? "-" : nextAttemptRequestedWeight.toString());
+            Integer liftOrderRank = a.getLiftOrderRank();
+            boolean notDone = a.getAttemptsDone() < 6;
+            String blink = (notDone ? " blink" : "");
+            if (notDone) {
+                ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
+            }
+            jath.set(athx, ja);
+            athx++;
+        }
+        return jath;
+    }
+
+    private JsonValue computeMultiRanksJson(List<Athlete> athletes, List<Athlete> liftOrder) {
+        JsonArray jath = Json.createArray();
+        int athx = 0;
+        Category prevCat = null;
+        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
+        long nextId = (liftOrder != null && liftOrder.size() > 1) ? liftOrder.get(1).getId() : -1L;
+        for (Athlete a : athletes) {
+            JsonObject ja = Json.createObject();
+            Category curCat = a.getCategory();
+            if (curCat != null && !curCat.sameAs(prevCat)) {
+                // changing categories, put marker before athlete
+                ja.put("isSpacer", true);
+                jath.set(athx, ja);
+                ja = Json.createObject();
+                prevCat = curCat;
+                athx++;
+            }
+            // compute the blinking rank (1 = current, 2 = next)
+            getAthleteJson(a, ja, curCat, (a.getId() == currentId)
+                    ? 1
+                    : ((a.getId() == nextId)
+                            ? 2
+                            : 0),
+                    getAgeGroupParticipations(a));
+            jath.set(athx, ja);
+            athx++;
+        }
+        return jath;
+    }
+
+    private List<Athlete> copy(List<Athlete> athletes) {
+        return athletes != null ? Collections.unmodifiableList(new ArrayList<>(athletes)) : Collections.emptyList();
+    }
+
+    /**
+     * @return the participations of the athlete, by code of the age groups in the current group, then of the other
+     *         age groups of the athlete
+     */
+    private Map<String, Participation> getAgeGroupParticipations(Athlete a) {
+        Map<String, Participation> athleteRankings = new LinkedHashMap<>();
+        for (String code : ageGroupCodes) {
+            athleteRankings.put(code, null);
+        }
+        for (Participation p : a.getParticipations()) {
+            AgeGroup ag = p.getCategory() != null ? p.getCategory().getAgeGroup() : null;
+            if (ag != null) {
+                athleteRankings.put(ag.getCode(), p);
+            }
+        }
+        return athleteRankings;
+    }
+
+    /**
+     * @param ageGroupParticipations null for the ranks in the main category, else the participations whose ranks are
+     *                               listed
+     */
+    private void getAthleteJson(Athlete a, JsonObject ja, Category curCat, int liftOrderRank,
+            Map<String, Participation> ageGroupParticipations) {
+        String category;
+        category = curCat != null ? curCat.getName() : "";
+        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
+        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
+        ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
+        Integer startNumber = a.getStartNumber();
+        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
+        ja.put("category", category != null ? category : "");
+        JsonArray sattempts = Json.createArray();
+        JsonArray cattempts = Json.createArray();
+        getAttemptsJson(a, liftOrderRank, sattempts, cattempts);
+        ja.put("sattempts", sattempts);
+        ja.put("cattempts", cattempts);
+        ja.put("total", formatInt(a.getTotal()));
+        if (ageGroupParticipations == null) {
+            ja.put("snatchRank", formatInt(a.getMainRankings().getSnatchRank()));
+            ja.put("cleanJerkRank", formatInt(a.getMainRankings().getCleanJerkRank()));
+            ja.put("totalRank", formatInt(a.getMainRankings().getTotalRank()));
+        } else {
+            ja.put("snatchRanks", getRanksJson(ageGroupParticipations, Ranking.SNATCH));
+            ja.put("cleanJerkRanks", getRanksJson(ageGroupParticipations, Ranking.CLEANJERK));
+            ja.put("totalRanks", getRanksJson(ageGroupParticipations, Ranking.TOTAL));
+        }
+        ja.put("group", a.getGroup() != null ? a.getGroup().getName() : "");
+        boolean notDone = a.getAttemptsDone() < 6;
+        String blink = (notDone ? " blink" : "");
+        if (notDone) {
+            ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
+        }
+    }
+
+    /**
+     * @param athletes    athletes in display order
+     * @param liftOrder   the lifting order, null if the current and next athletes are not to be highlighted
+     * @return the rows, with a spacer before each category
+     */
+    private JsonValue getAthletesJson(List<Athlete> athletes, List<Athlete> liftOrder) {
+        JsonArray jath = Json.createArray();
+        int athx = 0;
+        Category prevCat = null;
+        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
+        long nextId = (liftOrder != null && liftOrder.size() > 1) ? liftOrder.get(1).getId() : -1L;
+        for (Athlete a : athletes) {
+            JsonObject ja = Json.createObject();
+            Category curCat = a.getCategory();
+            if (curCat != null && !curCat.sameAs(prevCat)) {
+                // changing categories, put marker before athlete
+                ja.put("isSpacer", true);
+                jath.set(athx, ja);
+                ja = Json.createObject();
+                prevCat = curCat;
+                athx++;
+            }
+            // compute the blinking rank (1 = current, 2 = next)
+            getAthleteJson(a, ja, curCat, (a.getId() == currentId)
+                    ? 1
+                    : ((a.getId() == nextId)
+                            ? 2
+                            : 0),
+                    null);
+            jath.set(athx, ja);
+            athx++;
+        }
+        return jath;
+    }
+
+    /**
+     * Compute Json string ready to be used by web component template
+     *
+     * CSS classes are pre-computed and passed along with the values; weights are formatted.
+     */
+    private void getAttemptsJson(Athlete a, int liftOrderRank, JsonArray sattempts, JsonArray cattempts) {
+        XAthlete x = new XAthlete(a);
+        Integer curLift = x.getAttemptsDone();
+        int ix = 0;
+        for (LiftInfo i : x.getRequestInfoArray()) {
+            JsonObject jri = Json.createObject();
+            String stringValue = i.getStringValue();
+            boolean notDone = x.getAttemptsDone() < 6;
+            String blink = (notDone ? " blink" : "");
+
+            jri.put("goodBadClassName", "narrow empty");
+            jri.put("stringValue", "");
+            if (i.getChangeNo() >= 0) {
+                String trim = stringValue != null ? stringValue.trim() : "";
+                switch (Changes.values()[i.getChangeNo()]) {
+                case ACTUAL:
+                    if (!trim.isEmpty()) {
+                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
+                            jri.put("goodBadClassName", "narrow fail");
+                            jri.put("stringValue", "-");
+                        } else {
+                            boolean failed = stringValue.startsWith("-");
+                            jri.put("goodBadClassName", failed ? "narrow fail" : "narrow good");
+                            jri.put("stringValue", formatKg(stringValue));
+                        }
+                    }
+                    break;
+                default:
+                    if (stringValue != null && !trim.isEmpty()) {
+                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
+                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
+                        jri.put("goodBadClassName", "narrow request");
+                        if (notDone) {
+                            jri.put("className", highlight);
+                        }
+                        jri.put("stringValue", stringValue);
+                    }
+                    break;
+                }
+            }
+
+            if (ix < 3) {
+                sattempts.set(ix, jri);
+            } else {
+                cattempts.set(ix % 3, jri);
+            }
+            ix++;
+        }
+    }
+
+    private JsonValue getCurrentAthleteJson(List<Athlete> liftOrder) {
+        JsonArray jath = Json.createArray();
+        if (liftOrder.size() > 0) {
+            Athlete a = liftOrder.get(0);
+            JsonObject ja = Json.createObject();
+            // 0 = no blinking
+            getAthleteJson(a, ja, a.getCategory(), 0, null);
+            jath.set(0, ja);
+        }
+        return jath;
+    }
+
+    private JsonValue getRanksJson(Map<String, Participation> ageGroupParticipations, Ranking r) {
+        JsonArray ranks = Json.createArray();
+        int i = 0;
+        for (Participation p : ageGroupParticipations.values()) {
+            if (p == null) {
+                ranks.set(i, "");
+            } else {
+                switch (r) {
+                case CLEANJERK:
+                    ranks.set(i, formatRank(p.getCleanJerkRank()));
+                    break;
+                case SNATCH:
+                    ranks.set(i, formatRank(p.getSnatchRank()));
+                    break;
+                case TOTAL:
+                    ranks.set(i, formatRank(p.getTotalRank()));
+                    break;
+                default:
+                    break;
+                }
+            }
+            i++;
+        }
+        return ranks;
+    }
+
+}
@@ -6,36 +6,18 @@
  *******************************************************************************/
 package app.owlcms.uievents;
 
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.http.NameValuePair;
-import org.apache.http.StatusLine;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athlete.LiftDefinition.Changes;
-import app.owlcms.data.athlete.LiftInfo;
-import app.owlcms.data.athlete.XAthlete;
-import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.config.Config;
@@ -43,8 +25,10 @@ import app.owlcms.data.group.Group;
 import app.owlcms.fieldofplay.FOPState;
 import app.owlcms.fieldofplay.FieldOfPlay;
 import app.owlcms.fieldofplay.IBreakTimer;
+import app.owlcms.i18n.TranslationJson;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsSession;
+import app.owlcms.uievents.PublicResultsSender.PostType;
 import app.owlcms.uievents.UIEvent.BreakDone;
 import app.owlcms.uievents.UIEvent.BreakPaused;
 import app.owlcms.uievents.UIEvent.BreakSetTime;
@@ -55,8 +39,6 @@ import app.owlcms.uievents.UIEvent.StartTime;
 import app.owlcms.uievents.UIEvent.StopTime;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
-import elemental.json.Json;
-import elemental.json.JsonArray;
 import elemental.json.JsonObject;
 import elemental.json.JsonValue;
 
@@ -83,8 +65,6 @@ public class EventForwarder implements BreakDisplay {
     private boolean wideTeamNames;
     private JsonValue leaders;
     private JsonValue groupAthletes;
-    private JsonArray sattempts;
-    private JsonArray cattempts;
     private String liftsDone;
     private String attempt;
     private String fullName;
@@ -93,7 +73,7 @@ public class EventForwarder implements BreakDisplay {
     private String teamName;
     private Integer weight;
 
-    private JsonObject translationMap;
+    private TranslationJson translationMap;
     private Integer timeAllowed;
     private int previousHashCode = 0;
     private long previousMillis = 0L;
@@ -112,8 +92,11 @@ public class EventForwarder implements BreakDisplay {
     private String groupName;
     private long translatorResetTimeStamp;
 
+    private PublicResultsSender sender;
+
     public EventForwarder(FieldOfPlay emittingFop) {
         this.fop = emittingFop;
+        this.sender = new PublicResultsSender(fop.getName());
 
         fopEventBus = fop.getFopEventBus();
         fopEventBus.register(this);
@@ -134,6 +117,17 @@ public class EventForwarder implements BreakDisplay {
         pushUpdate();
     }
 
+    /**
+     * Recompute the scoreboard tables and build the update, as done when the lifting order changes, without sending
+     * it. Public for benchmarking purposes.
+     *
+     * @return the update parameters
+     */
+    public Map<String, String> computeUpdate() {
+        computeCurrentGroup();
+        return createUpdate();
+    }
+
     @Override
     public void doBreak() {
         OwlcmsSession.withFop(fop -> {
@@ -179,7 +173,7 @@ public class EventForwarder implements BreakDisplay {
     }
 
     public JsonObject getTranslationMap() {
-        return translationMap;
+        return translationMap.getJson();
     }
 
     /**
@@ -384,14 +378,8 @@ public class EventForwarder implements BreakDisplay {
     }
 
     protected void setTranslationMap() {
-        JsonObject translations = Json.createObject();
-        Enumeration<String> keys = Translator.getKeys();
-        while (keys.hasMoreElements()) {
-            String curKey = keys.nextElement();
-            if (curKey.startsWith("Scoreboard.")) {
-                translations.put(curKey.replace("Scoreboard.", ""), Translator.translate(curKey));
-            }
-        }
+        TranslationJson translations = Translator.getTranslationJson("Scoreboard.");
+        translatorResetTimeStamp = Translator.getResetTimeStamp();
         setTranslationMap(translations);
     }
 
@@ -429,47 +417,37 @@ public class EventForwarder implements BreakDisplay {
 
     private void computeCurrentGroup() {
         Group group = fop.getGroup();
-        List<Athlete> displayOrder = fop.getDisplayOrder();
-        int liftsDone = AthleteSorter.countLiftsDone(displayOrder);
+        // same rows as the displays attached to the field of play
+        DisplayViewModel viewModel = fop.getDisplayViewModel();
         setGroupName(computeSecondLine(fop.getCurAthlete(), group != null ? group.getName() : null));
-        setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
-        if (displayOrder != null && displayOrder.size() > 0) {
-            setGroupAthletes(getAthletesJson(displayOrder, fop.getLiftingOrder()));
+        setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", viewModel.getLiftsDone()));
+        if (viewModel.getDisplayOrder().size() > 0) {
+            if (viewModel.isWideTeamNames()) {
+                setWideTeamNames(true);
+            }
+            setGroupAthletes(viewModel.getAthletesJson());
         } else {
             setGroupAthletes(null);
         }
-        computeLeaders();
+        computeLeaders(viewModel);
     }
 
-    private void computeLeaders() {
-        OwlcmsSession.withFop(fop -> {
-            Athlete curAthlete = fop.getCurAthlete();
-            if (curAthlete != null && curAthlete.getGender() != null) {
-                setCategoryName(curAthlete.getCategory().getName());
-                groupLeaders = fop.getLeaders();
-                int size = groupLeaders.size();
-                if (size > 15) {
-                    setLeaders(null);
-                } else if (groupLeaders.size() > 0) {
-                    // null as second argument because we do not highlight current athletes in the leaderboard
-                    setLeaders(getAthletesJson(groupLeaders, null));
-                } else {
-                    // no one has totaled, so we show the snatch leaders
-                    if (!fop.isCjStarted()) {
-                        if (groupLeaders.size() > 0) {
-                            setLeaders(getAthletesJson(groupLeaders, null));
-                        } else {
-                            // nothing to show
-                            setLeaders(null);
-                        }
-                    } else {
-                        // nothing to show
-                        setLeaders(null);
-                    }
+    private void computeLeaders(DisplayViewModel viewModel) {
+        Athlete curAthlete = fop.getCurAthlete();
+        if (curAthlete != null && curAthlete.getGender() != null) {
+            setCategoryName(curAthlete.getCategory().getName());
+            groupLeaders = viewModel.getLeaders();
+            if (groupLeaders.size() > 15 || groupLeaders.size() == 0) {
+                // nothing to show
+                setLeaders(null);
+            } else {
+                // current athletes are not highlighted in the leaderboard
+                if (viewModel.isLeadersWideTeamNames()) {
+                    setWideTeamNames(true);
                 }
+                setLeaders(viewModel.getLeadersJson());
             }
-        });
-
+        }
     }
 
     private String computeSecondLine(Athlete a, String groupName) {
@@ -596,7 +574,8 @@ public class EventForwarder implements BreakDisplay {
         }
 
         // presentation information
-        mapPut(sb, "translationMap", translationMap.toJson());
+        mapPut(sb, "translationMap", translationMap.getJsonString());
+        mapPut(sb, "translationVersion", translationMap.getVersion());
         mapPut(sb, "hidden", String.valueOf(hidden));
         mapPut(sb, "wideTeamNames", String.valueOf(wideTeamNames));
 
@@ -633,32 +612,6 @@ public class EventForwarder implements BreakDisplay {
         pushUpdate();
     }
 
-    private void doPost(String url, Map<String, String> parameters) {
-        HttpPost post = new HttpPost(url);
-        // add request parameters or form parameters
-        List<NameValuePair> urlParameters = new ArrayList<>();
-        parameters.entrySet().stream()
-                .forEach((e) -> urlParameters.add(new BasicNameValuePair(e.getKey(), e.getValue())));
-
-        try {
-            post.setEntity(new UrlEncodedFormEntity(urlParameters, "UTF-8"));
-            try (CloseableHttpClient httpClient = HttpClients.createDefault();
-                    CloseableHttpResponse response = httpClient.execute(post)) {
-                StatusLine statusLine = response.getStatusLine();
-                Integer statusCode = statusLine != null ? statusLine.getStatusCode() : null;
-                if (statusCode != null && statusCode != 200) {
-                    logger.error("could not post to {} {} {}", url, statusLine, LoggerUtils.whereFrom(1));
-                }
-                EntityUtils.toString(response.getEntity());
-            } catch (Exception e1) {
-                logger.error("could not post to {} {}", url, LoggerUtils.exceptionMessage(e1));
-            }
-        } catch (UnsupportedEncodingException e2) {
-            // can't happen.
-            logger.error("could not post to {} {}", url, LoggerUtils.exceptionMessage(e2));
-        }
-    }
-
     private void doUpdate(Athlete a, UIEvent e) {
         logger.trace("doUpdate {} {}", a, a != null ? a.getAttemptsDone() : null);
         boolean leaveTopAlone = false;
@@ -711,147 +664,6 @@ public class EventForwarder implements BreakDisplay {
 //                .collect(Collectors.toList());
 //    }
 
-    private String formatInt(Integer total) {
-        if (total == null || total == 0) {
-            return "-";
-        } else if (total == -1) {
-            return "inv.";// invited lifter, not eligible.
-        } else if (total < 0) {
-            return "(" + Math.abs(total) + ")";
-        } else {
-            return total.toString();
-        }
-    }
-
-    private String formatKg(String total) {
-        return (total == null || total.trim().isEmpty()) ? "-"
-                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
-    }
-
-    private void getAthleteJson(Athlete a, JsonObject ja, Category curCat, int liftOrderRank) {
-        String category;
-        category = curCat != null ? curCat.getName() : "";
-        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
-        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
-        ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
-        Integer startNumber = a.getStartNumber();
-        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
-        ja.put("category", category != null ? category : "");
-        getAttemptsJson(a, liftOrderRank);
-        ja.put("sattempts", sattempts);
-        ja.put("cattempts", cattempts);
-        ja.put("total", formatInt(a.getTotal()));
-        ja.put("snatchRank", formatInt(a.getMainRankings().getSnatchRank()));
-        ja.put("cleanJerkRank", formatInt(a.getMainRankings().getCleanJerkRank()));
-        ja.put("totalRank", formatInt(a.getMainRankings().getTotalRank()));
-        ja.put("group", a.getGroup() != null ? a.getGroup().getName() : "");
-        boolean notDone = a.getAttemptsDone() < 6;
-        String blink = (notDone ? " blink" : "");
-        if (notDone) {
-            ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
-        }
-    }
-
-    /**
-     * @param groupAthletes, List<Athlete> liftOrder
-     * @return
-     */
-    private JsonValue getAthletesJson(List<Athlete> groupAthletes, List<Athlete> liftOrder) {
-        JsonArray jath = Json.createArray();
-        int athx = 0;
-        Category prevCat = null;
-        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
-        long nextId = (liftOrder != null && liftOrder.size() > 1) ? liftOrder.get(1).getId() : -1L;
-        List<Athlete> athletes = groupAthletes != null ? Collections.unmodifiableList(groupAthletes)
-                : Collections.emptyList();
-        for (Athlete a : athletes) {
-            JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
-            if (curCat != null && !curCat.sameAs(prevCat)) {
-                // changing categories, put marker before athlete
-                ja.put("isSpacer", true);
-                jath.set(athx, ja);
-                ja = Json.createObject();
-                prevCat = curCat;
-                athx++;
-            }
-            getAthleteJson(a, ja, curCat, (a.getId() == currentId)
-                    ? 1
-                    : ((a.getId() == nextId)
-                            ? 2
-                            : 0));
-            String team = a.getTeam();
-            if (team != null && team.trim().length() > Competition.SHORT_TEAM_LENGTH) {
-                logger.trace("long team {}", team);
-                setWideTeamNames(true);
-            }
-            jath.set(athx, ja);
-            athx++;
-        }
-        return jath;
-    }
-
-    /**
-     * Compute Json string ready to be used by web component template
-     *
-     * CSS classes are pre-computed and passed along with the values; weights are formatted.
-     *
-     * @param a
-     * @param liftOrderRank2
-     * @return json string with nested attempts values
-     */
-    private void getAttemptsJson(Athlete a, int liftOrderRank) {
-        sattempts = Json.createArray();
-        cattempts = Json.createArray();
-        XAthlete x = new XAthlete(a);
-        Integer curLift = x.getAttemptsDone();
-        int ix = 0;
-        for (LiftInfo i : x.getRequestInfoArray()) {
-            JsonObject jri = Json.createObject();
-            String stringValue = i.getStringValue();
-            boolean notDone = x.getAttemptsDone() < 6;
-            String blink = (notDone ? " blink" : "");
-
-            jri.put("goodBadClassName", "narrow empty");
-            jri.put("stringValue", "");
-            if (i.getChangeNo() >= 0) {
-                String trim = stringValue != null ? stringValue.trim() : "";
-                switch (Changes.values()[i.getChangeNo()]) {
-                case ACTUAL:
-                    if (!trim.isEmpty()) {
-                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
-                            jri.put("goodBadClassName", "narrow fail");
-                            jri.put("stringValue", "-");
-                        } else {
-                            boolean failed = stringValue.startsWith("-");
-                            jri.put("goodBadClassName", failed ? "narrow fail" : "narrow good");
-                            jri.put("stringValue", formatKg(stringValue));
-                        }
-                    }
-                    break;
-                default:
-                    if (stringValue != null && !trim.isEmpty()) {
-                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
-                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
-                        jri.put("goodBadClassName", "narrow request");
-                        if (notDone) {
-                            jri.put("className", highlight);
-                        }
-                        jri.put("stringValue", stringValue);
-                    }
-                    break;
-                }
-            }
-
-            if (ix < 3) {
-                sattempts.set(ix, jri);
-            } else {
-                cattempts.set(ix % 3, jri);
-            }
-            ix++;
-        }
-    }
-
     private String groupResults(Group g) {
         return Translator.translate("Group_number_results", g.toString());
     }
@@ -872,12 +684,8 @@ public class EventForwarder implements BreakDisplay {
         if (decisionUrl == null) {
             return;
         }
-        try {
-            logger.trace("pushing {}", det);
-            sendPost(decisionUrl, createDecision(det));
-        } catch (IOException e) {
-            logger./**/warn("cannot push: {} {}", decisionUrl, e.getMessage());
-        }
+        logger.trace("pushing {}", det);
+        sendPost(PostType.DECISION, decisionUrl, createDecision(det));
     }
 
     private void pushTimer(UIEvent e) {
@@ -885,11 +693,7 @@ public class EventForwarder implements BreakDisplay {
         if (timerUrl == null) {
             return;
         }
-        try {
-            sendPost(timerUrl, createTimer(e));
-        } catch (IOException ex) {
-            logger./**/warn("cannot push: {} {}", timerUrl, ex.getMessage());
-        }
+        sendPost(PostType.TIMER, timerUrl, createTimer(e));
     }
 
     private void pushUpdate() {
@@ -898,21 +702,17 @@ public class EventForwarder implements BreakDisplay {
         if (updateUrl == null) {
             return;
         }
-        try {
-            sendPost(updateUrl, createUpdate());
-        } catch (IOException e) {
-            logger./**/warn("cannot push: {} {}", updateUrl, e.getMessage());
-        }
+        sendPost(PostType.UPDATE, updateUrl, createUpdate());
     }
 
-    private void sendPost(String url, Map<String, String> parameters) throws IOException {
-
+    private void sendPost(PostType type, String url, Map<String, String> parameters) {
         long deltaMillis = System.currentTimeMillis() - previousMillis;
         int hashCode = parameters.hashCode();
         // debounce, sometimes several identical updates in a rapid succession
         // identical updates are ok after 1 sec.
         if (hashCode != previousHashCode || (deltaMillis > 1000)) {
-            new Thread(() -> doPost(url, parameters)).start();
+            // queued, sent in order on the field of play's sender thread
+            sender.send(type, url, parameters);
 
             previousHashCode = hashCode;
             previousMillis = System.currentTimeMillis();
@@ -937,7 +737,7 @@ public class EventForwarder implements BreakDisplay {
         this.timeAllowed = timeAllowed;
     }
 
-    private void setTranslationMap(JsonObject translations) {
+    private void setTranslationMap(TranslationJson translations) {
         this.translationMap = translations;
     }
 
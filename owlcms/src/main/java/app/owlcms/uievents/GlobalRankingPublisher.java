@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.uievents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.fieldofplay.DelayScheduler;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.IDelayScheduler;
+import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Competition-wide Sinclair rankings, published to the displays of all the fields of play.
+ *
+ * When several platforms record lifts at nearly the same moment, the changes are coalesced: the rankings are computed
+ * once, a short time after the first change, and the same snapshot is sent with the
+ * {@link UIEvent.GlobalRankingUpdated} event to every field of play. Changes that arrive while computing cause
+ * another publication. Changes made outside a field of play (results edits, registration, imports) only mark the
+ * snapshot as stale; it is computed again when next requested.
+ *
+ * @author Jean-François Lamy
+ */
+public class GlobalRankingPublisher {
+
+    /**
+     * Rankings at a point in time. The lists cannot be modified; the athletes must not be.
+     */
+    public static class Snapshot {
+        private final long version;
+        private final Map<String, List<Athlete>> lists;
+
+        public Snapshot(long version, Map<String, List<Athlete>> lists) {
+            this.version = version;
+            this.lists = Collections.unmodifiableMap(lists);
+        }
+
+        /**
+         * @param listName mSinclair or wSinclair
+         * @return the athletes, in ranking order, empty if the list is not known
+         */
+        public List<Athlete> get(String listName) {
+            return lists.getOrDefault(listName, Collections.emptyList());
+        }
+
+        public List<Athlete> getSinclairRanking(Gender gender) {
+            return get(gender == Gender.F ? "wSinclair" : "mSinclair");
+        }
+
+        /**
+         * @return sequence number of the publication
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * delay during which changes are coalesced into one publication.
+     */
+    private static final int COALESCE_MILLIS = 500;
+
+    private static final String[] LISTS = { "mSinclair", "wSinclair" };
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(GlobalRankingPublisher.class);
+
+    private static GlobalRankingPublisher current;
+
+    /**
+     * @return the publisher for the competition
+     */
+    public static synchronized GlobalRankingPublisher get() {
+        if (current == null) {
+            current = new GlobalRankingPublisher(DelayScheduler.getShared(), COALESCE_MILLIS,
+                    GlobalRankingPublisher::computeCompetitionLists, GlobalRankingPublisher::postToAllFOPs);
+        }
+        return current;
+    }
+
+    private static Map<String, List<Athlete>> computeCompetitionLists() {
+        Competition competition = Competition.getCurrent();
+        Map<String, List<Athlete>> lists = new HashMap<>();
+        for (String listName : LISTS) {
+            lists.put(listName, Collections.unmodifiableList(
+                    new ArrayList<>(competition.getListOrElseRecompute(listName))));
+        }
+        return lists;
+    }
+
+    private static void postToAllFOPs(Snapshot snapshot) {
+        for (FieldOfPlay fop : OwlcmsFactory.getFOPs()) {
+            fop.pushOut(new UIEvent.GlobalRankingUpdated(snapshot, GlobalRankingPublisher.class));
+        }
+    }
+
+    private final IDelayScheduler scheduler;
+    private final long coalesceMillis;
+    private final Supplier<Map<String, List<Athlete>>> computation;
+    private final Consumer<Snapshot> broadcast;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong versions = new AtomicLong();
+    private volatile Snapshot latest;
+    private volatile boolean stale = false;
+
+    /**
+     * @param scheduler      runs the delayed publication
+     * @param coalesceMillis delay during which changes are grouped
+     * @param computation    computes the lists
+     * @param broadcast      sends a snapshot to the displays
+     */
+    public GlobalRankingPublisher(IDelayScheduler scheduler, long coalesceMillis,
+            Supplier<Map<String, List<Athlete>>> computation, Consumer<Snapshot> broadcast) {
+        this.scheduler = scheduler;
+        this.coalesceMillis = coalesceMillis;
+        this.computation = computation;
+        this.broadcast = broadcast;
+    }
+
+    /**
+     * @return number of changes signaled since the publisher was created
+     */
+    public long getChangeCount() {
+        return changes.get();
+    }
+
+    /**
+     * @return the last snapshot published, computed now if there is none yet or if it is stale
+     */
+    public Snapshot getLatest() {
+        Snapshot snapshot = latest;
+        if (snapshot == null || stale) {
+            snapshot = compute();
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return number of snapshots computed since the publisher was created
+     */
+    public long getPublishedCount() {
+        return versions.get();
+    }
+
+    /**
+     * Signal that results may have changed without a lift: the next request for the rankings computes them again.
+     * Nothing is published.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Signal that results have changed. Returns immediately; the rankings are published after the coalescing delay.
+     */
+    public void rankingsChanged() {
+        changes.incrementAndGet();
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::publish, coalesceMillis);
+        }
+    }
+
+    private synchronized Snapshot compute() {
+        // an invalidation during the computation makes the result stale.
+        stale = false;
+        Snapshot snapshot = new Snapshot(versions.incrementAndGet(), computation.get());
+        latest = snapshot;
+        return snapshot;
+    }
+
+    private void publish() {
+        // a change signaled from now on needs another publication.
+        scheduled.set(false);
+        try {
+            Snapshot snapshot = compute();
+            logger.debug("publishing global rankings {} after {} changes", snapshot.getVersion(), changes.get());
+            broadcast.accept(snapshot);
+        } catch (Exception e) {
+            logger.error("could not publish global rankings {}", LoggerUtils.stackTrace(e));
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.uievents;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Sends the updates of one field of play to publicresults.
+ *
+ * All fields of play share a single pooled HTTP client so that connections (and TLS sessions) are kept alive between
+ * posts. Each field of play has its own queue, emptied in order by a single sender thread, so the remote scoreboard
+ * receives the events in the order they were produced.
+ *
+ * A scoreboard update carries the complete state, so when a new update is queued any update still waiting is dropped.
+ * Updates are delta-encoded when they are taken off the queue (see {@link UpdateDeltaEncoder}), so dropping an update
+ * never breaks the sequence seen by publicresults. Setting the pushFullUpdates parameter (OWLCMS_PUSHFULLUPDATES) to
+ * true sends the full state every time, for publicresults versions that do not understand deltas.
+ * Posts that fail because of a network error or a server error are retried with an exponential backoff; the number of
+ * attempts and the initial delay can be set with the pushRetries and pushBackoff parameters (OWLCMS_PUSHRETRIES and
+ * OWLCMS_PUSHBACKOFF in the environment).
+ *
+ * @author Jean-François Lamy
+ */
+public class PublicResultsSender {
+
+    public enum PostType {
+        UPDATE, TIMER, DECISION
+    }
+
+    private static class Post {
+        final PostType type;
+        final String url;
+        final Map<String, String> parameters;
+
+        Post(PostType type, String url, Map<String, String> parameters) {
+            this.type = type;
+            this.url = url;
+            this.parameters = parameters;
+        }
+    }
+
+    private static final int MAX_QUEUED = 50;
+
+    private static final long MAX_BACKOFF_MILLIS = 8000;
+
+    private static final int SC_RESYNC = 409;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(PublicResultsSender.class);
+
+    private static CloseableHttpClient httpClient;
+
+    /**
+     * @return the keep-alive client shared by all fields of play
+     */
+    static synchronized CloseableHttpClient getHttpClient() {
+        if (httpClient == null) {
+            PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager();
+            cm.setMaxTotal(20);
+            cm.setDefaultMaxPerRoute(10);
+            cm.setValidateAfterInactivity(2000);
+            RequestConfig requestConfig = RequestConfig.custom()
+                    .setConnectTimeout(5000)
+                    .setConnectionRequestTimeout(5000)
+                    .setSocketTimeout(10000)
+                    .build();
+            httpClient = HttpClients.custom()
+                    .setConnectionManager(cm)
+                    .setDefaultRequestConfig(requestConfig)
+                    .evictIdleConnections(60, TimeUnit.SECONDS)
+                    .build();
+        }
+        return httpClient;
+    }
+
+    private final String fopName;
+
+    private final Deque<Post> pending = new ArrayDeque<>();
+
+    private Thread senderThread;
+
+    private int maxAttempts;
+
+    private long initialBackoffMillis;
+
+    private final UpdateDeltaEncoder deltaEncoder = new UpdateDeltaEncoder();
+
+    private boolean fullUpdates;
+
+    public PublicResultsSender(String fopName) {
+        this.fopName = fopName;
+        this.fullUpdates = StartupUtils.getBooleanParam("pushFullUpdates");
+        this.maxAttempts = Math.max(1, StartupUtils.getIntegerParam("pushRetries", 3) + 1);
+        this.initialBackoffMillis = Math.max(0, StartupUtils.getIntegerParam("pushBackoff", 250));
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return the number of posts waiting to be sent
+     */
+    public synchronized int getQueueSize() {
+        return pending.size();
+    }
+
+    /**
+     * Queue a post. Returns immediately.
+     *
+     * @param type       an update supersedes the updates still in the queue
+     * @param url        the publicresults servlet
+     * @param parameters the form parameters
+     */
+    public synchronized void send(PostType type, String url, Map<String, String> parameters) {
+        if (type == PostType.UPDATE) {
+            pending.removeIf(p -> p.type == PostType.UPDATE);
+        }
+        if (pending.size() >= MAX_QUEUED) {
+            Post dropped = pending.pollFirst();
+            logger./**/warn("{} publicresults queue full, dropping {}", fopName, dropped.type);
+        }
+        pending.addLast(new Post(type, url, parameters));
+        if (senderThread == null) {
+            senderThread = new Thread(this::sendLoop, "publicresults-" + fopName);
+            senderThread.setDaemon(true);
+            senderThread.start();
+        }
+        notifyAll();
+    }
+
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    private void deliver(Post p) throws InterruptedException {
+        long backoff = initialBackoffMillis;
+        Map<String, String> parameters = encode(p);
+        for (int attempt = 1;; attempt++) {
+            int statusCode = doPost(p.url, parameters);
+            if (statusCode == SC_RESYNC && p.type == PostType.UPDATE && parameters.get("baseSeq") != null) {
+                // publicresults missed an update or was restarted, send everything.
+                logger.info("{} publicresults requested a resync", fopName);
+                deltaEncoder.reset();
+                parameters = encode(p);
+                continue;
+            }
+            if (statusCode > 0 && statusCode < 500) {
+                if (statusCode != 200) {
+                    logger.error("{} could not post to {} {}", fopName, p.url, statusCode);
+                } else if (p.type == PostType.UPDATE && !fullUpdates) {
+                    deltaEncoder.acknowledge(p.parameters, Long.parseLong(parameters.get("seq")));
+                }
+                return;
+            }
+            if (attempt >= maxAttempts) {
+                logger.error("{} giving up on {} after {} attempts", fopName, p.url, attempt);
+                return;
+            }
+            if (isSuperseded(p)) {
+                logger.debug("{} newer update queued, not retrying", fopName);
+                return;
+            }
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * @return the HTTP status, or -1 if the post could not be sent
+     */
+    private int doPost(String url, Map<String, String> parameters) {
+        HttpPost post = new HttpPost(url);
+        List<NameValuePair> urlParameters = new ArrayList<>();
+        parameters.entrySet().stream()
+                .forEach((e) -> urlParameters.add(new BasicNameValuePair(e.getKey(), e.getValue())));
+        post.setEntity(new UrlEncodedFormEntity(urlParameters, StandardCharsets.UTF_8));
+        try (CloseableHttpResponse response = getHttpClient().execute(post)) {
+            StatusLine statusLine = response.getStatusLine();
+            int statusCode = statusLine != null ? statusLine.getStatusCode() : -1;
+            // consume the entity so the connection goes back to the pool
+            EntityUtils.consume(response.getEntity());
+            if (statusCode >= 500) {
+                logger./**/warn("{} could not post to {} {}", fopName, url, statusLine);
+            }
+            return statusCode;
+        } catch (IOException e1) {
+            logger./**/warn("{} could not post to {} {}", fopName, url, LoggerUtils.exceptionMessage(e1));
+            return -1;
+        }
+    }
+
+    private Map<String, String> encode(Post p) {
+        if (p.type != PostType.UPDATE || fullUpdates) {
+            return p.parameters;
+        }
+        return deltaEncoder.encode(p.parameters);
+    }
+
+    private synchronized boolean isSuperseded(Post p) {
+        return p.type == PostType.UPDATE && pending.stream().anyMatch(q -> q.type == PostType.UPDATE);
+    }
+
+    private void sendLoop() {
+        while (true) {
+            try {
+                Post p;
+                synchronized (this) {
+                    while (pending.isEmpty()) {
+                        wait();
+                    }
+                    p = pending.pollFirst();
+                }
+                deliver(p);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("{} {}", fopName, LoggerUtils.stackTrace(e));
+            }
+        }
+    }
+
+}
@@ -313,10 +313,27 @@ public class UIEvent {
         }
     }
 
+    /**
+     * Class GlobalRankingUpdated. Competition-wide rankings have changed.
+     */
     static public class GlobalRankingUpdated extends UIEvent {
+        private GlobalRankingPublisher.Snapshot rankings;
+
+        public GlobalRankingUpdated(GlobalRankingPublisher.Snapshot rankings, Object origin) {
+            super(origin);
+            this.rankings = rankings;
+        }
+
         public GlobalRankingUpdated(Object object) {
             super(object);
         }
+
+        /**
+         * @return the rankings computed once for all the displays, null if the event does not carry them
+         */
+        public GlobalRankingPublisher.Snapshot getRankings() {
+            return rankings;
+        }
     }
 
     static public class GroupDone extends UIEvent {
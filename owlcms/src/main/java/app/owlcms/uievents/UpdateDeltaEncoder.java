@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.uievents;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
+
+/**
+ * Turns the successive scoreboard updates of a field of play into deltas.
+ *
+ * The first update, and any update following a resync request from publicresults, is sent as a full snapshot. The
+ * following ones only carry the parameters that changed since the last update acknowledged by publicresults. For the
+ * athlete tables (groupAthletes and leaders), only the rows that changed are sent, as a JSON patch of the form
+ * <code>{"length": n, "rows": {"index": row, ...}}</code>.
+ *
+ * Every update carries a sequence number (seq); a delta also carries the sequence number of the update it applies to
+ * (baseSeq), so publicresults can detect a gap and answer with a 409 status to request a new snapshot.
+ *
+ * @author Jean-François Lamy
+ */
+public class UpdateDeltaEncoder {
+
+    /** always present, needed by publicresults to authenticate and route the update */
+    private static final Set<String> ALWAYS_SENT = new HashSet<>(Arrays.asList("updateKey", "fop"));
+
+    /** JSON arrays that are patched row by row */
+    private static final Set<String> ROW_PATCHED = new HashSet<>(Arrays.asList("groupAthletes", "leaders"));
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(UpdateDeltaEncoder.class);
+
+    private Map<String, String> acknowledged;
+    private long acknowledgedSeq;
+    private long seq;
+
+    /**
+     * Record that publicresults has applied an update.
+     *
+     * @param parameters the full update
+     * @param updateSeq  the sequence number it was sent with
+     */
+    public void acknowledge(Map<String, String> parameters, long updateSeq) {
+        acknowledged = parameters;
+        acknowledgedSeq = updateSeq;
+    }
+
+    /**
+     * @param parameters the full update, as created by the event forwarder
+     * @return the parameters to post; the "seq" entry must be given back to {@link #acknowledge(Map, long)}
+     */
+    public Map<String, String> encode(Map<String, String> parameters) {
+        Map<String, String> encoded = new HashMap<>();
+        seq++;
+        encoded.put("seq", Long.toString(seq));
+        if (acknowledged == null) {
+            encoded.putAll(parameters);
+            encoded.put("snapshot", "true");
+            return encoded;
+        }
+
+        encoded.put("baseSeq", Long.toString(acknowledgedSeq));
+        Set<String> removed = new TreeSet<>();
+        for (String key : acknowledged.keySet()) {
+            if (!parameters.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        if (!removed.isEmpty()) {
+            encoded.put("removed", String.join(",", removed));
+        }
+        for (Map.Entry<String, String> e : parameters.entrySet()) {
+            String key = e.getKey();
+            String value = e.getValue();
+            String previous = acknowledged.get(key);
+            if (ALWAYS_SENT.contains(key)) {
+                encoded.put(key, value);
+            } else if (Objects.equals(previous, value)) {
+                continue;
+            } else if (ROW_PATCHED.contains(key) && previous != null) {
+                String patch = rowPatch(previous, value);
+                if (patch != null) {
+                    encoded.put(key + "Patch", patch);
+                } else {
+                    encoded.put(key, value);
+                }
+            } else {
+                encoded.put(key, value);
+            }
+        }
+        logger.trace("update {} based on {}: {}", seq, acknowledgedSeq, encoded.keySet());
+        return encoded;
+    }
+
+    /**
+     * Forget what publicresults has, so the next update is a full snapshot.
+     */
+    public void reset() {
+        acknowledged = null;
+    }
+
+    /**
+     * @return the patch, or null if sending the whole array is as good
+     */
+    private String rowPatch(String previousJson, String currentJson) {
+        JsonValue previousValue;
+        JsonValue currentValue;
+        try {
+            previousValue = Json.parse(previousJson);
+            currentValue = Json.parse(currentJson);
+        } catch (Exception e) {
+            return null;
+        }
+        if (previousValue.getType() != JsonType.ARRAY || currentValue.getType() != JsonType.ARRAY) {
+            return null;
+        }
+        JsonArray previous = (JsonArray) previousValue;
+        JsonArray current = (JsonArray) currentValue;
+
+        JsonObject rows = Json.createObject();
+        int nbChanged = 0;
+        for (int i = 0; i < current.length(); i++) {
+            JsonValue value = current.get(i);
+            String row = value.toJson();
+            if (i >= previous.length() || !row.equals(previous.get(i).toJson())) {
+                rows.put(Integer.toString(i), value);
+                nbChanged++;
+            }
+        }
+        if (nbChanged * 2 > current.length()) {
+            // most of the table changed, no gain
+            return null;
+        }
+        JsonObject patch = Json.createObject();
+        patch.put("length", current.length());
+        patch.put("rows", rows);
+        return patch.toJson();
+    }
+
+}
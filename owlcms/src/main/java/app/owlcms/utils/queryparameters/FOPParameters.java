@@ -89,7 +89,10 @@ public interface FOPParameters extends HasUrlParameter<String> {
             List<String> groupNames = parametersMap.get("group");
             if (groupNames != null && groupNames.get(0) != null) {
                 group = GroupRepository.findByName(groupNames.get(0));
-                fop.loadGroup(group, this, true);
+                Group urlGroup = group;
+                FieldOfPlay urlFop = fop;
+                // the page shows the group, wait for it to be loaded.
+                urlFop.getFopEventLoop().executeAndWait(() -> urlFop.loadGroup(urlGroup, this, true));
             } else {
                 group = (fop != null ? fop.getGroup() : null);
             }
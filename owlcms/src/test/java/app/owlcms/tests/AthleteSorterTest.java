@@ -9,6 +9,7 @@ package app.owlcms.tests;
 import static app.owlcms.tests.AllTests.assertEqualsToReferenceFile;
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
@@ -24,10 +25,13 @@ import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.athleteSort.AthleteSorter.Ranking;
 import app.owlcms.data.athleteSort.WinningOrderComparator;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.Participation;
 import app.owlcms.data.config.Config;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.fieldofplay.FieldOfPlay;
 import app.owlcms.init.OwlcmsSession;
+import app.owlcms.spreadsheet.PAthlete;
 import app.owlcms.utils.DebugUtils;
 import ch.qos.logback.classic.Level;
 
@@ -334,6 +338,22 @@ public class AthleteSorterTest {
         assertEqualsToReferenceFile("/seq1_medals_bodyWeight.txt", DebugUtils.shortDump(athletes));
     }
 
+    @Test
+    public void participationTotalTieBreak() {
+        Category cat = new Category();
+        cat.setId(1L);
+        Athlete first = tiedOnTotal(2, "105");
+        Athlete second = tiedOnTotal(1, "107");
+
+        // same total, same best clean and jerk on the same attempt: the athlete who asked for less on the previous
+        // attempt reached the total first. The lot numbers would give the opposite order.
+        List<Athlete> ranked = new ArrayList<>(List.of(new PAthlete(new Participation(second, cat)),
+                new PAthlete(new Participation(first, cat))));
+        Collections.sort(ranked, new WinningOrderComparator(Ranking.TOTAL, true));
+        assertEquals(first, ((PAthlete) ranked.get(0))._getAthlete());
+        assertEquals(second, ((PAthlete) ranked.get(1))._getAthlete());
+    }
+
     @Test
     public void liftSequence2() {
         FieldOfPlay fopState = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
@@ -386,6 +406,19 @@ public class AthleteSorterTest {
      * Utility routines
      */
 
+    private Athlete tiedOnTotal(int lotNumber, String cleanJerk2) {
+        Athlete a = new Athlete();
+        a.setValidation(false);
+        a.setLotNumber(lotNumber);
+        a.setSnatch1ActualLift("80");
+        a.setSnatch2ActualLift("-85");
+        a.setSnatch3ActualLift("-85");
+        a.setCleanJerk1ActualLift("100");
+        a.setCleanJerk2ActualLift("-" + cleanJerk2);
+        a.setCleanJerk3ActualLift("110");
+        return a;
+    }
+
     /**
      * @param lifter
      * @param lifters1
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.eventbus.EventBus;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.config.Config;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.init.OwlcmsSession;
+import app.owlcms.uievents.DisplayViewModel;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+
+public class DisplayViewModelTest {
+
+    private static Group gA;
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        Config.initConfig();
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Before
+    public void setupTest() {
+        TestData.insertInitialData(5, true);
+        JPAService.runInTransaction((em) -> {
+            gA = GroupRepository.doFindByName("A", em);
+            Group gB = GroupRepository.doFindByName("B", em);
+            Group gC = GroupRepository.doFindByName("C", em);
+            TestData.deleteAllLifters(em);
+            TestData.insertSampleLifters(em, 5, gA, gB, gC);
+            return null;
+        });
+        AthleteRepository.resetParticipations();
+        List<Athlete> athletes = AthleteRepository.findAll();
+        FieldOfPlay fopState = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
+        OwlcmsSession.setFop(fopState);
+    }
+
+    @Test
+    public void sharedUntilOrderChanges() {
+        FieldOfPlay fopState = OwlcmsSession.getFop();
+        fopState.beforeTest();
+        fopState.loadGroup(gA, this, true);
+        List<Athlete> athletes = fopState.getDisplayOrder();
+        JPAService.runInTransaction(em -> {
+            AthleteSorter.assignStartNumbers(athletes);
+            for (Athlete a : athletes) {
+                a.setSnatch1Declaration("60");
+                a.setCleanJerk1Declaration("80");
+                em.merge(a);
+            }
+            return null;
+        });
+        fopState.loadGroup(gA, this, true);
+
+        // every display gets the same rows
+        DisplayViewModel viewModel = fopState.getDisplayViewModel();
+        assertSame(viewModel, fopState.getDisplayViewModel());
+        assertSame(viewModel.getAthletesJson(), fopState.getDisplayViewModel().getAthletesJson());
+        assertEquals(0, viewModel.getLiftsDone());
+
+        // first row is the category spacer, the current athlete is highlighted
+        JsonArray rows = (JsonArray) viewModel.getAthletesJson();
+        Athlete current = fopState.getCurAthlete();
+        boolean found = false;
+        for (int i = 0; i < rows.length(); i++) {
+            JsonObject row = rows.getObject(i);
+            if (row.hasKey("fullName") && row.getString("fullName").equals(current.getFullName())) {
+                assertTrue(row.getString("classname").startsWith("current"));
+                found = true;
+            }
+        }
+        assertTrue(found);
+
+        // a lift changes the lifting order, hence the view model
+        EventBus fopBus = fopState.getFopEventBus();
+        fopBus.post(new FOPEvent.TimeStarted(null));
+        fopBus.post(new FOPEvent.DownSignal(null));
+        fopBus.post(new FOPEvent.DecisionFullUpdate(this, current, true, true, true, 0, 0, 0));
+        fopBus.post(new FOPEvent.DecisionReset(null));
+
+        DisplayViewModel next = fopState.getDisplayViewModel();
+        assertNotSame(viewModel, next);
+        assertTrue(next.getVersion() > viewModel.getVersion());
+        assertEquals(1, next.getLiftsDone());
+    }
+
+}
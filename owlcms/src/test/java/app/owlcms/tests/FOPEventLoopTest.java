@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FOPEventLoop;
+import app.owlcms.utils.LatencyHistogram;
+
+public class FOPEventLoopTest {
+
+    private final Set<Thread> handlingThreads = ConcurrentHashMap.newKeySet();
+    private final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean concurrent = false;
+    private boolean busy = false;
+    private volatile CountDownLatch gate;
+
+    @Subscribe
+    public void handle(FOPEvent.DecisionUpdate e) throws InterruptedException {
+        if (gate != null) {
+            gate.await();
+        }
+        if (busy) {
+            concurrent = true;
+        }
+        busy = true;
+        handlingThreads.add(Thread.currentThread());
+        received.add(e.refIndex);
+        busy = false;
+    }
+
+    @Test
+    public void decisionsHandledOneAtATime() throws InterruptedException {
+        FOPEventLoop loop = new FOPEventLoop("FOP-loopTest", false);
+        loop.register(this);
+
+        // three keypads pressed at the same time, many times over.
+        int nbDecisions = 300;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> keypads = new ArrayList<>();
+        for (int ref = 0; ref < 3; ref++) {
+            int curRef = ref;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < nbDecisions / 3; i++) {
+                    loop.post(new FOPEvent.DecisionUpdate(this, curRef, true));
+                }
+            });
+            t.start();
+            keypads.add(t);
+        }
+        start.countDown();
+        for (Thread t : keypads) {
+            t.join();
+        }
+        loop.executeAndWait(() -> {
+        });
+
+        assertEquals(nbDecisions, received.size());
+        assertEquals(1, handlingThreads.size());
+        assertTrue(!handlingThreads.contains(Thread.currentThread()));
+        assertTrue(!concurrent);
+        assertEquals(0, loop.getRejectedCount());
+
+        LatencyHistogram handled = loop.getHandledLatencies().get("DecisionUpdate");
+        assertEquals(nbDecisions, handled.getCount());
+        assertTrue(handled.getPercentileMillis(50) <= handled.getPercentileMillis(99));
+        // nothing pushed to user interfaces
+        assertNull(loop.getPushedLatencies().get("DecisionUpdate"));
+    }
+
+    @Test
+    public void decisionsWaitWhenMailboxFull() throws InterruptedException {
+        FOPEventLoop loop = new FOPEventLoop("FOP-fullTest", false);
+        loop.register(this);
+
+        // the handling thread is stuck on the first decision.
+        gate = new CountDownLatch(1);
+        int nbDecisions = 1100;
+        Thread keypad = new Thread(() -> {
+            for (int i = 0; i < nbDecisions; i++) {
+                loop.post(new FOPEvent.DecisionUpdate(this, i % 3, true));
+            }
+        });
+        keypad.start();
+        while (loop.getQueueDepth() < 1000) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertTrue(keypad.isAlive());
+
+        gate.countDown();
+        keypad.join();
+        loop.executeAndWait(() -> {
+        });
+        assertEquals(nbDecisions, received.size());
+        assertEquals(0, loop.getRejectedCount());
+    }
+
+    @Test
+    public void inlineForTests() {
+        FOPEventLoop loop = new FOPEventLoop("FOP-inlineTest", true);
+        loop.register(this);
+        loop.post(new FOPEvent.DecisionUpdate(this, 0, true));
+        // handled before post returns, on this thread
+        assertEquals(1, received.size());
+        assertTrue(handlingThreads.contains(Thread.currentThread()));
+
+        // posted while handling: handled after the current action, before the outer call returns
+        List<String> steps = new ArrayList<>();
+        loop.execute(() -> {
+            loop.execute(() -> steps.add("nested"));
+            steps.add("outer");
+        });
+        assertEquals(List.of("outer", "nested"), steps);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.fieldofplay.VirtualDelayScheduler;
+import app.owlcms.uievents.GlobalRankingPublisher;
+
+public class GlobalRankingPublisherTest {
+
+    private VirtualDelayScheduler clock;
+    private AtomicInteger computations;
+    private List<GlobalRankingPublisher.Snapshot> published;
+    private GlobalRankingPublisher publisher;
+
+    @Before
+    public void setupTest() {
+        clock = new VirtualDelayScheduler();
+        clock.setAutomatic(false);
+        computations = new AtomicInteger();
+        published = new ArrayList<>();
+        publisher = new GlobalRankingPublisher(clock, 500, () -> {
+            computations.incrementAndGet();
+            return new HashMap<>();
+        }, published::add);
+    }
+
+    @Test
+    public void burstIsPublishedOnce() {
+        // several platforms recording lifts at the same time
+        for (int i = 0; i < 10; i++) {
+            publisher.rankingsChanged();
+        }
+        clock.advance(499);
+        assertTrue(published.isEmpty());
+
+        clock.advance(1);
+        assertEquals(1, computations.get());
+        assertEquals(1, published.size());
+        assertEquals(10, publisher.getChangeCount());
+        assertSame(published.get(0), publisher.getLatest());
+        assertTrue(publisher.getLatest().getSinclairRanking(Gender.M).isEmpty());
+
+        // a later change gets its own publication
+        publisher.rankingsChanged();
+        clock.advance(500);
+        assertEquals(2, published.size());
+        assertEquals(2, published.get(1).getVersion());
+    }
+
+    @Test
+    public void invalidatedSnapshotIsComputedOnRequest() {
+        GlobalRankingPublisher.Snapshot first = publisher.getLatest();
+        assertSame(first, publisher.getLatest());
+        assertEquals(1, computations.get());
+
+        // results edited outside a field of play: nothing is published, the next display attached recomputes.
+        publisher.invalidate();
+        clock.advance(1000);
+        assertTrue(published.isEmpty());
+        GlobalRankingPublisher.Snapshot second = publisher.getLatest();
+        assertEquals(2, computations.get());
+        assertEquals(2, second.getVersion());
+        assertSame(second, publisher.getLatest());
+    }
+
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.utils.OrderedEventBus;
+
+public class OrderedEventBusTest {
+
+    private static final int NB_EVENTS = 200;
+
+    public static class Recorder {
+        private List<Integer> received = new ArrayList<>();
+        private CountDownLatch done = new CountDownLatch(NB_EVENTS);
+        private long sleepNanos;
+
+        Recorder(long sleepNanos) {
+            this.sleepNanos = sleepNanos;
+        }
+
+        @Subscribe
+        public void receive(Integer i) throws InterruptedException {
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+            received.add(i);
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void eachSubscriberReceivesInOrder() throws InterruptedException {
+        OrderedEventBus bus = new OrderedEventBus("test");
+        Recorder slow = new Recorder(10_000);
+        Recorder fast = new Recorder(0);
+        bus.register(slow);
+        bus.register(fast);
+        for (int i = 0; i < NB_EVENTS; i++) {
+            bus.post(i);
+        }
+        assertTrue(fast.done.await(10, TimeUnit.SECONDS));
+        assertTrue(slow.done.await(30, TimeUnit.SECONDS));
+        for (int i = 0; i < NB_EVENTS; i++) {
+            assertEquals(Integer.valueOf(i), fast.received.get(i));
+            assertEquals(Integer.valueOf(i), slow.received.get(i));
+        }
+        assertEquals(2 * NB_EVENTS, bus.getDeliveredCount());
+    }
+
+    @Test
+    public void unregisteredSubscriberReceivesNothing() {
+        OrderedEventBus bus = new OrderedEventBus("test");
+        Recorder r = new Recorder(0);
+        bus.register(r);
+        bus.unregister(r);
+        bus.post(1);
+        assertEquals(0, bus.getSubscriberCount());
+        assertEquals(NB_EVENTS, r.done.getCount());
+    }
+
+}
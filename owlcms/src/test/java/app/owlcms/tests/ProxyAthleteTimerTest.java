@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.data.config.Config;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.ProxyAthleteTimer;
+import app.owlcms.fieldofplay.VirtualDelayScheduler;
+import app.owlcms.uievents.UIEvent;
+
+public class ProxyAthleteTimerTest {
+
+    private VirtualDelayScheduler clock;
+    private FieldOfPlay fop;
+    private ProxyAthleteTimer timer;
+    private List<String> pushed = new ArrayList<>();
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        Config.initConfig();
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Subscribe
+    public void recordStop(UIEvent.StopTime e) {
+        pushed.add("stop " + e.getTimeRemaining());
+    }
+
+    @Before
+    public void setupTest() {
+        clock = new VirtualDelayScheduler();
+        clock.setAutomatic(false);
+        fop = new FieldOfPlay(new ArrayList<>(), new MockCountdownTimer(), new MockCountdownTimer(), true);
+        fop.getUiEventBus().register(this);
+        timer = new ProxyAthleteTimer(fop, clock);
+    }
+
+    @Test
+    public void countsDownOnFakeClock() {
+        timer.setTimeRemaining(60_000);
+        timer.start();
+        assertTrue(timer.isRunning());
+        clock.advance(12_500);
+        assertEquals(47_500, timer.liveTimeRemaining());
+        // stored value only changes when stopped
+        assertEquals(60_000, timer.getTimeRemaining());
+
+        timer.stop();
+        assertFalse(timer.isRunning());
+        assertEquals(47_500, timer.getTimeRemaining());
+        assertEquals(47_500, timer.getTimeRemainingAtLastStop());
+        clock.advance(5_000);
+        assertEquals(47_500, timer.liveTimeRemaining());
+        // the warnings and time over were canceled
+        assertEquals(0, clock.getQueueSize());
+    }
+
+    @Test
+    public void timeOverStopsWithoutBlocking() {
+        timer.setTimeRemaining(60_000);
+        timer.start();
+        clock.advance(29_999);
+        assertFalse(fop.isTimeoutEmitted());
+
+        // final warning at 30s, nothing else.
+        clock.advance(1);
+        assertFalse(fop.isTimeoutEmitted());
+
+        // time over is signaled by the server clock; the stop comes later.
+        clock.advance(30_000);
+        assertTrue(fop.isTimeoutEmitted());
+        assertTrue(timer.isRunning());
+        assertTrue(pushed.isEmpty());
+
+        clock.advance(1_000);
+        assertFalse(timer.isRunning());
+        assertEquals(List.of("stop -1000"), pushed);
+    }
+
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athleteSort.RankingIndex;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.Participation;
+import app.owlcms.data.config.Config;
+import app.owlcms.data.jpa.JPAService;
+
+public class RankingIndexTest {
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        Config.initConfig();
+        TestData.insertInitialData(5, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void unchangedRecomputeWritesNothing() {
+        Category cat = new Category();
+        cat.setId(1L);
+        cat.setCode("TEST_M73");
+        List<Athlete> athletes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Athlete a = new Athlete();
+            a.setValidation(false);
+            a.setLotNumber(i + 1);
+            a.setSnatch1ActualLift(Integer.toString(80 + i));
+            a.addEligibleCategory(cat);
+            athletes.add(a);
+        }
+
+        // same steps as the field of play: rank, then write the ranks that moved.
+        RankingIndex index = new RankingIndex();
+        long before = AthleteRepository.getRankWriteCount();
+        List<Participation> changed = index.rebuild(null, athletes);
+        AthleteRepository.updateCategoryRanks(changed);
+        assertTrue(changed.size() > 0);
+        assertEquals(before + changed.size(), AthleteRepository.getRankWriteCount());
+
+        // nothing changed since: no writes
+        before = AthleteRepository.getRankWriteCount();
+        AthleteRepository.updateCategoryRanks(index.rebuild(null, athletes));
+        AthleteRepository.updateCategoryRanks(index.update(athletes.get(1)));
+        assertEquals(before, AthleteRepository.getRankWriteCount());
+
+        // the athlete in last place now leads the snatch; only the snatch ranks move.
+        athletes.get(0).setSnatch2ActualLift("90");
+        changed = index.update(athletes.get(0));
+        AthleteRepository.updateCategoryRanks(changed);
+        assertEquals(3, changed.size());
+        assertEquals(before + 3, AthleteRepository.getRankWriteCount());
+    }
+
+}
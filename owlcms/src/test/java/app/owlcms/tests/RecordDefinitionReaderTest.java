@@ -7,11 +7,17 @@
 package app.owlcms.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.junit.AfterClass;
@@ -23,6 +29,7 @@ import org.xml.sax.SAXException;
 import app.owlcms.data.config.Config;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.data.records.RecordDefinitionReader;
+import app.owlcms.spreadsheet.DefinitionWorkbook;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
@@ -51,16 +58,53 @@ public class RecordDefinitionReaderTest {
 
         String streamURI = "/testData/IWF Records.xlsx";
 
-        try (InputStream xmlInputStream = this.getClass().getResourceAsStream(streamURI)) {
-            Workbook wb = null;
-            try {
-                wb = WorkbookFactory.create(xmlInputStream);
-                int i = RecordDefinitionReader.createRecords(wb, null, streamURI);
-                assertEquals(180, i);
-            } finally {
-                if (wb != null) {
-                    wb.close();
+        DefinitionWorkbook wb = DefinitionWorkbook.load(streamURI);
+        int i = RecordDefinitionReader.createRecords(wb, null, streamURI);
+        assertEquals(180, i);
+        assertSame(wb, DefinitionWorkbook.load(streamURI));
+    }
+
+    @Test
+    public void sameValuesAsPoi() throws IOException {
+
+        String streamURI = "/testData/IWF Records.xlsx";
+
+        DefinitionWorkbook dwb = DefinitionWorkbook.load(streamURI);
+        try (InputStream xmlInputStream = this.getClass().getResourceAsStream(streamURI);
+                Workbook wb = WorkbookFactory.create(xmlInputStream)) {
+            assertEquals(wb.getNumberOfSheets(), dwb.getSheets().size());
+            int iSheet = 0;
+            for (Sheet sheet : wb) {
+                List<List<Object>> rows = dwb.getSheet(iSheet);
+                assertEquals(sheet.getPhysicalNumberOfRows(), rows.size());
+                int iRow = 0;
+                for (Row row : sheet) {
+                    List<Object> cells = rows.get(iRow);
+                    assertEquals(row.getPhysicalNumberOfCells(), cells.size());
+                    int iCell = 0;
+                    for (Cell cell : row) {
+                        Object value = cells.get(iCell);
+                        switch (cell.getCellType()) {
+                        case NUMERIC:
+                            assertEquals(cell.getNumericCellValue(), DefinitionWorkbook.getNumeric(value), 0.0D);
+                            break;
+                        case STRING:
+                            assertEquals(cell.getStringCellValue(), DefinitionWorkbook.getString(value));
+                            break;
+                        case BOOLEAN:
+                            assertEquals(cell.getBooleanCellValue(), DefinitionWorkbook.getBoolean(value));
+                            break;
+                        case BLANK:
+                            assertNull(value);
+                            break;
+                        default:
+                            break;
+                        }
+                        iCell++;
+                    }
+                    iRow++;
                 }
+                iSheet++;
             }
         }
     }
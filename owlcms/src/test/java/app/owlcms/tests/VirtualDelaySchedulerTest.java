@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import app.owlcms.fieldofplay.IDelayScheduler.Handle;
+import app.owlcms.fieldofplay.VirtualDelayScheduler;
+
+public class VirtualDelaySchedulerTest {
+
+    @Test
+    public void automaticRunsImmediately() {
+        VirtualDelayScheduler scheduler = new VirtualDelayScheduler();
+        List<String> ran = new ArrayList<>();
+        Handle h = scheduler.schedule(() -> ran.add("a"), 3000);
+        assertEquals(Arrays.asList("a"), ran);
+        assertEquals(3000, scheduler.currentTimeMillis());
+        assertTrue(h.isDone());
+        assertFalse(h.cancel());
+    }
+
+    @Test
+    public void manualRunsInDueOrder() {
+        VirtualDelayScheduler scheduler = new VirtualDelayScheduler();
+        scheduler.setAutomatic(false);
+        List<String> ran = new ArrayList<>();
+        scheduler.schedule(() -> {
+            ran.add("display");
+            // chained action, as when a decision display schedules the reset
+            scheduler.schedule(() -> ran.add("reset"), 3500);
+        }, 3000);
+        scheduler.schedule(() -> ran.add("early"), 1000);
+        Handle canceled = scheduler.schedule(() -> ran.add("canceled"), 2000);
+        assertTrue(canceled.cancel());
+
+        scheduler.advance(2999);
+        assertEquals(Arrays.asList("early"), ran);
+        scheduler.advance(1);
+        assertEquals(Arrays.asList("early", "display"), ran);
+        assertEquals(1, scheduler.getQueueSize());
+        scheduler.advance(3500);
+        assertEquals(Arrays.asList("early", "display", "reset"), ran);
+        assertEquals(6500, scheduler.currentTimeMillis());
+    }
+
+}
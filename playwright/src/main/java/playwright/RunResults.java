@@ -6,9 +6,20 @@
  *******************************************************************************/
 package playwright;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Collectors;
 
 import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserContext;
@@ -21,14 +32,30 @@ import com.microsoft.playwright.Playwright;
  * Each user is a different context in a Chromium browser (as if all starting incognito sessions).
  * Optionnally, poll the different browsers to retrieve a value, in order to confirm that Vaadin push is working.
  * 
+ * With the benchmark arguments, measure instead the CPU used by publicresults for each update as the number of
+ * clients grows: <code>RunResults benchmark updateKey publicresultsPid [nbUpdates]</code>. publicresults must be running
+ * on the same machine, started with the same updateKey, and owlcms must not be pushing to it. Clients are added
+ * BENCHMARK_STEP at a time; after each step, synthetic updates are posted to /update and the CPU time consumed by the
+ * publicresults process is divided by the number of updates.
+ * 
  * @author Jean-François Lamy
  */
 public class RunResults {
     private static final int NB_REMOTE_USERS = 20;
     private static final int POLLING_DELAY = 0;
+    private static final String RESULTS_URL = "http://localhost:8082";
+    private static final int BENCHMARK_STEP = 5;
+    private static final int BENCHMARK_UPDATES = 50;
+    private static final int BENCHMARK_UPDATE_DELAY = 200;
+    private static final int BENCHMARK_ATHLETES = 15;
 
     @SuppressWarnings("unused")
     public static void main(String[] args) {
+        if (args.length >= 3 && args[0].equals("benchmark")) {
+            int nbUpdates = args.length > 3 ? Integer.parseInt(args[3]) : BENCHMARK_UPDATES;
+            benchmark(args[1], Long.parseLong(args[2]), nbUpdates);
+            return;
+        }
         try (Playwright playwright = Playwright.create()) {
             
             // create a number of browsers to simulate independent users
@@ -71,4 +98,83 @@ public class RunResults {
             }
         }
     }
+
+    private static void benchmark(String updateKey, long serverPid, int nbUpdates) {
+        ProcessHandle server = ProcessHandle.of(serverPid)
+                .orElseThrow(() -> new IllegalArgumentException("no process " + serverPid));
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        try (Playwright playwright = Playwright.create()) {
+            Browser browser = playwright.chromium().launch();
+            System.out.println("clients\tupdates\tcpu ms/update");
+            int nbClients = 0;
+            while (nbClients < NB_REMOTE_USERS) {
+                for (int i = 0; i < BENCHMARK_STEP && nbClients < NB_REMOTE_USERS; i++) {
+                    Page page = browser.newContext().newPage();
+                    page.navigate(RESULTS_URL + "/displays/scoreleader?fop=A");
+                    nbClients++;
+                }
+                // let the new sessions settle
+                Thread.sleep(2000);
+
+                long before = cpuMillis(server);
+                for (int u = 0; u < nbUpdates; u++) {
+                    postUpdate(client, updateKey, u);
+                    Thread.sleep(BENCHMARK_UPDATE_DELAY);
+                }
+                long after = cpuMillis(server);
+                System.out.printf("%d\t%d\t%.2f%n", nbClients, nbUpdates, (after - before) / (double) nbUpdates);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long cpuMillis(ProcessHandle server) {
+        return server.info().totalCpuDuration().map(Duration::toMillis).orElse(0L);
+    }
+
+    /**
+     * Post a full update, as sent by owlcms, with one athlete result changing each time.
+     */
+    private static void postUpdate(HttpClient client, String updateKey, int u) throws InterruptedException {
+        StringBuilder athletes = new StringBuilder("[");
+        for (int i = 0; i < BENCHMARK_ATHLETES; i++) {
+            String result = i == u % BENCHMARK_ATHLETES ? Integer.toString(100 + u) : "100";
+            athletes.append(i > 0 ? "," : "")
+                    .append("{\"fullName\":\"ATHLETE ").append(i).append("\",\"teamName\":\"TEAM\",")
+                    .append("\"sattempts\":[{\"stringValue\":\"").append(result)
+                    .append("\",\"goodBadClassName\":\"narrow good\"}],\"total\":\"").append(result).append("\"}");
+        }
+        athletes.append("]");
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("updateKey", updateKey);
+        parameters.put("fop", "A");
+        parameters.put("fopState", "CURRENT_ATHLETE_DISPLAYED");
+        parameters.put("competitionName", "Benchmark");
+        parameters.put("groupName", "M1");
+        parameters.put("fullName", "ATHLETE " + (u % BENCHMARK_ATHLETES));
+        parameters.put("attempt", "1");
+        parameters.put("weight", Integer.toString(100 + u));
+        parameters.put("startNumber", "1");
+        parameters.put("groupAthletes", athletes.toString());
+        parameters.put("leaders", athletes.toString());
+        parameters.put("translationMap", "{\"Snatch\":\"Snatch\",\"Clean_and_Jerk\":\"Clean&Jerk\"}");
+        String form = parameters.entrySet().stream()
+                .map(e -> e.getKey() + "=" + URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(RESULTS_URL + "/update"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                System.err.println("update " + u + " status " + response.statusCode());
+            }
+        } catch (IOException e) {
+            System.err.println("update " + u + " " + e.getMessage());
+        }
+    }
 }
@@ -44,7 +44,7 @@ import app.owlcms.uievents.UpdateEvent;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
-import elemental.json.impl.JreJsonFactory;
+import elemental.json.JsonValue;
 
 /**
  * Class Scoreboard
@@ -251,17 +251,10 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
         String fopState = e.getFopState();
         logger.debug("### received UpdateEvent {}", e);
         ui.access(() -> {
-            String athletes = e.getAthletes();
-            String leaders = e.getLeaders();
-            String translationMap = e.getTranslationMap();
-
-            JreJsonFactory jreJsonFactory = new JreJsonFactory();
-            this.getElement().setPropertyJson("leaders",
-                    leaders != null ? jreJsonFactory.parse(leaders) : Json.createNull());
-            this.getElement().setPropertyJson("athletes",
-                    athletes != null ? jreJsonFactory.parse(athletes) : Json.createNull());
-            this.getElement().setPropertyJson("t",
-                    translationMap != null ? jreJsonFactory.parse(translationMap) : Json.createNull());
+            // trees parsed once by the servlet and shared by all the scoreboards
+            this.getElement().setPropertyJson("leaders", jsonOrNull(e.getLeadersJson()));
+            this.getElement().setPropertyJson("athletes", jsonOrNull(e.getAthletesJson()));
+            this.getElement().setPropertyJson("t", jsonOrNull(e.getTranslationMapJson()));
 
             getModel().setCompetitionName(e.getCompetitionName());
             getModel().setAttempt(e.getAttempt());
@@ -365,6 +358,10 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
         }
     }
 
+    private JsonValue jsonOrNull(JsonValue value) {
+        return value != null ? value : Json.createNull();
+    }
+
     private String getFopName() {
         return fopName;
     }
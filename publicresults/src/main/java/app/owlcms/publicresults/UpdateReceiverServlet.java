@@ -10,8 +10,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.Executors;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -21,24 +21,33 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.LoggerFactory;
 
-import com.google.common.eventbus.AsyncEventBus;
 import com.google.common.eventbus.EventBus;
 
 import app.owlcms.uievents.BreakType;
 import app.owlcms.uievents.UpdateEvent;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.OrderedEventBus;
 import app.owlcms.utils.StartupUtils;
 import app.owlcms.utils.URLUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+import elemental.json.impl.JreJsonFactory;
 
 @WebServlet("/update")
 public class UpdateReceiverServlet extends HttpServlet {
 
     private static String defaultFopName;
-    static EventBus eventBus = new AsyncEventBus(Executors.newCachedThreadPool());
+    static EventBus eventBus = new OrderedEventBus("update");
     static Map<String, UpdateEvent> updateCache = new HashMap<>();
 
+    /** last full set of parameters received for each field of play, deltas are applied to it */
+    private static Map<String, Map<String, String>> parameterCache = new HashMap<>();
+    private static Map<String, Long> sequenceCache = new HashMap<>();
+
     public static EventBus getEventBus() {
         return eventBus;
     }
@@ -54,7 +63,7 @@ public class UpdateReceiverServlet extends HttpServlet {
         return null;
     }
 
-    Logger logger = (Logger) LoggerFactory.getLogger(UpdateReceiverServlet.class);
+    static Logger logger = (Logger) LoggerFactory.getLogger(UpdateReceiverServlet.class);
 
     private String secret = StartupUtils.getStringParam("updateKey");
 
@@ -94,44 +103,54 @@ public class UpdateReceiverServlet extends HttpServlet {
                 return;
             }
 
+            Map<String, String> parameters = applyUpdate(req);
+            if (parameters == null) {
+                // gap in the sequence, ask owlcms to send everything.
+                resp.sendError(409, "Resync needed");
+                return;
+            }
+
             UpdateEvent updateEvent = new UpdateEvent();
 
-            updateEvent.setCompetitionName(req.getParameter("competitionName"));
-            updateEvent.setFopName(req.getParameter("fop"));
-            updateEvent.setFopState(req.getParameter("fopState"));
+            updateEvent.setCompetitionName(parameters.get("competitionName"));
+            updateEvent.setFopName(parameters.get("fop"));
+            updateEvent.setFopState(parameters.get("fopState"));
 
-            updateEvent.setAttempt(req.getParameter("attempt"));
-            updateEvent.setCategoryName(req.getParameter("categoryName"));
-            updateEvent.setFullName(req.getParameter("fullName"));
-            updateEvent.setGroupName(req.getParameter("groupName"));
+            updateEvent.setAttempt(parameters.get("attempt"));
+            updateEvent.setCategoryName(parameters.get("categoryName"));
+            updateEvent.setFullName(parameters.get("fullName"));
+            updateEvent.setGroupName(parameters.get("groupName"));
 
-            updateEvent.setHidden(Boolean.valueOf(req.getParameter("hidden")));
-            String startNumber = req.getParameter("startNumber");
+            updateEvent.setHidden(Boolean.valueOf(parameters.get("hidden")));
+            String startNumber = parameters.get("startNumber");
             updateEvent.setStartNumber(startNumber != null ? Integer.parseInt(startNumber) : 0);
-            updateEvent.setTeamName(req.getParameter("teamName"));
-            String weight = req.getParameter("weight");
+            updateEvent.setTeamName(parameters.get("teamName"));
+            String weight = parameters.get("weight");
             updateEvent.setWeight(weight != null ? Integer.parseInt(weight) : null);
 
-            updateEvent.setAthletes(req.getParameter("groupAthletes"));
-            updateEvent.setLeaders(req.getParameter("leaders"));
-            updateEvent.setLiftsDone(req.getParameter("liftsDone"));
+            updateEvent.setAthletes(parameters.get("groupAthletes"));
+            updateEvent.setLeaders(parameters.get("leaders"));
+            updateEvent.setLiftsDone(parameters.get("liftsDone"));
 
-            updateEvent.setWideTeamNames(Boolean.parseBoolean(req.getParameter("wideTeamNames")));
-            String timeAllowed = req.getParameter("timeAllowed");
-            updateEvent.setTimeAllowed(timeAllowed != null ? Integer.parseInt(req.getParameter("timeAllowed")) : null);
+            updateEvent.setWideTeamNames(Boolean.parseBoolean(parameters.get("wideTeamNames")));
+            String timeAllowed = parameters.get("timeAllowed");
+            updateEvent.setTimeAllowed(timeAllowed != null ? Integer.parseInt(parameters.get("timeAllowed")) : null);
 
-            updateEvent.setTranslationMap(req.getParameter("translationMap"));
+            updateEvent.setTranslationMap(parameters.get("translationMap"));
+            updateEvent.setTranslationVersion(parameters.get("translationVersion"));
 
-            String breakString = req.getParameter("break");
-            String breakTypeString = req.getParameter("breakType");
-            String breakRemainingString = req.getParameter("breakRemaining");
-            String breakIsIndefiniteString = req.getParameter("breakIsIndefinite");
+            String breakString = parameters.get("break");
+            String breakTypeString = parameters.get("breakType");
+            String breakRemainingString = parameters.get("breakRemaining");
+            String breakIsIndefiniteString = parameters.get("breakIsIndefinite");
             updateEvent.setBreak(breakString != null ? Boolean.valueOf(breakString) : null);
             updateEvent.setBreakType(breakTypeString != null ? BreakType.valueOf(breakTypeString) : null);
             updateEvent.setBreakRemaining(breakRemainingString != null ? Integer.parseInt(breakRemainingString) : null);
             updateEvent.setIndefinite(Boolean.parseBoolean(breakIsIndefiniteString));
 
             String fopName = updateEvent.getFopName();
+            parseJson(updateEvent, updateCache.get(fopName));
+
             // put in the cache first so events can know which FOPs are active;
             updateCache.put(fopName, updateEvent);
             eventBus.post(updateEvent);
@@ -145,4 +164,112 @@ public class UpdateReceiverServlet extends HttpServlet {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Bring the parameters for the field of play up to date.
+     *
+     * A snapshot replaces what we had. A delta (see UpdateDeltaEncoder in owlcms) is applied to the parameters we
+     * had, provided it is based on the last update we received. Posts without a sequence number come from older
+     * versions of owlcms and are full updates.
+     *
+     * @param req the update request
+     * @return the complete set of parameters, or null if a resync is needed
+     */
+    private static synchronized Map<String, String> applyUpdate(HttpServletRequest req) {
+        Map<String, String> received = new HashMap<>();
+        for (Entry<String, String[]> pair : req.getParameterMap().entrySet()) {
+            received.put(pair.getKey(), pair.getValue()[0]);
+        }
+        String fopName = received.get("fop");
+        String seqString = received.remove("seq");
+        String baseSeqString = received.remove("baseSeq");
+        received.remove("snapshot");
+
+        if (baseSeqString == null) {
+            parameterCache.put(fopName, received);
+            if (seqString != null) {
+                sequenceCache.put(fopName, Long.parseLong(seqString));
+            } else {
+                sequenceCache.remove(fopName);
+            }
+            return received;
+        }
+
+        Map<String, String> current = parameterCache.get(fopName);
+        Long currentSeq = sequenceCache.get(fopName);
+        if (current == null || currentSeq == null || currentSeq != Long.parseLong(baseSeqString)) {
+            logger./**/warn("{} update {} based on {}, have {}: resync", fopName, seqString, baseSeqString,
+                    currentSeq);
+            return null;
+        }
+
+        Map<String, String> updated = new HashMap<>(current);
+        String removed = received.remove("removed");
+        if (removed != null) {
+            for (String key : removed.split(",")) {
+                updated.remove(key);
+            }
+        }
+        for (Entry<String, String> pair : received.entrySet()) {
+            String key = pair.getKey();
+            if (key.endsWith("Patch")) {
+                String target = key.substring(0, key.length() - "Patch".length());
+                updated.put(target, applyRowPatch(updated.get(target), pair.getValue()));
+            } else {
+                updated.put(key, pair.getValue());
+            }
+        }
+        parameterCache.put(fopName, updated);
+        sequenceCache.put(fopName, Long.parseLong(seqString));
+        return updated;
+    }
+
+    /**
+     * Parse the JSON payloads once for all the scoreboards listening to the field of play.
+     *
+     * Payloads identical to those of the previous event (the translations, most of the time) reuse the previous trees.
+     * The translations are recognized by their version when the sender provides one.
+     */
+    private static void parseJson(UpdateEvent updateEvent, UpdateEvent previous) {
+        JreJsonFactory jreJsonFactory = new JreJsonFactory();
+        String athletes = updateEvent.getAthletes();
+        if (previous != null && Objects.equals(athletes, previous.getAthletes())) {
+            updateEvent.setAthletesJson(previous.getAthletesJson());
+        } else {
+            updateEvent.setAthletesJson(athletes != null ? jreJsonFactory.parse(athletes) : Json.createNull());
+        }
+        String leaders = updateEvent.getLeaders();
+        if (previous != null && Objects.equals(leaders, previous.getLeaders())) {
+            updateEvent.setLeadersJson(previous.getLeadersJson());
+        } else {
+            updateEvent.setLeadersJson(leaders != null ? jreJsonFactory.parse(leaders) : Json.createNull());
+        }
+        String translationMap = updateEvent.getTranslationMap();
+        String translationVersion = updateEvent.getTranslationVersion();
+        if (previous != null && translationVersion != null
+                && translationVersion.equals(previous.getTranslationVersion())) {
+            updateEvent.setTranslationMapJson(previous.getTranslationMapJson());
+        } else if (previous != null && Objects.equals(translationMap, previous.getTranslationMap())) {
+            updateEvent.setTranslationMapJson(previous.getTranslationMapJson());
+        } else {
+            updateEvent.setTranslationMapJson(
+                    translationMap != null ? jreJsonFactory.parse(translationMap) : Json.createNull());
+        }
+    }
+
+    private static String applyRowPatch(String previousJson, String patchJson) {
+        JreJsonFactory jreJsonFactory = new JreJsonFactory();
+        JsonArray previous = previousJson != null ? jreJsonFactory.parse(previousJson) : Json.createArray();
+        JsonObject patch = jreJsonFactory.parse(patchJson);
+        JsonObject rows = patch.getObject("rows");
+        int length = (int) patch.getNumber("length");
+
+        JsonArray updated = Json.createArray();
+        for (int i = 0; i < length; i++) {
+            String index = Integer.toString(i);
+            JsonValue row = rows.hasKey(index) ? rows.get(index) : previous.get(i);
+            updated.set(i, row);
+        }
+        return updated.toJson();
+    }
+
+}
@@ -6,6 +6,14 @@
  *******************************************************************************/
 package app.owlcms.uievents;
 
+import elemental.json.JsonValue;
+
+/**
+ * State of a field of play, as received from owlcms.
+ *
+ * The same event is handed to every scoreboard open on the field of play. The JSON strings are parsed once when the
+ * event is received; the resulting trees are shared by all the scoreboards and must not be modified.
+ */
 public class UpdateEvent {
 
     private String leaders;
@@ -14,6 +22,7 @@ public class UpdateEvent {
     private String athletes;
     private String liftsDone;
     private String translationMap;
+    private String translationVersion;
     private String attempt;
     private String fullName;
     private String groupName;
@@ -29,6 +38,9 @@ public class UpdateEvent {
     private BreakType breakType;
     private Integer breakRemaining;
     private boolean indefinite;
+    private JsonValue athletesJson;
+    private JsonValue leadersJson;
+    private JsonValue translationMapJson;
 
     public UpdateEvent() {
         setLeaders(leaders);
@@ -38,6 +50,13 @@ public class UpdateEvent {
         return this.athletes;
     }
 
+    /**
+     * @return parsed athletes, shared, must not be modified
+     */
+    public JsonValue getAthletesJson() {
+        return athletesJson;
+    }
+
     public String getAttempt() {
         return attempt;
     }
@@ -82,6 +101,13 @@ public class UpdateEvent {
         return leaders;
     }
 
+    /**
+     * @return parsed leaders, shared, must not be modified
+     */
+    public JsonValue getLeadersJson() {
+        return leadersJson;
+    }
+
     public String getLiftsDone() {
         return this.liftsDone;
     }
@@ -102,6 +128,20 @@ public class UpdateEvent {
         return this.translationMap;
     }
 
+    /**
+     * @return parsed translations, shared, must not be modified
+     */
+    public JsonValue getTranslationMapJson() {
+        return translationMapJson;
+    }
+
+    /**
+     * @return identifies the content of the translation map; null if the sender does not provide it
+     */
+    public String getTranslationVersion() {
+        return translationVersion;
+    }
+
     public Integer getWeight() {
         return weight;
     }
@@ -118,6 +158,10 @@ public class UpdateEvent {
         this.athletes = athletes;
     }
 
+    public void setAthletesJson(JsonValue athletesJson) {
+        this.athletesJson = athletesJson;
+    }
+
     public void setAttempt(String parameter) {
         this.attempt = parameter;
     }
@@ -166,6 +210,10 @@ public class UpdateEvent {
         this.leaders = leaders;
     }
 
+    public void setLeadersJson(JsonValue leadersJson) {
+        this.leadersJson = leadersJson;
+    }
+
     public void setLiftsDone(String liftsDone) {
         this.liftsDone = liftsDone;
     }
@@ -186,6 +234,14 @@ public class UpdateEvent {
         this.translationMap = translationMap;
     }
 
+    public void setTranslationMapJson(JsonValue translationMapJson) {
+        this.translationMapJson = translationMapJson;
+    }
+
+    public void setTranslationVersion(String translationVersion) {
+        this.translationVersion = translationVersion;
+    }
+
     public void setWeight(Integer integer) {
         this.weight = integer;
     }
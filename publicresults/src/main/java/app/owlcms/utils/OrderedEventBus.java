@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2009-2021 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("NPOSL-3.0")
+ * License text at https://opensource.org/licenses/NPOSL-3.0
+ *******************************************************************************/
+package app.owlcms.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.SubscriberExceptionContext;
+import com.google.common.eventbus.SubscriberExceptionHandler;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Asynchronous event bus that delivers events to each subscriber in the order they were posted.
+ *
+ * Each subscriber has its own queue, drained by at most one thread at a time, so a subscriber never sees two events
+ * concurrently nor out of order (for example, a decision before the lift it belongs to). A slow subscriber only
+ * delays its own events. All buses share a bounded pool of worker threads (eventThreads parameter, OWLCMS_EVENTTHREADS
+ * in the environment) instead of creating a thread for each delivery.
+ *
+ * Queue depth and delivery latency (time between post and the start of the handler) are tracked for the bus.
+ *
+ * @author Jean-François Lamy
+ */
+public class OrderedEventBus extends EventBus {
+
+    /**
+     * Events waiting for one subscriber. Delivered to the subscriber through a private synchronous bus, which finds
+     * the @Subscribe methods that apply to the event.
+     */
+    private class SubscriberQueue implements Runnable {
+        private final EventBus delivery;
+        private final Deque<Object> events = new ArrayDeque<>();
+        private final Deque<Long> postTimes = new ArrayDeque<>();
+        private boolean scheduled = false;
+        private boolean closed = false;
+
+        SubscriberQueue(Object subscriber) {
+            delivery = new EventBus(exceptionHandler);
+            delivery.register(subscriber);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Object event;
+                long postTime;
+                synchronized (this) {
+                    if (events.isEmpty() || closed) {
+                        scheduled = false;
+                        return;
+                    }
+                    event = events.pollFirst();
+                    postTime = postTimes.pollFirst();
+                }
+                recordLatency(System.nanoTime() - postTime);
+                delivery.post(event);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            events.clear();
+            postTimes.clear();
+        }
+
+        void enqueue(Object event) {
+            boolean mustSchedule;
+            int depth;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (events.size() >= MAX_QUEUED) {
+                    // subscriber is stuck (browser gone without unregistering); do not grow forever.
+                    Object dropped = events.pollFirst();
+                    postTimes.pollFirst();
+                    logger./**/warn("{} subscriber queue full, dropping {}", identifier(),
+                            dropped.getClass().getSimpleName());
+                }
+                events.addLast(event);
+                postTimes.addLast(System.nanoTime());
+                depth = events.size();
+                mustSchedule = !scheduled;
+                scheduled = true;
+            }
+            recordDepth(depth);
+            if (mustSchedule) {
+                getExecutor().execute(this);
+            }
+        }
+    }
+
+    private static final int MAX_QUEUED = 500;
+
+    private static final int STATS_INTERVAL = 1000;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(OrderedEventBus.class);
+
+    private static ExecutorService executor;
+
+    /**
+     * @return the bounded pool shared by all the ordered buses
+     */
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int nbThreads = StartupUtils.getIntegerParam("eventThreads",
+                    Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadFactory threadFactory = (r) -> {
+                Thread t = new Thread(r, "events-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(nbThreads, nbThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory);
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    private final Map<Object, SubscriberQueue> queues = new ConcurrentHashMap<>();
+
+    private final SubscriberExceptionHandler exceptionHandler;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public OrderedEventBus(String identifier) {
+        super(identifier);
+        this.exceptionHandler = (Throwable exception, SubscriberExceptionContext context) -> logger.error(
+                "{} {} could not handle {}\n{}", identifier, context.getSubscriber(),
+                context.getEvent().getClass().getSimpleName(), LoggerUtils.stackTrace(exception));
+    }
+
+    /**
+     * @return average delay between posting an event and its handling, in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        long n = delivered.get();
+        return n == 0 ? 0.0 : totalLatencyNanos.get() / (n * 1_000_000.0);
+    }
+
+    /**
+     * @return number of subscriber deliveries since the bus was created
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @return largest backlog seen for a single subscriber
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * @return number of events currently waiting, all subscribers together
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (SubscriberQueue q : queues.values()) {
+            synchronized (q) {
+                depth += q.events.size();
+            }
+        }
+        return depth;
+    }
+
+    public int getSubscriberCount() {
+        return queues.size();
+    }
+
+    /**
+     * Queue the event for every subscriber. Returns immediately.
+     */
+    @Override
+    public void post(Object event) {
+        for (SubscriberQueue q : queues.values()) {
+            q.enqueue(event);
+        }
+    }
+
+    @Override
+    public void register(Object object) {
+        queues.computeIfAbsent(object, (o) -> new SubscriberQueue(o));
+    }
+
+    @Override
+    public String toString() {
+        return identifier() + " [subscribers=" + getSubscriberCount() + ", delivered=" + getDeliveredCount()
+                + ", queued=" + getQueueDepth() + ", maxQueued=" + getMaxQueueDepth()
+                + String.format(", avgLatency=%.1fms, maxLatency=%.1fms]", getAverageLatencyMillis(),
+                        getMaxLatencyMillis());
+    }
+
+    /**
+     * Pending events for the subscriber are discarded.
+     *
+     * @throws IllegalArgumentException if the object was not registered, as for {@link EventBus}
+     */
+    @Override
+    public void unregister(Object object) {
+        SubscriberQueue q = queues.remove(object);
+        if (q == null) {
+            throw new IllegalArgumentException("missing event subscriber for an annotated method. Is " + object
+                    + " registered?");
+        }
+        q.close();
+    }
+
+    private void recordDepth(int depth) {
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    private void recordLatency(long latencyNanos) {
+        long n = delivered.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        if (n % STATS_INTERVAL == 0) {
+            logger.debug("{}", this);
+        }
+    }
+
+}